@@ -19,18 +19,25 @@
 
 package org.apache.fop.afp;
 
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.Map;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.fop.afp.fonts.AFPFont;
 import org.apache.fop.afp.fonts.CharacterSet;
 import org.apache.fop.afp.modca.AbstractNamedAFPObject;
 import org.apache.fop.afp.modca.AbstractPageObject;
+import org.apache.fop.afp.modca.GraphicsObject;
 import org.apache.fop.afp.modca.IncludeObject;
 import org.apache.fop.afp.modca.IncludedResourceObject;
 import org.apache.fop.afp.modca.PageSegment;
@@ -69,6 +76,13 @@ public class AFPResourceManager {
 
     private final Map pageSegmentMap = new java.util.HashMap();
 
+    /**
+     * a mapping of resource content (level, page segment flag and digest) -->
+     * include name, to reference identical resources from different URIs only
+     * once
+     */
+    private final Map<ContentKey, String> contentNameMap = new java.util.HashMap<>();
+
     private final AFPResourceLevelDefaults resourceLevelDefaults = new AFPResourceLevelDefaults();
 
     /**
@@ -93,8 +107,8 @@ public class AFPResourceManager {
      */
     public DataStream createDataStream(final AFPPaintingState paintingState,
             final OutputStream outputStream) throws IOException {
-        this.dataStream = this.streamer.createDataStream(paintingState);
         this.streamer.setOutputStream(outputStream);
+        this.dataStream = this.streamer.createDataStream(paintingState);
         return this.dataStream;
     }
 
@@ -128,6 +142,18 @@ public class AFPResourceManager {
         this.streamer.setDefaultResourceGroupFilePath(filePath);
     }
 
+    /**
+     * Controls whether the document is written straight to the final
+     * outputstream instead of going through a temporary file. Print-file level
+     * resources are then placed in the default external resource group.
+     *
+     * @param directStreaming
+     *            true to write the document straight to the final outputstream
+     */
+    public void setDirectStreaming(final boolean directStreaming) {
+        this.streamer.setDirectStreaming(directStreaming);
+    }
+
     /**
      * Creates a new data object in the AFP datastream
      *
@@ -186,6 +212,24 @@ public class AFPResourceManager {
         if (useInclude) {
             final boolean usePageSegment = dataObjectInfo.isCreatePageSegment();
 
+            // an identical resource may already exist under another URI
+            ContentKey contentKey = null;
+            if (isSharedResourceLevel(resourceLevel)) {
+                contentKey = new ContentKey(resourceLevel, usePageSegment,
+                        computeDigest(dataObjectInfo, namedObj));
+                objectName = this.contentNameMap.get(contentKey);
+                if (objectName != null) {
+                    if (usePageSegment) {
+                        includePageSegment(dataObjectInfo, objectName);
+                        this.pageSegmentMap.put(resourceInfo, objectName);
+                    } else {
+                        includeObject(dataObjectInfo, objectName);
+                        this.includeNameMap.put(resourceInfo, objectName);
+                    }
+                    return;
+                }
+            }
+
             // if it is to reside within a resource group at print-file or
             // external level
             if (resourceLevel.isPrintFile() || resourceLevel.isExternal()) {
@@ -208,6 +252,9 @@ public class AFPResourceManager {
 
             // create the include object
             objectName = namedObj.getName();
+            if (contentKey != null) {
+                this.contentNameMap.put(contentKey, objectName);
+            }
             if (usePageSegment) {
                 includePageSegment(dataObjectInfo, objectName);
                 this.pageSegmentMap.put(resourceInfo, objectName);
@@ -223,6 +270,56 @@ public class AFPResourceManager {
         }
     }
 
+    /**
+     * Indicates whether resources at the given level can be referenced from
+     * anywhere in the document, i.e. whether identical content can be shared.
+     */
+    private static boolean isSharedResourceLevel(final AFPResourceLevel level) {
+        return level.isPrintFile() || level.isExternal() || level.isDocument();
+    }
+
+    /**
+     * Computes a digest of everything which determines the content of a data
+     * object resource, apart from its name and placement (which is given by the
+     * include).
+     */
+    private static byte[] computeDigest(final AFPDataObjectInfo dataObjectInfo,
+            final AbstractNamedAFPObject namedObj) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new UnsupportedOperationException(e.getMessage());
+        }
+        final DataOutputStream dout = new DataOutputStream(
+                new DigestOutputStream(new NullOutputStream(), md));
+        dout.writeUTF(namedObj.getClass().getName());
+        final Registry.ObjectType objectType = dataObjectInfo.getObjectType();
+        dout.writeUTF(objectType != null ? objectType.getMimeType() : "");
+        dout.writeInt(dataObjectInfo.getDataWidth());
+        dout.writeInt(dataObjectInfo.getDataHeight());
+        dout.writeInt(dataObjectInfo.getDataWidthRes());
+        dout.writeInt(dataObjectInfo.getDataHeightRes());
+        if (dataObjectInfo instanceof AFPImageObjectInfo) {
+            final AFPImageObjectInfo imageObjectInfo = (AFPImageObjectInfo) dataObjectInfo;
+            dout.writeInt(imageObjectInfo.getBitsPerPixel());
+            dout.writeInt(imageObjectInfo.hasCompression() ? imageObjectInfo
+                    .getCompression() : -1);
+            dout.writeBoolean(imageObjectInfo.isSubtractive());
+        }
+        if (namedObj instanceof GraphicsObject) {
+            ((GraphicsObject) namedObj).writeDrawingOrders(dout);
+        } else {
+            final byte[] data = dataObjectInfo.getData();
+            if (data != null) {
+                dout.writeInt(data.length);
+                dout.write(data);
+            }
+        }
+        dout.flush();
+        return md.digest();
+    }
+
     private void updateResourceInfoUri(final AFPResourceInfo resourceInfo) {
         String uri = resourceInfo.getUri();
         if (uri == null) {
@@ -355,6 +452,48 @@ public class AFPResourceManager {
         }
     }
 
+    /** Key of a data object resource by content. */
+    private static final class ContentKey {
+
+        private final AFPResourceLevel level;
+
+        private final boolean pageSegment;
+
+        private final byte[] digest;
+
+        private final int hash;
+
+        ContentKey(final AFPResourceLevel level, final boolean pageSegment,
+                final byte[] digest) {
+            this.level = level;
+            this.pageSegment = pageSegment;
+            this.digest = digest;
+            this.hash = 31 * (31 * level.hashCode() + (pageSegment ? 1 : 0))
+                    + Arrays.hashCode(digest);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ContentKey)) {
+                return false;
+            }
+            final ContentKey other = (ContentKey) obj;
+            return this.pageSegment == other.pageSegment
+                    && this.level.equals(other.level)
+                    && Arrays.equals(this.digest, other.digest);
+        }
+    }
+
     /**
      * Sets resource level defaults. The existing defaults over merged with the
      * ones passed in as parameter.
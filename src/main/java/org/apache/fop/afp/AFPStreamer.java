@@ -26,6 +26,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -42,8 +45,6 @@ public class AFPStreamer implements Streamable {
 
     private static final String AFPDATASTREAM_TEMP_FILE_PREFIX = "AFPDataStream_";
 
-    private static final int BUFFER_SIZE = 4096; // 4k writing buffer
-
     private static final String DEFAULT_EXTERNAL_RESOURCE_FILENAME = "resources.afp";
 
     private final Factory factory;
@@ -74,6 +75,12 @@ public class AFPStreamer implements Streamable {
 
     private DataStream dataStream;
 
+    /**
+     * true if the document is written straight to the final outputstream
+     * rather than to a temporary file
+     */
+    private boolean directStreaming = false;
+
     /**
      * Main constructor
      *
@@ -95,16 +102,42 @@ public class AFPStreamer implements Streamable {
      */
     public DataStream createDataStream(final AFPPaintingState paintingState)
             throws IOException {
-        this.tempFile = File.createTempFile(AFPDATASTREAM_TEMP_FILE_PREFIX,
-                null);
-        this.documentFile = new RandomAccessFile(this.tempFile, "rw");
-        this.documentOutputStream = new BufferedOutputStream(
-                new FileOutputStream(this.documentFile.getFD()));
+        if (this.directStreaming) {
+            if (this.outputStream == null) {
+                throw new IllegalStateException(
+                        "The outputstream must be set before the datastream"
+                                + " is created when streaming directly");
+            }
+            this.documentOutputStream = new BufferedOutputStream(
+                    this.outputStream);
+        } else {
+            this.tempFile = File.createTempFile(
+                    AFPDATASTREAM_TEMP_FILE_PREFIX, null);
+            this.documentFile = new RandomAccessFile(this.tempFile, "rw");
+            this.documentOutputStream = new BufferedOutputStream(
+                    new FileOutputStream(this.documentFile.getFD()));
+        }
         this.dataStream = this.factory.createDataStream(paintingState,
                 this.documentOutputStream);
         return this.dataStream;
     }
 
+    /**
+     * Controls whether the document is written straight to the final
+     * outputstream. By default, the document is written to a temporary file
+     * and copied to the final outputstream after the print-file resource
+     * group, which has to precede it. When streaming directly, that resource
+     * group cannot be written, so print-file level resources are placed in the
+     * default external resource group instead. Must be called before the
+     * datastream is created.
+     *
+     * @param directStreaming
+     *            true to write the document straight to the final outputstream
+     */
+    public void setDirectStreaming(final boolean directStreaming) {
+        this.directStreaming = directStreaming;
+    }
+
     /**
      * Sets the default resource group file path
      *
@@ -133,24 +166,16 @@ public class AFPStreamer implements Streamable {
                 log.warn("No file path provided for external resource, using default.");
                 filePath = this.defaultResourceGroupFilePath;
             }
-            resourceGroup = (ResourceGroup) this.pathResourceGroupMap
-                    .get(filePath);
-            if (resourceGroup == null) {
-                OutputStream os = null;
-                try {
-                    os = new BufferedOutputStream(
-                            new FileOutputStream(filePath));
-                } catch (final FileNotFoundException fnfe) {
-                    log.error("Failed to create/open external resource group file '"
-                            + filePath + "'");
-                } finally {
-                    if (os != null) {
-                        resourceGroup = this.factory
-                                .createStreamedResourceGroup(os);
-                        this.pathResourceGroupMap.put(filePath, resourceGroup);
-                    }
-                }
+            resourceGroup = getExternalResourceGroup(filePath);
+        } else if (level.isPrintFile() && this.directStreaming) {
+            // the document is already being written to the final outputstream
+            if (!this.pathResourceGroupMap
+                    .containsKey(this.defaultResourceGroupFilePath)) {
+                log.info("Direct streaming: print-file level resources are"
+                        + " written to the external resource group '"
+                        + this.defaultResourceGroupFilePath + "'");
             }
+            resourceGroup = getExternalResourceGroup(this.defaultResourceGroupFilePath);
         } else if (level.isPrintFile()) {
             if (this.printFileResourceGroup == null) {
                 // use final outputstream for print-file resource group
@@ -165,6 +190,26 @@ public class AFPStreamer implements Streamable {
         return resourceGroup;
     }
 
+    private ResourceGroup getExternalResourceGroup(final String filePath) {
+        ResourceGroup resourceGroup = (ResourceGroup) this.pathResourceGroupMap
+                .get(filePath);
+        if (resourceGroup == null) {
+            OutputStream os = null;
+            try {
+                os = new BufferedOutputStream(new FileOutputStream(filePath));
+            } catch (final FileNotFoundException fnfe) {
+                log.error("Failed to create/open external resource group file '"
+                        + filePath + "'");
+            } finally {
+                if (os != null) {
+                    resourceGroup = this.factory.createStreamedResourceGroup(os);
+                    this.pathResourceGroupMap.put(filePath, resourceGroup);
+                }
+            }
+        }
+        return resourceGroup;
+    }
+
     /**
      * Closes off the AFP stream writing the document stream
      *
@@ -173,7 +218,7 @@ public class AFPStreamer implements Streamable {
      */
     // write out any external resource groups
     public void close() throws IOException {
-        final Iterator it = this.pathResourceGroupMap.entrySet().iterator();
+        final Iterator it = this.pathResourceGroupMap.values().iterator();
         while (it.hasNext()) {
             final StreamedResourceGroup resourceGroup = (StreamedResourceGroup) it
                     .next();
@@ -185,13 +230,20 @@ public class AFPStreamer implements Streamable {
             this.printFileResourceGroup.close();
         }
 
-        // write out document
-        writeToStream(this.outputStream);
+        if (this.directStreaming) {
+            this.documentOutputStream.flush();
+        } else {
+            // write out document
+            try {
+                writeToStream(this.outputStream);
+            } finally {
+                this.documentFile.close();
+                // delete temporary file
+                this.tempFile.delete();
+            }
+        }
 
         this.outputStream.close();
-
-        // delete temporary file
-        this.tempFile.delete();
     }
 
     /**
@@ -204,31 +256,28 @@ public class AFPStreamer implements Streamable {
         this.outputStream = outputStream;
     }
 
-    /** {@inheritDoc} */
+    /**
+     * {@inheritDoc} The document is transferred from the temporary file with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which
+     * avoids copying it through the Java heap, straight from file to file if
+     * the target is a {@link FileOutputStream}.
+     */
     @Override
     public void writeToStream(final OutputStream os) throws IOException {
-        // long start = System.currentTimeMillis();
-        final int len = (int) this.documentFile.length();
-        final int numChunks = len / BUFFER_SIZE;
-        final int remainingChunkSize = len % BUFFER_SIZE;
-        byte[] buffer;
-
-        this.documentFile.seek(0);
-        if (numChunks > 0) {
-            buffer = new byte[BUFFER_SIZE];
-            for (int i = 0; i < numChunks; ++i) {
-                this.documentFile.read(buffer, 0, BUFFER_SIZE);
-                os.write(buffer, 0, BUFFER_SIZE);
-            }
-        } else {
-            buffer = new byte[remainingChunkSize];
+        if (this.documentFile == null) {
+            throw new IllegalStateException(
+                    "The document has been streamed directly");
         }
-        if (remainingChunkSize > 0) {
-            this.documentFile.read(buffer, 0, remainingChunkSize);
-            os.write(buffer, 0, remainingChunkSize);
+        // the print-file resource group may still be buffered
+        os.flush();
+        final FileChannel source = this.documentFile.getChannel();
+        final WritableByteChannel target = os instanceof FileOutputStream ? ((FileOutputStream) os)
+                .getChannel() : Channels.newChannel(os);
+        final long len = source.size();
+        long pos = 0;
+        while (pos < len) {
+            pos += source.transferTo(pos, len - pos, target);
         }
         os.flush();
-        // long end = System.currentTimeMillis();
-        // log.debug("writing time " + (end - start) + "ms");
     }
-}
\ No newline at end of file
+}
@@ -74,6 +74,12 @@ public class CharacterSet {
     /** The charset encoder corresponding to this encoding */
     private CharsetEncoder encoder;
 
+    /**
+     * Direct Unicode to code point lookup table, only available for
+     * single-byte encodings
+     */
+    private SingleByteCodePointTable codePointTable;
+
     /** The character set relating to the font */
     protected String name;
 
@@ -86,6 +92,9 @@ public class CharacterSet {
     /** The collection of objects for each orientation */
     private Map characterSetOrientations = null;
 
+    /** The metrics for the current orientation */
+    private CharacterSetOrientation currentCharacterSetOrientation;
+
     /**
      * The nominal vertical size (in millipoints) for bitmap fonts. 0 for
      * outline fonts.
@@ -144,8 +153,10 @@ public class CharacterSet {
         this.codePage = codePage;
         this.encoding = encoding;
         try {
-            this.encoder = Charset.forName(encoding).newEncoder();
+            final Charset charset = Charset.forName(encoding);
+            this.encoder = charset.newEncoder();
             this.encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.codePointTable = SingleByteCodePointTable.getInstance(charset);
         } catch (final UnsupportedCharsetException uce) {
             // No nio-capable encoder available
             // This may happen with "Cp500" on Sun Java 1.4.2
@@ -165,6 +176,10 @@ public class CharacterSet {
     public void addCharacterSetOrientation(final CharacterSetOrientation cso) {
         this.characterSetOrientations.put(String.valueOf(cso.getOrientation()),
                 cso);
+        if (this.currentOrientation.equals(String.valueOf(cso
+                .getOrientation()))) {
+            this.currentCharacterSetOrientation = cso;
+        }
     }
 
     /**
@@ -348,9 +363,19 @@ public class CharacterSet {
      * @return characterSetOrentation The current orientation metrics.
      */
     private CharacterSetOrientation getCharacterSetOrientation() {
-        final CharacterSetOrientation c = (CharacterSetOrientation) this.characterSetOrientations
-                .get(this.currentOrientation);
-        return c;
+        return this.currentCharacterSetOrientation;
+    }
+
+    /**
+     * Returns the metrics of all orientations.
+     *
+     * @return the metrics of all orientations
+     */
+    CharacterSetOrientation[] getCharacterSetOrientations() {
+        return (CharacterSetOrientation[]) this.characterSetOrientations
+                .values().toArray(
+                        new CharacterSetOrientation[this.characterSetOrientations
+                                .size()]);
     }
 
     /**
@@ -361,7 +386,10 @@ public class CharacterSet {
      * @return true if the character is in the character set
      */
     public boolean hasChar(final char c) {
-        if (this.encoder != null) {
+        if (this.codePointTable != null
+                && this.codePointTable.getCodePoint(c) >= 0) {
+            return true;
+        } else if (this.encoder != null) {
             return this.encoder.canEncode(c);
         } else {
             // Sun Java 1.4.2 compatibility
@@ -380,6 +408,12 @@ public class CharacterSet {
      */
     public byte[] encodeChars(final CharSequence chars)
             throws CharacterCodingException {
+        if (this.codePointTable != null) {
+            final byte[] bytes = this.codePointTable.encode(chars);
+            if (bytes != null) {
+                return bytes;
+            }
+        }
         if (this.encoder != null) {
             ByteBuffer bb;
             // encode method is not thread safe
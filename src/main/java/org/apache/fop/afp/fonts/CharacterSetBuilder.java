@@ -34,6 +34,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.apache.fop.afp.AFPConstants;
 import org.apache.fop.afp.util.ResourceAccessor;
+import org.apache.fop.afp.util.SimpleResourceAccessor;
 import org.apache.fop.afp.util.StructuredFieldReader;
 import org.apache.fop.fonts.Typeface;
 import org.apache.xmlgraphics.image.loader.util.SoftMapCache;
@@ -113,6 +114,12 @@ public class CharacterSetBuilder {
      */
     private final SoftMapCache characterSetsCache = new SoftMapCache(true);
 
+    /**
+     * Persistent cache of compiled character set metrics, shared by all
+     * builders (may be null)
+     */
+    private static CharacterSetCache metricsCache;
+
     private CharacterSetBuilder() {
     }
 
@@ -138,6 +145,49 @@ public class CharacterSetBuilder {
         return new DoubleByteLoader();
     }
 
+    /**
+     * Sets the persistent cache of compiled character set metrics used by all
+     * builders.
+     *
+     * @param cache
+     *            the metrics cache, or null to disable it
+     */
+    public static synchronized void setMetricsCache(
+            final CharacterSetCache cache) {
+        metricsCache = cache;
+    }
+
+    /**
+     * Returns the persistent cache of compiled character set metrics.
+     *
+     * @return the metrics cache, or null if none is used
+     */
+    public static synchronized CharacterSetCache getMetricsCache() {
+        return metricsCache;
+    }
+
+    /**
+     * Returns the modification time of a font resource.
+     *
+     * @param accessor
+     *            the resource accessor
+     * @param filename
+     *            the file name
+     * @return the modification time, or -1 if it can't be determined
+     */
+    private static long getLastModified(final ResourceAccessor accessor,
+            final String filename) {
+        if (accessor instanceof SimpleResourceAccessor) {
+            try {
+                return ((SimpleResourceAccessor) accessor)
+                        .getLastModified(new URI(filename.trim()));
+            } catch (final URISyntaxException e) {
+                // reported when the file is opened
+            }
+        }
+        return -1;
+    }
+
     /**
      * Returns an InputStream to a given file path and filename
      *
@@ -219,6 +269,25 @@ public class CharacterSetBuilder {
         characterSet = new CharacterSet(codePageName, encoding,
                 characterSetName, accessor);
 
+        // check for compiled metrics of unmodified font files
+        final CharacterSetCache cache = getMetricsCache();
+        String cacheKey = null;
+        long characterSetLastModified = -1;
+        long codePageLastModified = -1;
+        if (cache != null) {
+            characterSetLastModified = getLastModified(accessor,
+                    characterSetName);
+            codePageLastModified = getLastModified(accessor, codePageName);
+            if (characterSetLastModified >= 0 && codePageLastModified >= 0) {
+                cacheKey = getClass().getName() + ":" + descriptor;
+                if (cache.restore(cacheKey, characterSetLastModified,
+                        codePageLastModified, characterSet)) {
+                    this.characterSetsCache.put(descriptor, characterSet);
+                    return characterSet;
+                }
+            }
+        }
+
         /**
          * Get the code page which contains the character mapping information to
          * map the unicode character id to the graphic chracter global
@@ -277,6 +346,10 @@ public class CharacterSetBuilder {
                         "Missing D3AE89 Font Control structured field.");
             }
         }
+        if (cacheKey != null) {
+            cache.add(cacheKey, characterSetLastModified,
+                    codePageLastModified, characterSet);
+        }
         this.characterSetsCache.put(descriptor, characterSet);
         return characterSet;
 
@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.afp.fonts;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Map;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.fop.apps.FOPException;
+import org.apache.fop.fonts.FontCache;
+import org.apache.fop.util.LogUtil;
+
+/**
+ * Persistent cache of compiled AFP character set metrics. Parsing the
+ * structured fields of a character set and its code page is done once; later
+ * runs restore the metrics from the cache file as long as neither file has
+ * been modified. The cache file is stored next to the {@link FontCache} file.
+ */
+@Slf4j
+public final class CharacterSetCache implements Serializable {
+
+    /**
+     * Serialization Version UID. Change this value if you want to make sure the
+     * user's cache file is purged after an update.
+     */
+    private static final long serialVersionUID = 3069842870914232755L;
+
+    /** metrics cache file name */
+    private static final String DEFAULT_CACHE_FILENAME = "fop-afp-metrics.cache";
+
+    /** has this cache been changed since it was last read? */
+    private transient boolean changed = false;
+
+    /** change lock */
+    private final boolean[] changeLock = new boolean[1];
+
+    /** mapping of character set key -> compiled metrics */
+    private final Map<String, CachedCharacterSet> characterSetMap = new java.util.HashMap<>();
+
+    /**
+     * Returns the default metrics cache file.
+     *
+     * @param forWriting
+     *            true if the user directory should be created
+     * @return the default metrics cache file
+     */
+    public static File getDefaultCacheFile(final boolean forWriting) {
+        return new File(FontCache.getDefaultCacheFile(forWriting)
+                .getParentFile(), DEFAULT_CACHE_FILENAME);
+    }
+
+    /**
+     * Reads the default metrics cache file and returns its contents.
+     *
+     * @return the metrics cache deserialized from the file (or null if no
+     *         cache file exists or if it could not be read)
+     */
+    public static CharacterSetCache load() {
+        return loadFrom(getDefaultCacheFile(false));
+    }
+
+    /**
+     * Reads a metrics cache file and returns its contents.
+     *
+     * @param cacheFile
+     *            the cache file
+     * @return the metrics cache deserialized from the file (or null if no
+     *         cache file exists or if it could not be read)
+     */
+    public static CharacterSetCache loadFrom(final File cacheFile) {
+        if (cacheFile.exists()) {
+            try {
+                if (log.isTraceEnabled()) {
+                    log.trace("Loading AFP metrics cache from "
+                            + cacheFile.getCanonicalPath());
+                }
+                InputStream in = new java.io.FileInputStream(cacheFile);
+                in = new java.io.BufferedInputStream(in);
+                final ObjectInputStream oin = new ObjectInputStream(in);
+                try {
+                    return (CharacterSetCache) oin.readObject();
+                } finally {
+                    IOUtils.closeQuietly(oin);
+                }
+            } catch (final ClassNotFoundException e) {
+                log.warn("Could not read AFP metrics cache. Discarding cache file. Reason: "
+                        + e.getMessage());
+            } catch (final IOException ioe) {
+                log.warn("I/O exception while reading AFP metrics cache ("
+                        + ioe.getMessage() + "). Discarding cache file.");
+                if (!cacheFile.delete()) {
+                    log.warn("Failed to delete AFP metrics cache file: "
+                            + cacheFile.getAbsolutePath());
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes the metrics cache to disk.
+     *
+     * @throws FOPException
+     *             fop exception
+     */
+    public void save() throws FOPException {
+        saveTo(getDefaultCacheFile(true));
+    }
+
+    /**
+     * Writes the metrics cache to disk if it has changed.
+     *
+     * @param cacheFile
+     *            the file to write to
+     * @throws FOPException
+     *             fop exception
+     */
+    public void saveTo(final File cacheFile) throws FOPException {
+        synchronized (this.changeLock) {
+            if (this.changed) {
+                try {
+                    if (log.isTraceEnabled()) {
+                        log.trace("Writing AFP metrics cache to "
+                                + cacheFile.getCanonicalPath());
+                    }
+                    OutputStream out = new java.io.FileOutputStream(cacheFile);
+                    out = new java.io.BufferedOutputStream(out);
+                    final ObjectOutputStream oout = new ObjectOutputStream(out);
+                    try {
+                        oout.writeObject(this);
+                    } finally {
+                        IOUtils.closeQuietly(oout);
+                    }
+                } catch (final IOException ioe) {
+                    LogUtil.handleException(log, ioe, true);
+                }
+                this.changed = false;
+                log.trace("AFP metrics cache file written.");
+            }
+        }
+    }
+
+    /**
+     * Returns whether this cache has changed since it was last read.
+     *
+     * @return true if the cache has changed
+     */
+    public boolean hasChanged() {
+        return this.changed;
+    }
+
+    /**
+     * Restores the compiled metrics of a character set.
+     *
+     * @param key
+     *            the cache key identifying character set, code page and
+     *            encoding
+     * @param characterSetLastModified
+     *            the modification time of the character set file
+     * @param codePageLastModified
+     *            the modification time of the code page file
+     * @param characterSet
+     *            the (empty) character set receiving the metrics
+     * @return true if up-to-date metrics were found and restored
+     */
+    public boolean restore(final String key,
+            final long characterSetLastModified,
+            final long codePageLastModified, final CharacterSet characterSet) {
+        final CachedCharacterSet cached;
+        synchronized (this.changeLock) {
+            cached = this.characterSetMap.get(key);
+        }
+        if (cached == null
+                || cached.characterSetLastModified != characterSetLastModified
+                || cached.codePageLastModified != codePageLastModified) {
+            return false;
+        }
+        characterSet.setNominalVerticalSize(cached.nominalVerticalSize);
+        for (final CharacterSetOrientation cso : cached.orientations) {
+            characterSet.addCharacterSetOrientation(cso);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the compiled metrics of a character set.
+     *
+     * @param key
+     *            the cache key identifying character set, code page and
+     *            encoding
+     * @param characterSetLastModified
+     *            the modification time of the character set file
+     * @param codePageLastModified
+     *            the modification time of the code page file
+     * @param characterSet
+     *            the character set holding the metrics
+     */
+    public void add(final String key, final long characterSetLastModified,
+            final long codePageLastModified, final CharacterSet characterSet) {
+        final CachedCharacterSet cached = new CachedCharacterSet(
+                characterSetLastModified, codePageLastModified,
+                characterSet.getNominalVerticalSize(),
+                characterSet.getCharacterSetOrientations());
+        synchronized (this.changeLock) {
+            this.characterSetMap.put(key, cached);
+            this.changed = true;
+        }
+    }
+
+    /**
+     * Clears the metrics cache.
+     */
+    public void clear() {
+        synchronized (this.changeLock) {
+            this.characterSetMap.clear();
+            this.changed = true;
+        }
+    }
+
+    private static class CachedCharacterSet implements Serializable {
+
+        private static final long serialVersionUID = -6018736105562341507L;
+
+        private final long characterSetLastModified;
+
+        private final long codePageLastModified;
+
+        private final int nominalVerticalSize;
+
+        private final CharacterSetOrientation[] orientations;
+
+        CachedCharacterSet(final long characterSetLastModified,
+                final long codePageLastModified, final int nominalVerticalSize,
+                final CharacterSetOrientation[] orientations) {
+            this.characterSetLastModified = characterSetLastModified;
+            this.codePageLastModified = codePageLastModified;
+            this.nominalVerticalSize = nominalVerticalSize;
+            this.orientations = orientations;
+        }
+    }
+}
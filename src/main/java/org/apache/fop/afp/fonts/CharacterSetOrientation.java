@@ -19,6 +19,7 @@
 
 package org.apache.fop.afp.fonts;
 
+import java.io.Serializable;
 import java.util.Arrays;
 
 /**
@@ -40,7 +41,9 @@ import java.util.Arrays;
  * attribute in the afp-font.xml file.
  * <p/>
  */
-public class CharacterSetOrientation {
+public class CharacterSetOrientation implements Serializable {
+
+    private static final long serialVersionUID = -2408622592513925436L;
 
     /**
      * The ascender height for the character set
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.afp.fonts;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct lookup table from Unicode characters to code points for single-byte
+ * encodings. The table is organized in pages of 256 characters, only pages
+ * containing at least one mapped character are allocated. Tables are immutable
+ * and shared by all character sets using the same encoding.
+ */
+final class SingleByteCodePointTable {
+
+    /** Marks a character without a code point in the table */
+    private static final short UNMAPPED = -1;
+
+    private static final Map<String, SingleByteCodePointTable> TABLES = new HashMap<>();
+
+    private final short[][] pages = new short[256][];
+
+    private SingleByteCodePointTable(final Charset charset) {
+        final CharsetDecoder decoder = charset.newDecoder();
+        decoder.onMalformedInput(CodingErrorAction.REPORT);
+        decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+        final CharsetEncoder encoder = charset.newEncoder();
+        final byte[] in = new byte[1];
+        final char[] out = new char[1];
+        for (int b = 0; b < 256; b++) {
+            in[0] = (byte) b;
+            try {
+                final CharBuffer cb = decoder.decode(ByteBuffer.wrap(in));
+                if (cb.remaining() != 1) {
+                    continue;
+                }
+                out[0] = cb.get();
+                // Several code points may decode to the same character, so
+                // the encoder decides which one is used
+                final ByteBuffer bb = encoder.encode(CharBuffer.wrap(out));
+                if (bb.remaining() == 1) {
+                    put(out[0], bb.get() & 0xFF);
+                }
+            } catch (final CharacterCodingException e) {
+                // no character for this code point
+            }
+        }
+    }
+
+    /**
+     * Returns the lookup table for an encoding.
+     *
+     * @param charset
+     *            the charset of the encoding
+     * @return the lookup table, or null if the encoding is not a single-byte
+     *         encoding
+     */
+    static SingleByteCodePointTable getInstance(final Charset charset) {
+        if (!charset.canEncode()
+                || charset.newEncoder().maxBytesPerChar() != 1) {
+            return null;
+        }
+        synchronized (TABLES) {
+            SingleByteCodePointTable table = TABLES.get(charset.name());
+            if (table == null) {
+                table = new SingleByteCodePointTable(charset);
+                TABLES.put(charset.name(), table);
+            }
+            return table;
+        }
+    }
+
+    private void put(final char c, final int codePoint) {
+        short[] page = this.pages[c >> 8];
+        if (page == null) {
+            page = new short[256];
+            Arrays.fill(page, UNMAPPED);
+            this.pages[c >> 8] = page;
+        }
+        page[c & 0xFF] = (short) codePoint;
+    }
+
+    /**
+     * Returns the code point of a character.
+     *
+     * @param c
+     *            the Unicode character
+     * @return the code point (0-255), or -1 if the character is not in the
+     *         table
+     */
+    int getCodePoint(final char c) {
+        final short[] page = this.pages[c >> 8];
+        return page != null ? page[c & 0xFF] : UNMAPPED;
+    }
+
+    /**
+     * Encodes a character sequence.
+     *
+     * @param chars
+     *            the characters
+     * @return the encoded characters, or null if the sequence contains a
+     *         character which is not in the table
+     */
+    byte[] encode(final CharSequence chars) {
+        final int len = chars.length();
+        final byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            final int codePoint = getCodePoint(chars.charAt(i));
+            if (codePoint < 0) {
+                return null;
+            }
+            bytes[i] = (byte) codePoint;
+        }
+        return bytes;
+    }
+}
@@ -73,6 +73,28 @@ Startable {
         writeObjects(this.objects, os);
     }
 
+    /**
+     * Writes the drawing orders of this container and of all nested containers
+     * without removing them, so the container can still be written afterwards.
+     * The container headers are not written. Used to compute a digest of the
+     * graphics content.
+     *
+     * @param os
+     *            the output stream
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeDrawingOrders(final OutputStream os) throws IOException {
+        for (final StructuredData object : this.objects) {
+            if (object instanceof AbstractGraphicsDrawingOrderContainer) {
+                ((AbstractGraphicsDrawingOrderContainer) object)
+                        .writeDrawingOrders(os);
+            } else {
+                object.writeToStream(os);
+            }
+        }
+    }
+
     /**
      * Adds a given graphics object to this container
      *
@@ -387,6 +387,22 @@ public class GraphicsObject extends AbstractDataObject {
         // invalidates the graphics state
     }
 
+    /**
+     * Writes the drawing orders of this graphics object without consuming
+     * them, so the object can still be written afterwards. Used to compute a
+     * digest of the graphics content.
+     *
+     * @param os
+     *            the output stream
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void writeDrawingOrders(final OutputStream os) throws IOException {
+        for (final GraphicsData data : this.objects) {
+            data.writeDrawingOrders(os);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void setComplete(final boolean complete) {
@@ -54,6 +54,21 @@ public abstract class PtocaBuilder implements PtocaConstants {
     /** the current inter character adjustment */
     private int currentInterCharacterAdjustment = 0;
 
+    /**
+     * transparent data not written yet, so it can be merged with directly
+     * following data into a single control sequence
+     */
+    private final byte[] pendingText = new byte[TRANSPARENT_DATA_MAX_SIZE];
+
+    /** the number of bytes in {@link #pendingText} */
+    private int pendingTextLength = 0;
+
+    /**
+     * relative inline move not written yet, so it can be merged with directly
+     * following moves into a single control sequence
+     */
+    private int pendingInlineMove = 0;
+
     /**
      * Returns an {@link OutputStream} for the next control sequence. This gives
      * a subclass a chance to do chunking of control sequences into multiple
@@ -75,6 +90,7 @@ public abstract class PtocaBuilder implements PtocaConstants {
     }
 
     private void commit(final byte functionType) throws IOException {
+        flushPending();
         final int length = this.baout.size() + 2;
         assert length < 256;
 
@@ -84,8 +100,26 @@ public abstract class PtocaBuilder implements PtocaConstants {
         this.baout.writeTo(out);
     }
 
-    private void write(final byte[] data, final int offset, final int length) {
-        this.baout.write(data, offset, length);
+    /**
+     * Writes the pending transparent data or relative inline move, if any.
+     * At most one of them is pending at any time.
+     */
+    private void flushPending() throws IOException {
+        if (this.pendingTextLength > 0) {
+            final int length = this.pendingTextLength + 2;
+            final OutputStream out = getOutputStreamForControlSequence(length);
+            out.write(length);
+            out.write(chained(TRN));
+            out.write(this.pendingText, 0, this.pendingTextLength);
+            this.pendingTextLength = 0;
+        } else if (this.pendingInlineMove != 0) {
+            final OutputStream out = getOutputStreamForControlSequence(4);
+            out.write(4);
+            out.write(chained(RMI));
+            out.write(this.pendingInlineMove >>> 8 & 0xFF);
+            out.write(this.pendingInlineMove & 0xFF);
+            this.pendingInlineMove = 0;
+        }
     }
 
     private void writeByte(final int data) {
@@ -104,6 +138,7 @@ public abstract class PtocaBuilder implements PtocaConstants {
      *             if an I/O error occurs
      */
     public void writeIntroducer() throws IOException {
+        flushPending();
         final OutputStream out = getOutputStreamForControlSequence(ESCAPE.length);
         out.write(ESCAPE);
     }
@@ -163,9 +198,17 @@ public abstract class PtocaBuilder implements PtocaConstants {
      *             if an I/O error occurs
      */
     public void relativeMoveInline(final int increment) throws IOException {
-        newControlSequence();
-        writeShort(increment);
-        commit(chained(RMI));
+        if (this.pendingTextLength > 0) {
+            flushPending();
+        }
+        final int move = this.pendingInlineMove + increment;
+        if (move < Short.MIN_VALUE || move > Short.MAX_VALUE) {
+            flushPending();
+            this.pendingInlineMove = increment;
+        } else {
+            this.pendingInlineMove = move;
+        }
+        this.currentX = -1;
     }
 
     /**
@@ -190,13 +233,12 @@ public abstract class PtocaBuilder implements PtocaConstants {
         this.currentX = -1;
     }
 
-    private static final int TRANSPARENT_MAX_SIZE = 253;
-
     /**
      * The Transparent Data control sequence contains a sequence of code points
      * that are presented without a scan for embedded control sequences. If the
      * data is larger than fits in one chunk, additional chunks are
-     * automatically generated.
+     * automatically generated. Data added without any other control sequence
+     * in between is merged into as few chunks as possible.
      *
      * @param data
      *            The text data to add.
@@ -204,37 +246,26 @@ public abstract class PtocaBuilder implements PtocaConstants {
      *             if an I/O error occurs
      */
     public void addTransparentData(final byte[] data) throws IOException {
-        if (data.length <= TRANSPARENT_DATA_MAX_SIZE) {
-            addTransparentDataChunk(data);
-        } else {
-            // data size greater than TRANSPARENT_MAX_SIZE, so slice
-            final int numTransData = data.length / TRANSPARENT_DATA_MAX_SIZE;
-            int currIndex = 0;
-            for (int transDataCnt = 0; transDataCnt < numTransData; transDataCnt++) {
-                addTransparentDataChunk(data, currIndex,
-                        TRANSPARENT_DATA_MAX_SIZE);
-                currIndex += TRANSPARENT_DATA_MAX_SIZE;
-            }
-            final int left = data.length - currIndex;
-            addTransparentDataChunk(data, currIndex, left);
+        if (data.length == 0) {
+            return;
         }
-    }
-
-    private void addTransparentDataChunk(final byte[] data) throws IOException {
-        addTransparentDataChunk(data, 0, data.length);
-    }
-
-    private void addTransparentDataChunk(final byte[] data, final int offset,
-            final int length) throws IOException {
-        if (length > TRANSPARENT_MAX_SIZE) {
-            // Check that we are not exceeding the maximum length
-            throw new IllegalArgumentException(
-                    "Transparent data is longer than " + TRANSPARENT_MAX_SIZE
-                            + " bytes");
+        if (this.pendingInlineMove != 0) {
+            flushPending();
         }
-        newControlSequence();
-        write(data, offset, length);
-        commit(chained(TRN));
+        int offset = 0;
+        while (offset < data.length) {
+            if (this.pendingTextLength == TRANSPARENT_DATA_MAX_SIZE) {
+                flushPending();
+            }
+            final int length = Math.min(data.length - offset,
+                    TRANSPARENT_DATA_MAX_SIZE - this.pendingTextLength);
+            System.arraycopy(data, offset, this.pendingText,
+                    this.pendingTextLength, length);
+            this.pendingTextLength += length;
+            offset += length;
+        }
+        // the presentation position has advanced by the width of the text
+        this.currentX = -1;
     }
 
     /**
@@ -23,6 +23,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 
 import javax.xml.transform.Source;
@@ -95,4 +96,23 @@ public class DefaultFOPResourceAccessor extends SimpleResourceAccessor {
         return url.openStream();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public long getLastModified(final URI uri) {
+        final URI resolved = resolveAgainstBase(uri);
+        if (resolved.isAbsolute()) {
+            return getLastModifiedOfFile(resolved);
+        }
+        final String base = this.categoryBaseURI != null ? this.categoryBaseURI
+                : this.userAgent.getBaseURL();
+        if (base == null) {
+            return -1;
+        }
+        try {
+            return getLastModifiedOfFile(new URI(base).resolve(resolved));
+        } catch (final URISyntaxException e) {
+            return -1;
+        }
+    }
+
 }
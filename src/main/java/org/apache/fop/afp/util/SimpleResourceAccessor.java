@@ -82,4 +82,35 @@ public class SimpleResourceAccessor implements ResourceAccessor {
         return url.openStream();
     }
 
+    /**
+     * Returns the modification time of a resource. Only local files are
+     * supported.
+     * 
+     * @param uri
+     *            the URI of the resource
+     * @return the modification time, or -1 if it can't be determined
+     */
+    public long getLastModified(final URI uri) {
+        return getLastModifiedOfFile(resolveAgainstBase(uri));
+    }
+
+    /**
+     * Returns the modification time of a resolved resource, if it is a local
+     * file.
+     * 
+     * @param resolved
+     *            the absolute URI of the resource
+     * @return the modification time, or -1 if it can't be determined
+     */
+    protected static long getLastModifiedOfFile(final URI resolved) {
+        if (resolved.isAbsolute() && "file".equals(resolved.getScheme())
+                && !resolved.isOpaque()) {
+            final File file = new File(resolved);
+            if (file.isFile()) {
+                return file.lastModified();
+            }
+        }
+        return -1;
+    }
+
 }
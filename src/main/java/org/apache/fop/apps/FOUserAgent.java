@@ -42,6 +42,7 @@ import org.apache.fop.events.EventListener;
 import org.apache.fop.events.FOPEventListenerProxy;
 import org.apache.fop.fo.FOEventHandler;
 import org.apache.fop.fonts.FontManager;
+import org.apache.fop.render.ImagePreloader;
 import org.apache.fop.render.Renderer;
 import org.apache.fop.render.RendererFactory;
 import org.apache.fop.render.XMLHandlerRegistry;
@@ -121,24 +122,9 @@ public class FOUserAgent {
     /** Set of keywords applicable to this document. */
     protected String keywords = null;
 
-    private final ImageSessionContext imageSessionContext = new AbstractImageSessionContext() {
+    private final ImageSessionContext imageSessionContext = createImageSessionContext();
 
-        @Override
-        public ImageContext getParentContext() {
-            return getFactory();
-        }
-
-        @Override
-        public float getTargetResolution() {
-            return FOUserAgent.this.getTargetResolution();
-        }
-
-        @Override
-        public Source resolveURI(final String uri) {
-            return FOUserAgent.this.resolveURI(uri);
-        }
-
-    };
+    private ImagePreloader imagePreloader;
 
     /**
      * Main constructor. <b>This constructor should not be called directly.
@@ -548,6 +534,51 @@ public class FOUserAgent {
         return this.imageSessionContext;
     }
 
+    /**
+     * Creates a new image session context for this rendering run. The context
+     * returned by {@link #getImageSessionContext()} is not thread-safe, so
+     * code that loads images on other threads needs a context of its own.
+     *
+     * @return a new ImageSessionContext instance
+     */
+    public ImageSessionContext createImageSessionContext() {
+        return new AbstractImageSessionContext() {
+
+            @Override
+            public ImageContext getParentContext() {
+                return getFactory();
+            }
+
+            @Override
+            public float getTargetResolution() {
+                return FOUserAgent.this.getTargetResolution();
+            }
+
+            @Override
+            public Source resolveURI(final String uri) {
+                return FOUserAgent.this.resolveURI(uri);
+            }
+
+        };
+    }
+
+    /**
+     * Returns the image preloader which loads the images of this rendering run
+     * ahead of painting.
+     *
+     * @return the image preloader or null if image preloading is disabled
+     * @see FopFactory#setImagePreloadingThreads(int)
+     */
+    public ImagePreloader getImagePreloader() {
+        if (this.imagePreloader == null) {
+            final int threads = getFactory().getImagePreloadingThreads();
+            if (threads > 0) {
+                this.imagePreloader = new ImagePreloader(this, threads);
+            }
+        }
+        return this.imagePreloader;
+    }
+
     // ---------------------------------------------- environment-level stuff
     // (convenience access to FopFactory methods)
 
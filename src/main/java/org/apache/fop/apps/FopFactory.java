@@ -41,6 +41,8 @@ import org.apache.fop.fonts.FontCache;
 import org.apache.fop.fonts.FontManager;
 import org.apache.fop.hyphenation.HyphenationTreeResolver;
 import org.apache.fop.layoutmgr.LayoutManagerMaker;
+import org.apache.fop.layoutmgr.inline.LineBreakCache;
+import org.apache.fop.pdf.EncodedImageCache;
 import org.apache.fop.render.ImageHandlerRegistry;
 import org.apache.fop.render.RendererFactory;
 import org.apache.fop.render.XMLHandlerRegistry;
@@ -85,6 +87,15 @@ public class FopFactory implements ImageContext {
     /** Font manager for font substitution, autodetection and caching **/
     private final FontManager fontManager;
 
+    /** Cache for line breaking results (null if disabled) */
+    private volatile LineBreakCache lineBreakCache = null;
+
+    /** Cache for encoded PDF image streams (null if disabled) */
+    private volatile EncodedImageCache encodedImageCache = null;
+
+    /** Number of threads preloading images per rendering run (0 if disabled) */
+    private volatile int imagePreloadingThreads = 0;
+
     /** Configuration layer used to configure fop */
     private FopFactoryConfigurator config = null;
 
@@ -524,6 +535,93 @@ public class FopFactory implements ImageContext {
         return this.strictFOValidation;
     }
 
+    /**
+     * Returns the cache used to reuse line breaking results for identical
+     * paragraphs.
+     *
+     * @return the line break cache or null if line break caching is disabled
+     */
+    public LineBreakCache getLineBreakCache() {
+        return this.lineBreakCache;
+    }
+
+    /**
+     * Controls whether line breaking results are cached. When enabled, the
+     * line breaks computed for a paragraph are reused for every identical
+     * paragraph (same text, fonts, available width and alignment, indentation
+     * and hyphenation settings) laid out with this factory. This is disabled
+     * by default.
+     *
+     * @param maxParagraphs
+     *            the maximum number of paragraphs to remember, or 0 to disable
+     *            line break caching
+     */
+    public void setLineBreakCacheSize(final int maxParagraphs) {
+        if (maxParagraphs > 0) {
+            this.lineBreakCache = new LineBreakCache(maxParagraphs);
+        } else {
+            this.lineBreakCache = null;
+        }
+    }
+
+    /**
+     * Returns the cache used to reuse encoded image streams in PDF output.
+     *
+     * @return the encoded image cache or null if encoded image caching is
+     *         disabled
+     */
+    public EncodedImageCache getEncodedImageCache() {
+        return this.encodedImageCache;
+    }
+
+    /**
+     * Controls whether encoded image streams are cached. When enabled, an
+     * image written to a PDF document is converted and compressed only once;
+     * every later document rendered with this factory which contains the same
+     * image with the same filter settings copies the encoded stream. This is
+     * disabled by default.
+     *
+     * @param maxBytes
+     *            the maximum total size of the cached streams in bytes, or 0
+     *            to disable encoded image caching
+     */
+    public void setEncodedImageCacheSize(final long maxBytes) {
+        if (maxBytes > 0) {
+            this.encodedImageCache = new EncodedImageCache(maxBytes);
+        } else {
+            this.encodedImageCache = null;
+        }
+    }
+
+    /**
+     * Returns the number of threads which load and convert the images of a
+     * rendering run ahead of painting.
+     *
+     * @return the number of threads, 0 if image preloading is disabled
+     */
+    public int getImagePreloadingThreads() {
+        return this.imagePreloadingThreads;
+    }
+
+    /**
+     * Controls whether images are loaded and converted on background threads
+     * while the document is parsed and laid out, so the image I/O overlaps
+     * with layout instead of holding up painting. This is currently supported
+     * for PDF output and disabled by default.
+     *
+     * @param threads
+     *            the number of threads per rendering run, or 0 to disable
+     *            image preloading
+     * @see org.apache.fop.render.ImagePreloader
+     */
+    public void setImagePreloadingThreads(final int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException(
+                    "The number of image preloading threads must not be negative");
+        }
+        this.imagePreloadingThreads = threads;
+    }
+
     /**
      * @return true if the indent inheritance should be broken when crossing
      *         reference area boundaries (for more info, see the javadoc for the
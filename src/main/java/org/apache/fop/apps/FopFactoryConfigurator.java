@@ -172,6 +172,32 @@ public class FopFactoryConfigurator {
                 LogUtil.handleException(log, e, strict);
             }
         }
+        if (this.cfg.getChild("line-break-cache", false) != null) {
+            try {
+                factory.setLineBreakCacheSize(this.cfg.getChild(
+                        "line-break-cache").getValueAsInteger());
+            } catch (final ConfigurationException e) {
+                LogUtil.handleException(log, e, strict);
+            }
+        }
+        if (this.cfg.getChild("encoded-image-cache", false) != null) {
+            try {
+                factory.setEncodedImageCacheSize(this.cfg.getChild(
+                        "encoded-image-cache").getValueAsLong());
+            } catch (final ConfigurationException e) {
+                LogUtil.handleException(log, e, strict);
+            }
+        }
+        if (this.cfg.getChild("image-preloading-threads", false) != null) {
+            try {
+                factory.setImagePreloadingThreads(this.cfg.getChild(
+                        "image-preloading-threads").getValueAsInteger());
+            } catch (final ConfigurationException e) {
+                LogUtil.handleException(log, e, strict);
+            } catch (final IllegalArgumentException e) {
+                LogUtil.handleException(log, e, strict);
+            }
+        }
         final Configuration pageConfig = this.cfg
                 .getChild("default-page-settings");
         if (pageConfig.getAttribute("height", null) != null) {
@@ -34,4 +34,6 @@ public interface MimeConstants extends
     String MIME_FOP_AREA_TREE = "application/X-fop-areatree";
     /** Apache FOP's intermediate format XML */
     String MIME_FOP_IF = "application/X-fop-intermediate-format";
+    /** Apache FOP's intermediate format in binary encoding */
+    String MIME_FOP_IF_BINARY = "application/X-fop-intermediate-format-binary";
 }
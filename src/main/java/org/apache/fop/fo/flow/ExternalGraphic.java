@@ -31,6 +31,7 @@ import org.apache.fop.fo.FONode;
 import org.apache.fop.fo.PropertyList;
 import org.apache.fop.fo.ValidationException;
 import org.apache.fop.fo.properties.FixedLength;
+import org.apache.fop.render.ImagePreloader;
 import org.apache.xmlgraphics.image.loader.ImageException;
 import org.apache.xmlgraphics.image.loader.ImageInfo;
 import org.apache.xmlgraphics.image.loader.ImageManager;
@@ -102,6 +103,11 @@ public class ExternalGraphic extends AbstractGraphics {
                 this.intrinsicAlignmentAdjust = FixedLength
                         .getInstance(-baseline);
             }
+            // start loading the image itself while layout goes on
+            final ImagePreloader preloader = userAgent.getImagePreloader();
+            if (preloader != null) {
+                preloader.preload(info);
+            }
         }
     }
 
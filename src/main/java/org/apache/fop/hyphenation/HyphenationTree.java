@@ -29,7 +29,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.MalformedURLException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -66,6 +68,12 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
      */
     private transient TernaryTree ivalues;
 
+    /**
+     * Optional bounded LRU memo of recently hyphenated words, null if
+     * disabled.
+     */
+    private transient volatile HyphenationMemo memo;
+
     public HyphenationTree() {
         this.stoplist = new HashMap<>(23); // usually a small table
         this.classmap = new TernaryTree();
@@ -316,8 +324,62 @@ public class HyphenationTree extends TernaryTree implements PatternConsumer {
      */
     public Hyphenation hyphenate(final String word, final int remainCharCount,
             final int pushCharCount) {
+        final HyphenationMemo m = this.memo;
+        if (m == null) {
+            final char[] w = word.toCharArray();
+            return hyphenate(w, 0, w.length, remainCharCount, pushCharCount);
+        }
+        final String key = remainCharCount + "/" + pushCharCount + "/" + word;
+        synchronized (m) {
+            final Hyphenation hyph = m.get(key);
+            if (hyph != null || m.containsKey(key)) {
+                return hyph;
+            }
+        }
         final char[] w = word.toCharArray();
-        return hyphenate(w, 0, w.length, remainCharCount, pushCharCount);
+        final Hyphenation hyph = hyphenate(w, 0, w.length, remainCharCount,
+                pushCharCount);
+        synchronized (m) {
+            m.put(key, hyph);
+        }
+        return hyph;
+    }
+
+    /**
+     * Sets the maximum number of hyphenated words this tree remembers. Results
+     * of {@link #hyphenate(String, int, int)} are kept in a least recently
+     * used map, so repeated words are not run through the patterns again.
+     *
+     * @param memoSize
+     *            the maximum number of words to remember (0 disables the
+     *            memo)
+     */
+    public void setMemoSize(final int memoSize) {
+        if (memoSize <= 0) {
+            this.memo = null;
+        } else if (this.memo == null || this.memo.maxSize != memoSize) {
+            this.memo = new HyphenationMemo(memoSize);
+        }
+    }
+
+    /** Bounded LRU map of word keys to their hyphenation (null if none) */
+    private static final class HyphenationMemo extends
+            LinkedHashMap<String, Hyphenation> {
+
+        private static final long serialVersionUID = 6358227004735931472L;
+
+        private final int maxSize;
+
+        HyphenationMemo(final int maxSize) {
+            super(Math.min(maxSize, 1024), 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+                final Map.Entry<String, Hyphenation> eldest) {
+            return size() > this.maxSize;
+        }
     }
 
     /**
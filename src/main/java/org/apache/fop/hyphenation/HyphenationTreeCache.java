@@ -19,21 +19,39 @@
 
 package org.apache.fop.hyphenation;
 
-import java.util.Hashtable;
+import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
- * This is a cache for HyphenationTree instances.
+ * This is a cache for HyphenationTree instances. It is safe for use by
+ * concurrent rendering threads: lookups are lock-free and a tree is loaded at
+ * most once per key, no matter how many threads ask for it at the same time.
  */
 public class HyphenationTreeCache {
 
     /** Contains the cached hyphenation trees */
-    private final Hashtable hyphenTrees = new Hashtable();
+    private final ConcurrentMap<String, HyphenationTree> hyphenTrees = new ConcurrentHashMap<>();
+
+    /** Hyphenation trees currently being loaded, by key */
+    private final ConcurrentMap<String, FutureTask<HyphenationTree>> loading = new ConcurrentHashMap<>();
+
     /**
      * Used to avoid multiple error messages for the same language if a pattern
      * file is missing.
      */
-    private Set missingHyphenationTrees;
+    private final Set<String> missingHyphenationTrees = Collections
+            .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Maximum number of hyphenated words memoized per tree (0 = disabled)
+     */
+    private volatile int memoSize = Integer.getInteger(
+            "org.apache.fop.hyphenation.memo-size", 0).intValue();
 
     /**
      * Looks in the cache if a hyphenation tree is available and returns it if
@@ -50,12 +68,85 @@ public class HyphenationTreeCache {
         final String key = constructKey(lang, country);
 
         // first try to find it in the cache
-        if (this.hyphenTrees.containsKey(key)) {
-            return (HyphenationTree) this.hyphenTrees.get(key);
-        } else if (this.hyphenTrees.containsKey(lang)) {
-            return (HyphenationTree) this.hyphenTrees.get(lang);
-        } else {
+        HyphenationTree hTree = this.hyphenTrees.get(key);
+        if (hTree == null) {
+            hTree = this.hyphenTrees.get(lang);
+        }
+        return hTree;
+    }
+
+    /**
+     * Returns the hyphenation tree for a key, loading it with the given loader
+     * if it is not in the cache yet. Concurrent requests for the same key wait
+     * for a single load instead of loading the tree several times. A key for
+     * which the loader returns null is noted as missing.
+     *
+     * @param key
+     *            the key (ex. "de_CH" or "en")
+     * @param loader
+     *            loads the hyphenation tree (may return null)
+     * @return the hyphenation tree or null if it is not available
+     */
+    public HyphenationTree getHyphenationTree(final String key,
+            final Callable<HyphenationTree> loader) {
+        HyphenationTree hTree = this.hyphenTrees.get(key);
+        if (hTree != null || isMissing(key)) {
+            return hTree;
+        }
+        final FutureTask<HyphenationTree> task = new FutureTask<>(
+                new Callable<HyphenationTree>() {
+                    @Override
+                    public HyphenationTree call() throws Exception {
+                        // a load which finished after the check above has
+                        // already cached its result before leaving the
+                        // loading map, don't load the tree a second time
+                        final HyphenationTree cached = HyphenationTreeCache.this.hyphenTrees
+                                .get(key);
+                        if (cached != null || isMissing(key)) {
+                            return cached;
+                        }
+                        return loader.call();
+                    }
+                });
+        FutureTask<HyphenationTree> pending = this.loading.putIfAbsent(key,
+                task);
+        if (pending == null) {
+            pending = task;
+            try {
+                task.run();
+                hTree = task.get();
+                if (hTree != null) {
+                    cache(key, hTree);
+                } else {
+                    noteMissing(key);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (final ExecutionException e) {
+                throw launderThrowable(e.getCause());
+            } finally {
+                this.loading.remove(key, task);
+            }
+            return hTree;
+        }
+        try {
+            return pending.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
             return null;
+        } catch (final ExecutionException e) {
+            throw launderThrowable(e.getCause());
+        }
+    }
+
+    private static RuntimeException launderThrowable(final Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        } else {
+            return new IllegalStateException(t);
         }
     }
 
@@ -86,9 +177,28 @@ public class HyphenationTreeCache {
      *            the hyphenation tree
      */
     public void cache(final String key, final HyphenationTree hTree) {
+        hTree.setMemoSize(this.memoSize);
         this.hyphenTrees.put(key, hTree);
     }
 
+    /**
+     * Sets the maximum number of hyphenated words each cached tree remembers.
+     * Documents tend to hyphenate the same vocabulary over and over again, so
+     * remembering recent results saves repeated pattern lookups. The default
+     * is taken from the system property
+     * <code>org.apache.fop.hyphenation.memo-size</code> and is 0 (disabled).
+     * 
+     * @param memoSize
+     *            the maximum number of memoized words per tree (0 disables
+     *            memoization)
+     */
+    public void setMemoSize(final int memoSize) {
+        this.memoSize = memoSize;
+        for (final HyphenationTree hTree : this.hyphenTrees.values()) {
+            hTree.setMemoSize(memoSize);
+        }
+    }
+
     /**
      * Notes a key to a hyphenation tree as missing. This is to avoid searching
      * a second time for a hyphneation pattern file which is not available.
@@ -97,9 +207,6 @@ public class HyphenationTreeCache {
      *            the key (ex. "de_CH" or "en")
      */
     public void noteMissing(final String key) {
-        if (this.missingHyphenationTrees == null) {
-            this.missingHyphenationTrees = new java.util.HashSet();
-        }
         this.missingHyphenationTrees.add(key);
     }
 
@@ -113,8 +220,7 @@ public class HyphenationTreeCache {
      * @return true if the hyphenation tree is unavailable
      */
     public boolean isMissing(final String key) {
-        return this.missingHyphenationTrees != null
-                && this.missingHyphenationTrees.contains(key);
+        return this.missingHyphenationTrees.contains(key);
     }
 
 }
@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.hyphenation;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Compact, versioned binary format for compiled hyphenation trees. Unlike Java
+ * serialization, the node arrays of the ternary trees (<code>lo</code>,
+ * <code>hi</code>, <code>eq</code>, <code>sc</code> and <code>kv</code>) are
+ * stored as flat big-endian blocks, so a pattern file can be bulk-read or
+ * memory-mapped directly into the primitive arrays of a
+ * {@link HyphenationTree}.
+ * <p>
+ * Layout: magic number, format version, the pattern tree, the character class
+ * tree, the packed interletter values and finally the exception list.
+ * </p>
+ */
+public final class HyphenationTreeFormat {
+
+    /** Magic number identifying a binary hyphenation pattern file ("FHYP") */
+    public static final int MAGIC = 0x46485950;
+
+    /** Current version of the format */
+    public static final int VERSION = 1;
+
+    private static final byte EXCEPTION_STRING = 0;
+    private static final byte EXCEPTION_HYPHEN = 1;
+
+    private HyphenationTreeFormat() {
+    }
+
+    /**
+     * Indicates whether the given stream starts with a binary hyphenation
+     * pattern header. The stream must support mark/reset; its position is
+     * left unchanged.
+     *
+     * @param in
+     *            the input stream
+     * @return true if the stream contains a binary hyphenation tree
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static boolean isBinaryFormat(final InputStream in)
+            throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException(
+                    "InputStream must support mark/reset");
+        }
+        in.mark(4);
+        try {
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                final int b = in.read();
+                if (b < 0) {
+                    return false;
+                }
+                magic = magic << 8 | b;
+            }
+            return magic == MAGIC;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Indicates whether the given file is a binary hyphenation pattern file.
+     *
+     * @param file
+     *            the file
+     * @return true if the file contains a binary hyphenation tree
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static boolean isBinaryFormat(final File file) throws IOException {
+        final InputStream in = new java.io.BufferedInputStream(
+                new FileInputStream(file), 4);
+        try {
+            return isBinaryFormat(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes a hyphenation tree in the binary format.
+     *
+     * @param hTree
+     *            the hyphenation tree
+     * @param out
+     *            the output stream (not closed by this method)
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public static void write(final HyphenationTree hTree, final OutputStream out)
+            throws IOException {
+        final DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeInt(VERSION);
+        writeTernaryTree(hTree, dout);
+        writeTernaryTree(hTree.classmap, dout);
+
+        final int vlen = hTree.vspace.length();
+        dout.writeInt(vlen);
+        dout.write(hTree.vspace.getArray(), 0, vlen);
+
+        final Map<String, List<String>> stoplist = hTree.stoplist;
+        dout.writeInt(stoplist.size());
+        for (final Map.Entry<String, List<String>> entry : stoplist.entrySet()) {
+            writeString(entry.getKey(), dout);
+            // The list alternates Strings and Hyphen objects
+            final List<?> items = entry.getValue();
+            dout.writeInt(items.size());
+            for (final Object item : items) {
+                if (item instanceof Hyphen) {
+                    final Hyphen hyphen = (Hyphen) item;
+                    dout.writeByte(EXCEPTION_HYPHEN);
+                    writeString(hyphen.preBreak, dout);
+                    writeString(hyphen.noBreak, dout);
+                    writeString(hyphen.postBreak, dout);
+                } else {
+                    dout.writeByte(EXCEPTION_STRING);
+                    writeString((String) item, dout);
+                }
+            }
+        }
+        dout.flush();
+    }
+
+    /**
+     * Reads a hyphenation tree in the binary format from a stream. The whole
+     * stream is bulk-read into memory before decoding.
+     *
+     * @param in
+     *            the input stream (not closed by this method)
+     * @return the hyphenation tree
+     * @throws IOException
+     *             if an I/O error occurs or the data is malformed
+     */
+    public static HyphenationTree read(final InputStream in) throws IOException {
+        return read(ByteBuffer.wrap(IOUtils.toByteArray(in)));
+    }
+
+    /**
+     * Reads a hyphenation tree in the binary format from a file. The file is
+     * memory-mapped, so its contents are copied straight into the tree's
+     * arrays without intermediate buffers.
+     *
+     * @param file
+     *            the file
+     * @return the hyphenation tree
+     * @throws IOException
+     *             if an I/O error occurs or the data is malformed
+     */
+    public static HyphenationTree read(final File file) throws IOException {
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            final FileChannel channel = in.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Reads a hyphenation tree in the binary format from a buffer.
+     *
+     * @param buf
+     *            the buffer, positioned at the start of the header
+     * @return the hyphenation tree
+     * @throws IOException
+     *             if the data is malformed
+     */
+    public static HyphenationTree read(final ByteBuffer buf) throws IOException {
+        try {
+            if (buf.getInt() != MAGIC) {
+                throw new IOException("Not a binary hyphenation pattern file");
+            }
+            final int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException(
+                        "Unsupported binary hyphenation pattern version: "
+                                + version);
+            }
+            final HyphenationTree hTree = new HyphenationTree();
+            readTernaryTree(hTree, buf);
+            readTernaryTree(hTree.classmap, buf);
+
+            final int vlen = buf.getInt();
+            final ByteVector vspace = new ByteVector(vlen + 1);
+            vspace.alloc(vlen);
+            buf.get(vspace.getArray(), 0, vlen);
+            hTree.vspace = vspace;
+
+            final int exceptionCount = buf.getInt();
+            final HashMap<String, List<String>> stoplist = new HashMap<>(
+                    Math.max(23, exceptionCount * 4 / 3 + 1));
+            for (int i = 0; i < exceptionCount; i++) {
+                final String word = readString(buf);
+                final int n = buf.getInt();
+                final List items = new ArrayList(n);
+                for (int j = 0; j < n; j++) {
+                    final byte type = buf.get();
+                    if (type == EXCEPTION_HYPHEN) {
+                        items.add(new Hyphen(readString(buf), readString(buf),
+                                readString(buf)));
+                    } else if (type == EXCEPTION_STRING) {
+                        items.add(readString(buf));
+                    } else {
+                        throw new IOException(
+                                "Invalid hyphenation exception entry: " + type);
+                    }
+                }
+                stoplist.put(word, items);
+            }
+            hTree.stoplist = stoplist;
+            return hTree;
+        } catch (final BufferUnderflowException e) {
+            throw new IOException("Truncated binary hyphenation pattern file");
+        }
+    }
+
+    private static void writeTernaryTree(final TernaryTree tree,
+            final DataOutputStream dout) throws IOException {
+        final int nodes = tree.freenode;
+        dout.writeChar(tree.root);
+        dout.writeChar(tree.freenode);
+        dout.writeInt(tree.length);
+        writeChars(tree.lo, nodes, dout);
+        writeChars(tree.hi, nodes, dout);
+        writeChars(tree.eq, nodes, dout);
+        writeChars(tree.sc, nodes, dout);
+        final int kvlen = tree.kv.length();
+        dout.writeInt(kvlen);
+        writeChars(tree.kv.getArray(), kvlen, dout);
+    }
+
+    private static void readTernaryTree(final TernaryTree tree,
+            final ByteBuffer buf) {
+        tree.root = buf.getChar();
+        tree.freenode = buf.getChar();
+        tree.length = buf.getInt();
+        final int nodes = tree.freenode;
+        tree.lo = readChars(buf, nodes);
+        tree.hi = readChars(buf, nodes);
+        tree.eq = readChars(buf, nodes);
+        tree.sc = readChars(buf, nodes);
+        tree.kv = new CharVector(readChars(buf, buf.getInt()));
+    }
+
+    private static void writeChars(final char[] chars, final int len,
+            final DataOutputStream dout) throws IOException {
+        for (int i = 0; i < len; i++) {
+            dout.writeChar(chars[i]);
+        }
+    }
+
+    private static char[] readChars(final ByteBuffer buf, final int len) {
+        final char[] chars = new char[len];
+        buf.asCharBuffer().get(chars);
+        buf.position(buf.position() + len * 2);
+        return chars;
+    }
+
+    private static void writeString(final String s, final DataOutputStream dout)
+            throws IOException {
+        if (s == null) {
+            dout.writeInt(-1);
+        } else {
+            dout.writeInt(s.length());
+            dout.writeChars(s);
+        }
+    }
+
+    private static String readString(final ByteBuffer buf) {
+        final int len = buf.getInt();
+        if (len < 0) {
+            return null;
+        }
+        return new String(readChars(buf, len));
+    }
+}
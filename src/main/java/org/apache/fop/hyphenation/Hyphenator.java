@@ -24,6 +24,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.concurrent.Callable;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
@@ -42,7 +45,7 @@ import org.xml.sax.InputSource;
 @Slf4j
 public class Hyphenator {
 
-    private static HyphenationTreeCache hTreeCache = null;
+    private static final HyphenationTreeCache hTreeCache = new HyphenationTreeCache();
 
     private HyphenationTree hyphenTree = null;
     private int remainCharCount = 2;
@@ -73,10 +76,7 @@ public class Hyphenator {
     }
 
     /** @return the default (static) hyphenation tree cache */
-    public static synchronized HyphenationTreeCache getHyphenationTreeCache() {
-        if (hTreeCache == null) {
-            hTreeCache = new HyphenationTreeCache();
-        }
+    public static HyphenationTreeCache getHyphenationTreeCache() {
         return hTreeCache;
     }
 
@@ -117,28 +117,30 @@ public class Hyphenator {
             return null;
         }
 
-        HyphenationTree hTree;
         // first try to find it in the cache
-        hTree = getHyphenationTreeCache().getHyphenationTree(lang, country);
+        final HyphenationTree hTree = cache.getHyphenationTree(lang, country);
         if (hTree != null) {
             return hTree;
         }
 
-        if (resolver != null) {
-            hTree = getUserHyphenationTree(key, resolver);
-        }
-        if (hTree == null) {
-            hTree = getFopHyphenationTree(key);
-        }
-
-        // put it into the pattern cache
-        if (hTree != null) {
-            cache.cache(key, hTree);
-        } else {
-            log.error("Couldn't find hyphenation pattern " + key);
-            cache.noteMissing(key);
-        }
-        return hTree;
+        // load it only once, even if several threads ask for it concurrently,
+        // and put it into the pattern cache
+        return cache.getHyphenationTree(key, new Callable<HyphenationTree>() {
+            @Override
+            public HyphenationTree call() {
+                HyphenationTree loaded = null;
+                if (resolver != null) {
+                    loaded = getUserHyphenationTree(key, resolver);
+                }
+                if (loaded == null) {
+                    loaded = getFopHyphenationTree(key);
+                }
+                if (loaded == null) {
+                    log.error("Couldn't find hyphenation pattern " + key);
+                }
+                return loaded;
+            }
+        });
     }
 
     private static InputStream getResourceStream(final String key) {
@@ -164,9 +166,15 @@ public class Hyphenator {
         return is;
     }
 
-    private static HyphenationTree readHyphenationTree(final InputStream in) {
+    private static HyphenationTree readHyphenationTree(InputStream in) {
         HyphenationTree hTree = null;
         try {
+            if (!in.markSupported()) {
+                in = new BufferedInputStream(in);
+            }
+            if (HyphenationTreeFormat.isBinaryFormat(in)) {
+                return HyphenationTreeFormat.read(in);
+            }
             final ObjectInputStream ois = new ObjectInputStream(in);
             hTree = (HyphenationTree) ois.readObject();
         } catch (final IOException ioe) {
@@ -248,6 +256,19 @@ public class Hyphenator {
         return getUserHyphenationTree(key, resolver);
     }
 
+    private static File toFile(final String systemId) {
+        if (systemId == null || !systemId.startsWith("file:")) {
+            return null;
+        }
+        try {
+            return new File(new URI(systemId));
+        } catch (final URISyntaxException e) {
+            return null;
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     /**
      * Load tree from serialized file or xml file using configuration settings
      *
@@ -262,7 +283,8 @@ public class Hyphenator {
         HyphenationTree hTree = null;
         // I use here the following convention. The file name specified in
         // the configuration is taken as the base name. First we try
-        // name + ".hyp" assuming a serialized HyphenationTree. If that fails
+        // name + ".hyp" assuming a serialized HyphenationTree (either in the
+        // binary HyphenationTreeFormat or as a Java object). If that fails
         // we try name + ".xml", assumming a raw hyphenation pattern file.
 
         // first try serialized object
@@ -275,6 +297,12 @@ public class Hyphenator {
                     in = ((StreamSource) source).getInputStream();
                 }
                 if (in == null) {
+                    // binary pattern files on disk are memory-mapped
+                    final File file = toFile(source.getSystemId());
+                    if (file != null && file.isFile()
+                            && HyphenationTreeFormat.isBinaryFormat(file)) {
+                        return HyphenationTreeFormat.read(file);
+                    }
                     if (source.getSystemId() != null) {
                         in = new java.net.URL(source.getSystemId())
                         .openStream();
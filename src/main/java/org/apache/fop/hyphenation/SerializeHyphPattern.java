@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -35,6 +36,7 @@ import lombok.extern.slf4j.Slf4j;
 public class SerializeHyphPattern {
 
     private boolean errorDump = false;
+    private boolean binaryFormat = false;
 
     /**
      * Controls the amount of error information dumped.
@@ -46,6 +48,17 @@ public class SerializeHyphPattern {
         this.errorDump = errorDump;
     }
 
+    /**
+     * Controls the output format of the compiled pattern files.
+     *
+     * @param binaryFormat
+     *            True to write the compact {@link HyphenationTreeFormat}
+     *            instead of a serialized Java object
+     */
+    public void setBinaryFormat(final boolean binaryFormat) {
+        this.binaryFormat = binaryFormat;
+    }
+
     /**
      * Compile all xml files in sourceDir, and write output hyp files in
      * targetDir
@@ -85,11 +98,20 @@ public class SerializeHyphPattern {
             final HyphenationTree hTree = buildPatternFile(infile);
             // serialize class
             try {
-                final ObjectOutputStream out = new ObjectOutputStream(
-                        new java.io.BufferedOutputStream(
-                                new java.io.FileOutputStream(outfile)));
-                out.writeObject(hTree);
-                out.close();
+                final OutputStream fout = new java.io.BufferedOutputStream(
+                        new java.io.FileOutputStream(outfile));
+                try {
+                    if (this.binaryFormat) {
+                        HyphenationTreeFormat.write(hTree, fout);
+                    } else {
+                        final ObjectOutputStream out = new ObjectOutputStream(
+                                fout);
+                        out.writeObject(hTree);
+                        out.flush();
+                    }
+                } finally {
+                    fout.close();
+                }
             } catch (final IOException ioe) {
                 log.error("Can't write compiled pattern file: " + outfile, ioe);
             }
@@ -139,10 +161,12 @@ public class SerializeHyphPattern {
      * Entry point for ant java task
      *
      * @param args
-     *            sourceDir, targetDir
+     *            sourceDir, targetDir and optionally "-binary" to write the
+     *            compact binary format
      */
     public static void main(final String[] args) {
         final SerializeHyphPattern ser = new SerializeHyphPattern();
+        ser.setBinaryFormat(args.length > 2 && "-binary".equals(args[2]));
         ser.serializeDir(new File(args[0]), new File(args[1]));
     }
 
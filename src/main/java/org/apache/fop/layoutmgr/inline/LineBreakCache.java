@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.layoutmgr.inline;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of line breaking results. Documents often contain identical
+ * paragraphs (repeated table cells, boilerplate, static content laid out on
+ * every page); for those the Knuth line breaking only needs to run once. The
+ * cache is keyed by everything the line breaking depends on: the widths,
+ * stretch, shrink and penalties of the paragraph's Knuth elements (which
+ * reflect text, font and font size), the alignment contexts of its inline
+ * boxes, the available IPD and the alignment, indentation and hyphenation
+ * settings of the block.
+ * <p>
+ * Instances are thread-safe and may be shared between renderings through the
+ * {@link org.apache.fop.apps.FopFactory}.
+ * </p>
+ */
+public class LineBreakCache {
+
+    private final int maxSize;
+
+    private final Map<Key, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new line break cache.
+     *
+     * @param maxSize
+     *            the maximum number of paragraphs to remember
+     */
+    public LineBreakCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, Entry>(Math.min(maxSize, 1024),
+                0.75f, true) {
+            private static final long serialVersionUID = -3514578316287634210L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+                return size() > LineBreakCache.this.maxSize;
+            }
+        };
+    }
+
+    /** @return the maximum number of paragraphs remembered by this cache */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /** @return the number of paragraphs currently in the cache */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /** @return the number of lookups that found a cached result */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /** @return the number of lookups that found no cached result */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /** Removes all entries and resets the statistics. */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.hits.set(0);
+        this.misses.set(0);
+    }
+
+    Entry get(final Key key) {
+        final Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+        }
+        if (entry != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return entry;
+    }
+
+    synchronized void put(final Key key, final Entry entry) {
+        this.entries.put(key, entry);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "LineBreakCache[size=" + size() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + "]";
+    }
+
+    /** Cached line breaking result of a paragraph. */
+    static final class Entry {
+
+        /** break possibilities, with positions not bound to a layout manager */
+        private final LineLayoutPossibilities possibilities;
+
+        /** height of the last line, as computed during line breaking */
+        private final int constantLineHeight;
+
+        Entry(final LineLayoutPossibilities possibilities,
+                final int constantLineHeight) {
+            this.possibilities = possibilities;
+            this.constantLineHeight = constantLineHeight;
+        }
+
+        LineLayoutPossibilities getPossibilities() {
+            return this.possibilities;
+        }
+
+        int getConstantLineHeight() {
+            return this.constantLineHeight;
+        }
+    }
+
+    /** Immutable key built from a sequence of int values. */
+    static final class Key {
+
+        private final int[] values;
+
+        private final int hash;
+
+        private Key(final int[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return this.hash == other.hash
+                    && Arrays.equals(this.values, other.values);
+        }
+    }
+
+    /** Collects the values of a {@link Key}. */
+    static final class KeyBuilder {
+
+        private int[] values;
+
+        private int size;
+
+        KeyBuilder(final int capacity) {
+            this.values = new int[Math.max(capacity, 16)];
+        }
+
+        KeyBuilder add(final int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = value;
+            return this;
+        }
+
+        KeyBuilder add(final boolean value) {
+            return add(value ? 1 : 0);
+        }
+
+        Key build() {
+            return new Key(Arrays.copyOf(this.values, this.size));
+        }
+    }
+}
@@ -153,6 +153,18 @@ public class LineLayoutManager extends InlineStackingLayoutManager implements
             this.baseline = bl;
         }
 
+        /**
+         * Creates a copy of this position for another layout manager and
+         * paragraph, used to replay cached line breaks.
+         */
+        LineBreakPosition rebind(final LayoutManager lm, final int index) {
+            return new LineBreakPosition(lm, index, this.startIndex,
+                    getLeafPos(), this.availableShrink, this.availableStretch,
+                    this.difference, this.ipdAdjust, this.dAdjust,
+                    this.startIndent, this.lineHeight, this.lineWidth,
+                    this.spaceBefore, this.spaceAfter, this.baseline);
+        }
+
     }
 
     private int textAlignment = EN_JUSTIFY;
@@ -326,6 +338,7 @@ public class LineLayoutManager extends InlineStackingLayoutManager implements
         private final int lineHeight;
         private final int lead;
         private final int follow;
+        private boolean lineOverflow;
         private static final double MAX_DEMERITS = 10e6;
 
         public LineBreakingAlgorithm(final int pageAlign, final int textAlign,
@@ -388,8 +401,11 @@ public class LineLayoutManager extends InlineStackingLayoutManager implements
                 this.addedPositions = 0;
             }
 
+            final int lack = difference + bestActiveNode.availableShrink;
+            if (lack < 0) {
+                this.lineOverflow = true;
+            }
             if (log.isWarnEnabled()) {
-                final int lack = difference + bestActiveNode.availableShrink;
                 if (lack < 0) {
                     final InlineLevelEventProducer eventProducer = InlineLevelEventProducer.Provider
                             .get(getFObj().getUserAgent().getEventBroadcaster());
@@ -418,6 +434,13 @@ public class LineLayoutManager extends InlineStackingLayoutManager implements
             this.addedPositions++;
         }
 
+        /**
+         * @return true if at least one of the lines found overflows
+         */
+        public boolean hasLineOverflow() {
+            return this.lineOverflow;
+        }
+
         /*
          * reset activePossibility, as if breakpoints have not yet been computed
          */
@@ -857,6 +880,29 @@ public class LineLayoutManager extends InlineStackingLayoutManager implements
             findHyphenationPoints(currPar);
         }
 
+        // reuse the line breaks of an identical paragraph, if available
+        final LineBreakCache cache = getFObj().getUserAgent().getFactory()
+                .getLineBreakCache();
+        LineBreakCache.Key cacheKey = null;
+        if (cache != null) {
+            cacheKey = createLineBreakCacheKey(alignment, currPar);
+            final LineBreakCache.Entry cached = cache.get(cacheKey);
+            if (cached != null) {
+                final int parIndex = this.knuthParagraphs.indexOf(currPar);
+                this.lineLayouts = new LineLayoutPossibilities(
+                        cached.getPossibilities(),
+                        new LineLayoutPossibilities.PositionMapper() {
+                            @Override
+                            public Position map(final Position pos) {
+                                return ((LineBreakPosition) pos).rebind(
+                                        LineLayoutManager.this, parIndex);
+                            }
+                        });
+                this.constantLineHeight = cached.getConstantLineHeight();
+                return this.lineLayouts;
+            }
+        }
+
         // first try
         int allowedBreaks;
         if (this.wrapOption == EN_NO_WRAP) {
@@ -952,9 +998,87 @@ public class LineLayoutManager extends InlineStackingLayoutManager implements
                 // + lineLayouts.canUseLessLines());
             }
         }
+        // overflowing lines are not cached, so their warnings are not lost
+        if (cacheKey != null && !alg.hasLineOverflow()
+                && this.lineLayouts.getPossibilitiesNumber() > 0) {
+            cache.put(cacheKey, new LineBreakCache.Entry(
+                    new LineLayoutPossibilities(this.lineLayouts,
+                            new LineLayoutPossibilities.PositionMapper() {
+                                @Override
+                                public Position map(final Position pos) {
+                                    // don't keep the layout manager alive
+                                    return ((LineBreakPosition) pos).rebind(
+                                            null, -1);
+                                }
+                            }), this.constantLineHeight));
+        }
         return this.lineLayouts;
     }
 
+    /**
+     * Creates the key under which the line breaks of a paragraph are cached.
+     * It covers the Knuth elements of the paragraph and all settings of this
+     * layout manager which influence line breaking.
+     *
+     * @param alignment
+     *            alignment in BP direction of the paragraph
+     * @param par
+     *            the paragraph
+     * @return the cache key
+     */
+    private LineBreakCache.Key createLineBreakCacheKey(final int alignment,
+            final Paragraph par) {
+        final LineBreakCache.KeyBuilder key = new LineBreakCache.KeyBuilder(
+                par.size() * 4 + 32);
+        key.add(alignment).add(this.ipd).add(this.textAlignment)
+                .add(this.textAlignmentLast).add(this.textIndent.getValue(this))
+                .add(this.lineHeight.getValue(this)).add(this.lead)
+                .add(this.follow).add(this.wrapOption)
+                .add(this.hyphenationProperties.hyphenate.getEnum())
+                .add(this.hyphenationLadderCount.getEnum() == EN_NO_LIMIT ? 0
+                        : this.hyphenationLadderCount.getValue())
+                .add(this.fobj.getLineStackingStrategy())
+                .add(this.fobj.getLineHeightShiftAdjustment())
+                .add(this.isFirstInBlock)
+                .add(this.knuthParagraphs.indexOf(par) == 0);
+        key.add(par.lineFiller.getMin()).add(par.lineFiller.getOpt())
+                .add(par.lineFiller.getMax()).add(par.ignoreAtStart)
+                .add(par.ignoreAtEnd);
+        key.add(par.size());
+        AlignmentContext lastAC = null;
+        for (final ListElement el : par) {
+            final KnuthElement element = (KnuthElement) el;
+            key.add(element.getWidth()).add(element.isAuxiliary());
+            if (element.isBox()) {
+                if (element instanceof KnuthInlineBox) {
+                    final AlignmentContext ac = ((KnuthInlineBox) element)
+                            .getAlignmentContext();
+                    if (ac == null) {
+                        key.add(1);
+                    } else if (ac == lastAC) {
+                        key.add(2);
+                    } else {
+                        key.add(3).add(ac.usesInitialBaselineTable())
+                                .add(ac.getAlignmentBaselineIdentifier())
+                                .add(ac.getBaselineShiftValue())
+                                .add(ac.getTotalAlignmentBaselineOffset())
+                                .add(ac.getAltitude()).add(ac.getDepth())
+                                .add(ac.getHeight());
+                        lastAC = ac;
+                    }
+                } else {
+                    key.add(0);
+                }
+            } else if (element.isGlue()) {
+                key.add(4).add(element.getStretch()).add(element.getShrink());
+            } else {
+                key.add(5).add(element.getPenalty())
+                        .add(((KnuthPenalty) element).isPenaltyFlagged());
+            }
+        }
+        return key.build();
+    }
+
     /**
      * Creates the element list in BP direction for the broken lines.
      *
@@ -74,6 +74,47 @@ public class LineLayoutPossibilities {
         this.optimumIndex = -1;
     }
 
+    /**
+     * Creates a copy of the given line layout possibilities, replacing every
+     * break position with the one returned by the mapper. Used to replay
+     * cached line breaking results for another paragraph.
+     *
+     * @param template
+     *            the possibilities to copy
+     * @param mapper
+     *            maps the break positions of the template
+     */
+    LineLayoutPossibilities(final LineLayoutPossibilities template,
+            final PositionMapper mapper) {
+        this.possibilitiesList = new ArrayList<>(
+                template.possibilitiesList.size());
+        for (final Possibility poss : template.possibilitiesList) {
+            final Possibility copy = new Possibility(poss.getLineCount(),
+                    poss.getDemerits());
+            for (final Position pos : poss.breakPositions) {
+                copy.breakPositions.add(mapper.map(pos));
+            }
+            this.possibilitiesList.add(copy);
+        }
+        this.savedPossibilities = new ArrayList<>();
+        this.minimumIndex = template.minimumIndex;
+        this.optimumIndex = template.optimumIndex;
+        this.maximumIndex = template.maximumIndex;
+        this.chosenIndex = template.chosenIndex;
+        this.savedOptLineCount = template.savedOptLineCount;
+    }
+
+    /** Maps a break position when copying line layout possibilities. */
+    interface PositionMapper {
+
+        /**
+         * @param pos
+         *            a break position of the copied possibilities
+         * @return the break position to use in the copy
+         */
+        Position map(Position pos);
+    }
+
     public void addPossibility(final int ln, final double dem) {
         this.possibilitiesList.add(new Possibility(ln, dem));
         if (this.possibilitiesList.size() == 1) {
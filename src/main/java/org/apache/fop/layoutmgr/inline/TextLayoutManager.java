@@ -669,16 +669,24 @@ public class TextLayoutManager extends LeafNodeLayoutManager {
         AreaInfo prevAreaInfo = null;
         returnList.add(sequence);
 
-        final LineBreakStatus lineBreakStatus = new LineBreakStatus();
+        // classify the remaining characters into break opportunities in
+        // a single pass
+        final int textLength = this.foText.length();
+        byte[] breakActions = null;
+        if (!this.keepTogether && this.nextStart < textLength) {
+            breakActions = new byte[textLength];
+            new LineBreakStatus().nextChars(this.foText.getCharArray(),
+                    this.nextStart, textLength, breakActions);
+        }
         this.thisStart = this.nextStart;
         boolean inWord = false;
         boolean inWhitespace = false;
         char ch = 0;
-        while (this.nextStart < this.foText.length()) {
+        while (this.nextStart < textLength) {
             ch = this.foText.charAt(this.nextStart);
             boolean breakOpportunity = false;
-            final byte breakAction = this.keepTogether ? LineBreakStatus.PROHIBITED_BREAK
-                    : lineBreakStatus.nextChar(ch);
+            final byte breakAction = breakActions == null ? LineBreakStatus.PROHIBITED_BREAK
+                    : breakActions[this.nextStart];
             switch (breakAction) {
             case LineBreakStatus.COMBINING_PROHIBITED_BREAK:
             case LineBreakStatus.PROHIBITED_BREAK:
@@ -166,7 +166,10 @@ class ActiveCell {
     }
 
     // TODO to be removed along with the RowPainter#computeContentLength method
-    /** See {@link ActiveCell#handleExplicitHeight(MinOptMax, MinOptMax)}. */
+    /**
+     * See
+     * {@link ActiveCell#handleExplicitHeight(PrimaryGridUnit, List, MinOptMax, MinOptMax)}.
+     */
     private static class FillerPenalty extends KnuthPenalty {
 
         private final int contentLength;
@@ -183,7 +186,10 @@ class ActiveCell {
         }
     }
 
-    /** See {@link ActiveCell#handleExplicitHeight(MinOptMax, MinOptMax)}. */
+    /**
+     * See
+     * {@link ActiveCell#handleExplicitHeight(PrimaryGridUnit, List, MinOptMax, MinOptMax)}.
+     */
     private static class FillerBox extends KnuthBox {
         FillerBox(final int length) {
             super(length, null, true);
@@ -233,8 +239,9 @@ class ActiveCell {
         this.bpAfterTrailing = this.paddingAfterTrailing
                 + pgu.getAfterBorderWidth(0, ConditionalBorder.REST);
         this.elementList = pgu.getElements();
-        handleExplicitHeight(pgu.getCell().getBlockProgressionDimension()
-                .toMinOptMax(tableLM), row.getExplicitHeight());
+        handleExplicitHeight(pgu, this.elementList, pgu.getCell()
+                .getBlockProgressionDimension().toMinOptMax(tableLM),
+                row.getExplicitHeight());
         this.knuthIter = this.elementList.listIterator();
         this.includedLength = -1; // Avoid troubles with cells having content of
         // zero length
@@ -261,12 +268,22 @@ class ActiveCell {
      * limitation explained on
      * http://wiki.apache.org/xmlgraphics-fop/TableLayout/KnownProblems occurs.
      * The list of elements needs to be re-adjusted after each break.
+     *
+     * @param pgu
+     *            the cell's primary grid unit
+     * @param elementList
+     *            the cell's element list
+     * @param cellBPD
+     *            the cell's block-progression-dimension
+     * @param rowBPD
+     *            the row's explicit height
      */
-    private void handleExplicitHeight(final MinOptMax cellBPD,
+    static void handleExplicitHeight(final PrimaryGridUnit pgu,
+            final List elementList, final MinOptMax cellBPD,
             final MinOptMax rowBPD) {
         final int minBPD = Math.max(cellBPD.getMin(), rowBPD.getMin());
         if (minBPD > 0) {
-            final ListIterator iter = this.elementList.listIterator();
+            final ListIterator iter = elementList.listIterator();
             int cumulateLength = 0;
             boolean prevIsBox = false;
             while (iter.hasNext() && cumulateLength < minBPD) {
@@ -276,7 +293,7 @@ class ActiveCell {
                     cumulateLength += el.getWidth();
                 } else if (el.isGlue()) {
                     if (prevIsBox) {
-                        this.elementList.add(iter.nextIndex() - 1,
+                        elementList.add(iter.nextIndex() - 1,
                                 new FillerPenalty(minBPD - cumulateLength));
                     }
                     prevIsBox = false;
@@ -292,12 +309,49 @@ class ActiveCell {
         }
         final int optBPD = Math.max(minBPD,
                 Math.max(cellBPD.getOpt(), rowBPD.getOpt()));
-        if (this.pgu.getContentLength() < optBPD) {
-            this.elementList.add(new FillerBox(optBPD
-                    - this.pgu.getContentLength()));
+        if (pgu.getContentLength() < optBPD) {
+            elementList.add(new FillerBox(optBPD - pgu.getContentLength()));
         }
     }
 
+    /**
+     * Returns true if the given cell content offers no legal break (see
+     * {@link #gotoNextLegalBreak()}) and has no footnotes, so the whole cell
+     * goes into a single step. This is typically the case for single-line
+     * cells.
+     *
+     * @param elementList
+     *            a cell's element list
+     * @return true if the content is not empty and cannot be broken
+     */
+    static boolean isUnbreakable(final List elementList) {
+        if (elementList.isEmpty()) {
+            return false;
+        }
+        boolean prevIsBox = false;
+        for (final Object obj : elementList) {
+            final KnuthElement el = (KnuthElement) obj;
+            if (el.isPenalty()) {
+                if (el.getPenalty() < KnuthElement.INFINITE
+                        || ((KnuthPenalty) el).getBreakClass() == Constants.EN_PAGE) {
+                    return false;
+                }
+                prevIsBox = false;
+            } else if (el.isGlue()) {
+                if (prevIsBox) {
+                    return false;
+                }
+            } else {
+                if (el instanceof KnuthBlockBox
+                        && ((KnuthBlockBox) el).hasAnchors()) {
+                    return false;
+                }
+                prevIsBox = true;
+            }
+        }
+        return true;
+    }
+
     PrimaryGridUnit getPrimaryGridUnit() {
         return this.pgu;
     }
@@ -398,7 +452,9 @@ class ActiveCell {
      * @return the step for this cell's first legal break
      */
     int getFirstStep() {
-        log.debug(this + ": min first step = " + this.nextStep.totalLength);
+        if (log.isDebugEnabled()) {
+            log.debug(this + ": min first step = " + this.nextStep.totalLength);
+        }
         return this.nextStep.totalLength;
     }
 
@@ -425,7 +481,9 @@ class ActiveCell {
                 + this.paddingAfterNormal
                 + this.pgu
                         .getAfterBorderWidth(ConditionalBorder.LEADING_TRAILING);
-        log.debug(this + ": last step = " + lastStep);
+        if (log.isDebugEnabled()) {
+            log.debug(this + ": last step = " + lastStep);
+        }
         return lastStep;
     }
 
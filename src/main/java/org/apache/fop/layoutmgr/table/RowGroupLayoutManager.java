@@ -103,8 +103,10 @@ class RowGroupLayoutManager {
      */
     private void createElementsForRowGroup(final LayoutContext context,
             final int alignment, final int bodyType, final LinkedList returnList) {
-        log.debug("Handling row group with " + this.rowGroup.length
-                + " rows...");
+        if (log.isDebugEnabled()) {
+            log.debug("Handling row group with " + this.rowGroup.length
+                    + " rows...");
+        }
         EffRow row;
         for (final EffRow element : this.rowGroup) {
             row = element;
@@ -19,6 +19,7 @@
 
 package org.apache.fop.layoutmgr.table;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,10 +27,13 @@ import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.fop.fo.Constants;
+import org.apache.fop.fo.flow.table.ConditionalBorder;
 import org.apache.fop.fo.flow.table.EffRow;
 import org.apache.fop.fo.flow.table.GridUnit;
 import org.apache.fop.fo.flow.table.PrimaryGridUnit;
+import org.apache.fop.fo.properties.CommonBorderPaddingBackground;
 import org.apache.fop.layoutmgr.BreakElement;
+import org.apache.fop.layoutmgr.ElementListUtils;
 import org.apache.fop.layoutmgr.Keep;
 import org.apache.fop.layoutmgr.KnuthBlockBox;
 import org.apache.fop.layoutmgr.KnuthBox;
@@ -58,10 +62,10 @@ public class TableStepper {
     private boolean rowFinished;
 
     /** Cells spanning the current row. */
-    private final List<ActiveCell> activeCells = new LinkedList<>();
+    private final List<ActiveCell> activeCells = new ArrayList<>();
 
     /** Cells that will start the next row. */
-    private final List<ActiveCell> nextActiveCells = new LinkedList<>();
+    private final List<ActiveCell> nextActiveCells = new ArrayList<>();
 
     /**
      * True if the next row is being delayed, that is, if cells spanning the
@@ -186,6 +190,9 @@ public class TableStepper {
     public LinkedList<ListElement> getCombinedKnuthElementsForRowGroup(
             final LayoutContext context, final EffRow[] rows, final int bodyType) {
         setup(rows);
+        if (isSingleStepRowGroup()) {
+            return getCombinedKnuthElementsForSingleStep(context, bodyType);
+        }
         activateCells(this.activeCells, 0);
         calcTotalHeight();
 
@@ -250,19 +257,10 @@ public class TableStepper {
                         false));
             }
 
-            int effPenaltyLen = Math.max(0, penaltyOrGlueLen);
             final TableHFPenaltyPosition penaltyPos = new TableHFPenaltyPosition(
                     getTableLM());
-            if (bodyType == TableRowIterator.BODY) {
-                if (!getTableLM().getTable().omitHeaderAtBreak()) {
-                    effPenaltyLen += this.tclm.getHeaderNetHeight();
-                    penaltyPos.headerElements = this.tclm.getHeaderElements();
-                }
-                if (!getTableLM().getTable().omitFooterAtBreak()) {
-                    effPenaltyLen += this.tclm.getFooterNetHeight();
-                    penaltyPos.footerElements = this.tclm.getFooterElements();
-                }
-            }
+            final int effPenaltyLen = Math.max(0, penaltyOrGlueLen)
+                    + addHeaderFooterElements(penaltyPos, bodyType);
 
             Keep keep = Keep.KEEP_AUTO;
             int stepPenalty = 0;
@@ -318,6 +316,169 @@ public class TableStepper {
         return returnList;
     }
 
+    /**
+     * Sets the header and footer to repeat at a break in the table body on the
+     * given break position.
+     *
+     * @param penaltyPos
+     *            the position of the break
+     * @param bodyType
+     *            Indicates what type of body is processed (body, header or
+     *            footer)
+     * @return the length the repeated header and footer add to the break
+     */
+    private int addHeaderFooterElements(
+            final TableHFPenaltyPosition penaltyPos, final int bodyType) {
+        int length = 0;
+        if (bodyType == TableRowIterator.BODY) {
+            if (!getTableLM().getTable().omitHeaderAtBreak()) {
+                length += this.tclm.getHeaderNetHeight();
+                penaltyPos.headerElements = this.tclm.getHeaderElements();
+            }
+            if (!getTableLM().getTable().omitFooterAtBreak()) {
+                length += this.tclm.getFooterNetHeight();
+                penaltyPos.footerElements = this.tclm.getFooterElements();
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns true if the current row group is laid out in a single step, the
+     * usual case for long fixed-layout tables with single-line cells: the row
+     * group is a single row of cells spanning neither rows nor columns, whose
+     * content offers no legal break and has no footnotes (see
+     * {@link ActiveCell#isUnbreakable(List)}), and which have no
+     * keep-with-next. The first step of such a row group also finishes it.
+     *
+     * @return true if the row group is made of one unbreakable step
+     */
+    private boolean isSingleStepRowGroup() {
+        if (getTableLM().getTable().isAutoLayout()
+                || this.rowGroup.length != 1) {
+            return false;
+        }
+        final EffRow row = this.rowGroup[0];
+        for (int i = 0; i < this.columnCount; ++i) {
+            final GridUnit gu = row.getGridUnit(i);
+            if (gu.isEmpty() || !gu.isPrimary()) {
+                return false;
+            }
+            final PrimaryGridUnit pgu = (PrimaryGridUnit) gu;
+            if (pgu.getCell().getNumberColumnsSpanned() != 1
+                    || pgu.getCell().getNumberRowsSpanned() != 1
+                    || !pgu.getKeepWithNext().isAuto()
+                    || !ActiveCell.isUnbreakable(pgu.getElements())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates the combined element list for a row group recognized by
+     * {@link #isSingleStepRowGroup()}. The cell parts and the box, penalty and
+     * glue of the only step are computed directly from the cells' lengths,
+     * borders and paddings, without going through {@link ActiveCell} and the
+     * step iteration. The resulting elements are the same.
+     *
+     * @param context
+     *            Active LayoutContext
+     * @param bodyType
+     *            Indicates what type of body is processed (body, header or
+     *            footer)
+     * @return the combined element list
+     */
+    private LinkedList<ListElement> getCombinedKnuthElementsForSingleStep(
+            final LayoutContext context, final int bodyType) {
+        final EffRow row = this.rowGroup[0];
+        final List<CellPart> cellParts = new ArrayList<>(this.columnCount);
+        int firstStep = 0;
+        int step = 0;
+        for (int i = 0; i < this.columnCount; ++i) {
+            final PrimaryGridUnit pgu = (PrimaryGridUnit) row.getGridUnit(i);
+            final List elementList = pgu.getElements();
+            ActiveCell.handleExplicitHeight(pgu, elementList, pgu.getCell()
+                    .getBlockProgressionDimension().toMinOptMax(getTableLM()),
+                    row.getExplicitHeight());
+            final CommonBorderPaddingBackground bordersPaddings = pgu
+                    .getCell().getCommonBorderPaddingBackground();
+            final TableCellLayoutManager cellLM = pgu.getCellLM();
+            final int paddingBefore = bordersPaddings.getPaddingBefore(false,
+                    cellLM);
+            final int paddingAfter = bordersPaddings.getPaddingAfter(false,
+                    cellLM);
+            final int bpBeforeNormal = paddingBefore
+                    + pgu.getBeforeBorderWidth(0, ConditionalBorder.NORMAL);
+            final int bpBeforeFirst = paddingBefore
+                    + pgu.getBeforeBorderWidth(0,
+                            ConditionalBorder.LEADING_TRAILING);
+            final int bpAfterNormal = paddingAfter
+                    + pgu.getAfterBorderWidth(ConditionalBorder.NORMAL);
+            final int bpAfterLast = paddingAfter
+                    + pgu.getAfterBorderWidth(ConditionalBorder.LEADING_TRAILING);
+            final int bpAfterTrailing = bordersPaddings.getPaddingAfter(true,
+                    cellLM) + pgu.getAfterBorderWidth(0, ConditionalBorder.REST);
+            final int contentLength = ElementListUtils
+                    .calcContentLength(elementList);
+            final int condBeforeContentLength = getLeadingGlueLength(elementList);
+
+            firstStep = Math.max(firstStep, bpBeforeNormal + contentLength
+                    + bpAfterTrailing);
+            step = Math.max(step, bpBeforeNormal + contentLength + bpAfterLast);
+            cellParts.add(new CellPart(pgu, 0, elementList.size() - 1, true,
+                    condBeforeContentLength, contentLength
+                            - condBeforeContentLength, 0, bpBeforeNormal,
+                    bpBeforeFirst, bpAfterNormal, bpAfterLast));
+        }
+        this.totalHeight = row.getHeight().getOpt();
+        final int penaltyOrGlueLen = step - this.totalHeight;
+        final int boxLen = step - Math.max(0, penaltyOrGlueLen);
+        if (log.isDebugEnabled()) {
+            log.debug("Single step: " + step + ", box = " + boxLen);
+        }
+
+        final LinkedList<ListElement> returnList = new LinkedList<>();
+        final TableContentPosition tcpos = new TableContentPosition(
+                getTableLM(), cellParts, row);
+        tcpos.setFlag(TableContentPosition.FIRST_IN_ROWGROUP, true);
+        tcpos.setFlag(TableContentPosition.LAST_IN_ROWGROUP, true);
+        returnList.add(new KnuthBox(boxLen, tcpos, false));
+
+        final TableHFPenaltyPosition penaltyPos = new TableHFPenaltyPosition(
+                getTableLM());
+        final int effPenaltyLen = Math.max(0, penaltyOrGlueLen)
+                + addHeaderFooterElements(penaltyPos, bodyType);
+        // The row being shorter than its first step (see considerRowLastStep)
+        // prevents a break
+        final int p = step < firstStep ? KnuthElement.INFINITE : Keep.KEEP_AUTO
+                .getPenalty();
+        returnList.add(new BreakElement(penaltyPos, effPenaltyLen, p,
+                Keep.KEEP_AUTO.getContext(), context));
+        if (penaltyOrGlueLen < 0) {
+            returnList.add(new KnuthGlue(-penaltyOrGlueLen, 0, 0,
+                    new Position(null), true));
+        }
+        return returnList;
+    }
+
+    /**
+     * Returns the length of the glue preceding the first box of an element
+     * list, which does not appear if the content starts a new page.
+     */
+    private static int getLeadingGlueLength(final List elementList) {
+        int length = 0;
+        for (final Object obj : elementList) {
+            final KnuthElement el = (KnuthElement) obj;
+            if (el.isBox()) {
+                break;
+            } else if (el.isGlue()) {
+                length += el.getWidth();
+            }
+        }
+        return length;
+    }
+
     /**
      * Returns the first step for the current row group.
      *
@@ -19,7 +19,11 @@
 
 package org.apache.fop.pdf;
 
+import java.awt.image.ComponentSampleModel;
 import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import java.awt.image.SampleModel;
@@ -27,6 +31,7 @@ import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.apache.fop.util.bitmap.TiledImageEncoder;
 import org.apache.xmlgraphics.image.GraphicsUtil;
 
 /**
@@ -37,6 +42,7 @@ public class AlphaRasterImage implements PDFImage {
     private final int bitsPerComponent;
     private final PDFDeviceColorSpace colorSpace;
     private final Raster alpha;
+    private final RenderedImage image;
     private final String key;
 
     /**
@@ -49,6 +55,14 @@ public class AlphaRasterImage implements PDFImage {
      *            the alpha channel raster
      */
     public AlphaRasterImage(final String k, final Raster alpha) {
+        this(k, alpha, null);
+        if (alpha == null) {
+            throw new NullPointerException("Parameter alpha must not be null");
+        }
+    }
+
+    private AlphaRasterImage(final String k, final Raster alpha,
+            final RenderedImage image) {
         this.key = k;
         // Enable the commented line below if 16-bit alpha channels are desired.
         // Otherwise, we compress the alpha channel to 8 bit which should be
@@ -57,15 +71,15 @@ public class AlphaRasterImage implements PDFImage {
         this.bitsPerComponent = 8;
         this.colorSpace = new PDFDeviceColorSpace(
                 PDFDeviceColorSpace.DEVICE_GRAY);
-        if (alpha == null) {
-            throw new NullPointerException("Parameter alpha must not be null");
-        }
         this.alpha = alpha;
+        this.image = image;
     }
 
     /**
      * Create a alpha channel image. Extracts the alpha channel from the
-     * RenderedImage and creates a new bitmap image with the given data.
+     * RenderedImage and creates a new bitmap image with the given data. If
+     * the alpha channel can be read tile by tile, it is only extracted when
+     * the image is written.
      *
      * @param k
      *            the key to be used to lookup the image
@@ -73,7 +87,8 @@ public class AlphaRasterImage implements PDFImage {
      *            the image (must have an alpha channel)
      */
     public AlphaRasterImage(final String k, final RenderedImage image) {
-        this(k, GraphicsUtil.getAlphaRaster(image));
+        this(k, TiledImageEncoder.isAlphaStreamable(image) ? null
+                : GraphicsUtil.getAlphaRaster(image), image);
     }
 
     /** {@inheritDoc} */
@@ -91,13 +106,15 @@ public class AlphaRasterImage implements PDFImage {
     /** {@inheritDoc} */
     @Override
     public int getWidth() {
-        return this.alpha.getWidth();
+        return this.alpha != null ? this.alpha.getWidth() : this.image
+                .getWidth();
     }
 
     /** {@inheritDoc} */
     @Override
     public int getHeight() {
-        return this.alpha.getHeight();
+        return this.alpha != null ? this.alpha.getHeight() : this.image
+                .getHeight();
     }
 
     /** {@inheritDoc} */
@@ -150,6 +167,10 @@ public class AlphaRasterImage implements PDFImage {
     /** {@inheritDoc} */
     @Override
     public void outputContents(final OutputStream out) throws IOException {
+        if (this.alpha == null) {
+            TiledImageEncoder.encodeAlpha(this.image, out);
+            return;
+        }
         final int w = getWidth();
         final int h = getHeight();
 
@@ -160,6 +181,10 @@ public class AlphaRasterImage implements PDFImage {
                     "Expected only one band/component for the alpha channel");
         }
 
+        if (writeDirectly(out)) {
+            return;
+        }
+
         // ...and write the Raster line by line with a reusable buffer
         final int dataType = this.alpha.getDataBuffer().getDataType();
         if (dataType == DataBuffer.TYPE_BYTE) {
@@ -206,6 +231,88 @@ public class AlphaRasterImage implements PDFImage {
 
     }
 
+    /**
+     * Writes the alpha channel straight from the raster's DataBuffer for the
+     * usual layouts: an interleaved byte or short band (as in TYPE_4BYTE_ABGR
+     * or TYPE_BYTE_GRAY) and a packed int band (as in TYPE_INT_ARGB). Each
+     * row is written in one call, without copying if the alpha samples are
+     * adjacent.
+     *
+     * @param out
+     *            the stream to write the alpha samples to
+     * @return false if the raster layout is not supported and nothing has been
+     *         written
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    private boolean writeDirectly(final OutputStream out) throws IOException {
+        final int w = getWidth();
+        final int h = getHeight();
+        final DataBuffer db = this.alpha.getDataBuffer();
+        final SampleModel sampleModel = this.alpha.getSampleModel();
+        final int x0 = this.alpha.getMinX()
+                - this.alpha.getSampleModelTranslateX();
+        final int y0 = this.alpha.getMinY()
+                - this.alpha.getSampleModelTranslateY();
+        if (sampleModel instanceof ComponentSampleModel) {
+            final ComponentSampleModel csm = (ComponentSampleModel) sampleModel;
+            final int pixelStride = csm.getPixelStride();
+            final int stride = csm.getScanlineStride();
+            int rowStart = db.getOffsets()[csm.getBankIndices()[0]]
+                    + csm.getOffset(x0, y0);
+            if (db instanceof DataBufferByte) {
+                final byte[] data = ((DataBufferByte) db).getData(csm
+                        .getBankIndices()[0]);
+                if (pixelStride == 1) {
+                    for (int y = 0; y < h; y++) {
+                        out.write(data, rowStart, w);
+                        rowStart += stride;
+                    }
+                } else {
+                    final byte[] line = new byte[w];
+                    for (int y = 0; y < h; y++) {
+                        for (int i = 0, p = rowStart; i < w; i++, p += pixelStride) {
+                            line[i] = data[p];
+                        }
+                        out.write(line);
+                        rowStart += stride;
+                    }
+                }
+                return true;
+            } else if (db instanceof DataBufferUShort) {
+                final short[] data = ((DataBufferUShort) db).getData(csm
+                        .getBankIndices()[0]);
+                final byte[] line = new byte[w];
+                for (int y = 0; y < h; y++) {
+                    for (int i = 0, p = rowStart; i < w; i++, p += pixelStride) {
+                        // compressed to 8 bits like below
+                        line[i] = (byte) (data[p] >> 8);
+                    }
+                    out.write(line);
+                    rowStart += stride;
+                }
+                return true;
+            }
+        } else if (sampleModel instanceof SinglePixelPackedSampleModel
+                && db instanceof DataBufferInt && db.getNumBanks() == 1) {
+            final SinglePixelPackedSampleModel m = (SinglePixelPackedSampleModel) sampleModel;
+            final int shift = m.getBitOffsets()[0];
+            final int[] data = ((DataBufferInt) db).getData();
+            final int stride = m.getScanlineStride();
+            int rowStart = db.getOffset() + m.getOffset(x0, y0);
+            final byte[] line = new byte[w];
+            for (int y = 0; y < h; y++) {
+                for (int i = 0, p = rowStart; i < w; i++, p++) {
+                    line[i] = (byte) (data[p] >> shift);
+                }
+                out.write(line);
+                rowStart += stride;
+            }
+            return true;
+        }
+        return false;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void populateXObjectDictionary(final PDFDictionary dict) {
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of encoded image XObject streams. Converting an image's pixels
+ * to PDF samples and compressing them is by far the most expensive part of
+ * writing an image; when the same image (a logo, a letterhead) is written to
+ * many documents, the encoded stream of the first document can be copied into
+ * all the others. Entries are keyed by the image's content digest together
+ * with the filters applied to the stream, and the least recently used entries
+ * are dropped once the total size of the cached streams exceeds the limit.
+ * <p>
+ * Instances are thread-safe and may be shared between renderings through the
+ * {@link org.apache.fop.apps.FopFactory}.
+ * </p>
+ */
+public class EncodedImageCache {
+
+    private final long maxBytes;
+
+    private long totalBytes;
+
+    private final Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>(
+            16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new encoded image cache.
+     *
+     * @param maxBytes
+     *            the maximum total size of the cached streams in bytes
+     */
+    public EncodedImageCache(final long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /** @return the maximum total size of the cached streams in bytes */
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * Returns the size of the largest stream the cache accepts: a quarter of
+     * the cache, so a single huge image cannot flush all others.
+     *
+     * @return the maximum size of a cached stream in bytes
+     */
+    long getMaxEntryBytes() {
+        return this.maxBytes / 4;
+    }
+
+    /** @return the total size of the streams currently in the cache */
+    public synchronized long getTotalBytes() {
+        return this.totalBytes;
+    }
+
+    /** @return the number of streams currently in the cache */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /** @return the number of lookups that found a cached stream */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /** @return the number of lookups that found no cached stream */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /** Removes all entries and resets the statistics. */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.totalBytes = 0;
+        this.hits.set(0);
+        this.misses.set(0);
+    }
+
+    /**
+     * Returns a cached encoded stream. The returned array must not be
+     * modified.
+     *
+     * @param key
+     *            the cache key
+     * @return the encoded stream or null if it is not in the cache
+     */
+    byte[] get(final String key) {
+        final byte[] data;
+        synchronized (this) {
+            data = this.entries.get(key);
+        }
+        if (data != null) {
+            this.hits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return data;
+    }
+
+    /**
+     * Adds an encoded stream to the cache. Streams larger than
+     * {@link #getMaxEntryBytes()} are not cached.
+     *
+     * @param key
+     *            the cache key
+     * @param data
+     *            the encoded stream (must not be modified afterwards)
+     */
+    synchronized void put(final String key, final byte[] data) {
+        if (data.length > getMaxEntryBytes()) {
+            return;
+        }
+        final byte[] previous = this.entries.put(key, data);
+        if (previous != null) {
+            this.totalBytes -= previous.length;
+        }
+        this.totalBytes += data.length;
+        final Iterator<byte[]> iter = this.entries.values().iterator();
+        while (this.totalBytes > this.maxBytes && iter.hasNext()) {
+            this.totalBytes -= iter.next().length;
+            iter.remove();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "EncodedImageCache[size=" + size() + ", bytes="
+                + getTotalBytes() + ", hits=" + getHitCount() + ", misses="
+                + getMissCount() + "]";
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.apache.fop.util.DecimalFormatCache;
+import org.apache.fop.util.DoubleFormatUtil;
+
+/**
+ * Growable byte buffer for the operators of a PDF content stream. Characters
+ * are stored as single bytes in the PDF document encoding
+ * ({@link PDFDocument#ENCODING}) as they are written, and numbers are
+ * formatted directly into the buffer, so building up a content stream needs
+ * neither intermediate strings nor an encoding pass at the end. The buffer is
+ * a {@link Writer} so it can be used wherever content used to be collected in
+ * a {@link java.io.StringWriter}. It is not thread-safe.
+ */
+public class PDFContentBuffer extends Writer {
+
+    private byte[] buf;
+
+    private int count;
+
+    /**
+     * Creates a new buffer.
+     */
+    public PDFContentBuffer() {
+        this(1024);
+    }
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param initialCapacity
+     *            the initial capacity in bytes
+     */
+    public PDFContentBuffer(final int initialCapacity) {
+        this.buf = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    private void ensureCapacity(final int extra) {
+        final int required = this.count + extra;
+        if (required > this.buf.length) {
+            final byte[] newBuf = new byte[Math.max(required,
+                    this.buf.length * 2)];
+            System.arraycopy(this.buf, 0, newBuf, 0, this.count);
+            this.buf = newBuf;
+        }
+    }
+
+    /** Characters outside ISO-8859-1 become '?', as with an encoding Writer. */
+    private static byte toByte(final char c) {
+        return c < 256 ? (byte) c : (byte) '?';
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final int c) {
+        ensureCapacity(1);
+        this.buf[this.count++] = toByte((char) c);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) {
+        ensureCapacity(len);
+        for (int i = off, end = off + len; i < end; i++) {
+            this.buf[this.count++] = toByte(cbuf[i]);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final String str) {
+        write(str, 0, str.length());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final String str, final int off, final int len) {
+        ensureCapacity(len);
+        for (int i = off, end = off + len; i < end; i++) {
+            this.buf[this.count++] = toByte(str.charAt(i));
+        }
+    }
+
+    /**
+     * Appends the contents of another buffer.
+     *
+     * @param content
+     *            the buffer to append
+     */
+    public void write(final PDFContentBuffer content) {
+        ensureCapacity(content.count);
+        System.arraycopy(content.buf, 0, this.buf, this.count, content.count);
+        this.count += content.count;
+    }
+
+    /**
+     * Writes a number with up to 6 decimal places, formatted like
+     * {@link PDFNumber#doubleOut(double)}.
+     *
+     * @param value
+     *            the number
+     */
+    public void writeNumber(final double value) {
+        writeNumber(value, 6);
+    }
+
+    /**
+     * Writes a number, formatted like {@link PDFNumber#doubleOut(double, int)}.
+     *
+     * @param value
+     *            the number
+     * @param dec
+     *            the maximum number of decimal places
+     */
+    public void writeNumber(final double value, final int dec) {
+        ensureCapacity(DoubleFormatUtil.MAX_LENGTH);
+        final int end = DoubleFormatUtil.formatDouble(value, dec, this.buf,
+                this.count);
+        if (end < 0) {
+            write(DecimalFormatCache.getDecimalFormat(dec).format(value));
+        } else {
+            this.count = end;
+        }
+    }
+
+    /**
+     * Writes a sequence of numbers separated by spaces and followed by an
+     * operator, for example "1 0 0 1 0 0 cm\n".
+     *
+     * @param values
+     *            the operands
+     * @param dec
+     *            the maximum number of decimal places
+     * @param operator
+     *            the operator including the trailing line feed, if any
+     */
+    public void writeOperation(final double[] values, final int dec,
+            final String operator) {
+        writeOperation(values, values.length, dec, operator);
+    }
+
+    /**
+     * Writes the first numbers of an array separated by spaces and followed
+     * by an operator.
+     *
+     * @param values
+     *            the operands
+     * @param numValues
+     *            the number of values to write
+     * @param dec
+     *            the maximum number of decimal places
+     * @param operator
+     *            the operator including the trailing line feed, if any
+     */
+    public void writeOperation(final double[] values, final int numValues,
+            final int dec, final String operator) {
+        for (int i = 0; i < numValues; i++) {
+            writeNumber(values[i], dec);
+            write(' ');
+        }
+        write(operator);
+    }
+
+    /** @return the number of bytes in the buffer */
+    public int size() {
+        return this.count;
+    }
+
+    /** Discards the contents of the buffer. */
+    public void reset() {
+        this.count = 0;
+    }
+
+    /**
+     * Writes the contents of the buffer to a stream.
+     *
+     * @param out
+     *            the stream
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        out.write(this.buf, 0, this.count);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void flush() {
+        // nop
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() {
+        // nop
+    }
+
+    /**
+     * Returns the contents of the buffer as a string.
+     *
+     * @return the contents
+     */
+    @Override
+    public String toString() {
+        final char[] chars = new char[this.count];
+        for (int i = 0; i < this.count; i++) {
+            chars[i] = (char) (this.buf[i] & 0xFF);
+        }
+        return new String(chars);
+    }
+}
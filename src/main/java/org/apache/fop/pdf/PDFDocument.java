@@ -136,6 +136,15 @@ public class PDFDocument {
     /* TODO: Should be modified (works only for image subtype) */
     private final Map<String, PDFXObject> xObjectsMap = new HashMap<>();
 
+    /** controls whether identical images share one XObject */
+    private boolean imageDeduplication = false;
+
+    /** content digest -> image XObject, used for image deduplication */
+    private final Map<String, PDFImageXObject> imageDigestMap = new HashMap<>();
+
+    /** cache of encoded image streams shared between documents (may be null) */
+    private EncodedImageCache encodedImageCache;
+
     /** The {@link PDFFont} map */
     private final Map<String, PDFFont> fontMap = new HashMap<>();
 
@@ -256,6 +265,48 @@ public class PDFDocument {
         return this.encodingOnTheFly;
     }
 
+    /**
+     * Enables or disables image deduplication by content. If enabled, images
+     * with identical content share a single XObject even if they come from
+     * different sources.
+     *
+     * @param imageDeduplication
+     *            true to enable image deduplication
+     */
+    public void setImageDeduplication(final boolean imageDeduplication) {
+        this.imageDeduplication = imageDeduplication;
+    }
+
+    /**
+     * Indicates whether image deduplication by content is enabled.
+     *
+     * @return true if image deduplication is enabled
+     */
+    public boolean isImageDeduplication() {
+        return this.imageDeduplication;
+    }
+
+    /**
+     * Sets the cache of encoded image streams. Images added with a content
+     * digest take their encoded stream from this cache if another document
+     * has already written the same image with the same filters.
+     *
+     * @param cache
+     *            the encoded image cache (may be null)
+     */
+    public void setEncodedImageCache(final EncodedImageCache cache) {
+        this.encodedImageCache = cache;
+    }
+
+    /**
+     * Returns the cache of encoded image streams.
+     *
+     * @return the encoded image cache or null if none is used
+     */
+    public EncodedImageCache getEncodedImageCache() {
+        return this.encodedImageCache;
+    }
+
     /**
      * Converts text to a byte array for writing to a PDF file.
      *
@@ -865,6 +916,48 @@ public class PDFDocument {
         return xObject;
     }
 
+    /**
+     * Add an image to the PDF document whose content digest is known. If image
+     * deduplication is enabled, the XObject of an image with the same content
+     * digest is shared. The digest also allows the image's encoded stream to
+     * be taken from the {@link EncodedImageCache}. Without a digest this is
+     * the same as {@link #addImage(PDFResourceContext, PDFImage)}.
+     *
+     * @param res
+     *            the PDF resource context to add to, may be null
+     * @param img
+     *            the PDF image to add
+     * @param contentDigest
+     *            a digest of everything that makes up the image's XObject
+     *            (may be null if unknown)
+     * @return the PDF XObject that references the PDF image data
+     */
+    public PDFImageXObject addImage(final PDFResourceContext res,
+            final PDFImage img, final String contentDigest) {
+        if (contentDigest == null
+                || this.xObjectsMap.containsKey(img.getKey())) {
+            return addImage(res, img);
+        }
+        PDFImageXObject xObject;
+        if (this.imageDeduplication) {
+            xObject = this.imageDigestMap.get(contentDigest);
+            if (xObject != null) {
+                // same content under a new key
+                this.xObjectsMap.put(img.getKey(), xObject);
+                if (res != null) {
+                    res.getPDFResources().addXObject(xObject);
+                }
+                return xObject;
+            }
+        }
+        xObject = addImage(res, img);
+        xObject.setContentDigest(contentDigest);
+        if (this.imageDeduplication) {
+            this.imageDigestMap.put(contentDigest, xObject);
+        }
+        return xObject;
+    }
+
     /**
      * Add a form XObject to the PDF document. This adds a Form XObject to the
      * PDF objects. If a Form XObject with the same key already exists it will
@@ -20,6 +20,7 @@
 package org.apache.fop.pdf;
 
 // Java
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
@@ -39,6 +40,9 @@ public class PDFImageXObject extends PDFXObject {
 
     private PDFImage pdfimage;
 
+    /** digest of the image content, used to look up the encoded stream */
+    private String contentDigest;
+
     /**
      * create an XObject with the given number and name and load the image in
      * the object
@@ -54,6 +58,18 @@ public class PDFImageXObject extends PDFXObject {
         this.pdfimage = img;
     }
 
+    /**
+     * Sets the digest of the image content. With a digest, the encoded image
+     * stream is taken from (or added to) the document's
+     * {@link EncodedImageCache}.
+     *
+     * @param contentDigest
+     *            the content digest (may be null)
+     */
+    public void setContentDigest(final String contentDigest) {
+        this.contentDigest = contentDigest;
+    }
+
     /**
      * Output the image as PDF. This sets up the image dictionary and adds the
      * image data stream.
@@ -154,6 +170,110 @@ public class PDFImageXObject extends PDFXObject {
         this.pdfimage.outputContents(out);
     }
 
+    /**
+     * Returns the key of this image's encoded stream in the encoded image
+     * cache. The key covers the filters since the same image may be written
+     * with other filter settings. Images which are already compressed (JPEG,
+     * CCITT) are written as they are and not cached, nor are encrypted
+     * streams which differ per document.
+     */
+    private String getEncodedImageCacheKey() {
+        if (this.contentDigest == null
+                || getDocument().getEncodedImageCache() == null
+                || getDocument().isEncryptionActive()) {
+            return null;
+        }
+        final PDFFilter pdfFilter = this.pdfimage.getPDFFilter();
+        if (pdfFilter != null && pdfFilter.isApplied()) {
+            return null;
+        }
+        return this.contentDigest + getFilterList().buildFilterDictEntries();
+    }
+
+    /**
+     * Encodes the image into a byte array, giving up as soon as the encoded
+     * stream grows larger than the given limit.
+     *
+     * @return the encoded stream or null if it exceeds the limit
+     */
+    private byte[] encodeToByteArray(final long limit) throws IOException {
+        final BoundedOutputStream bout = new BoundedOutputStream(limit);
+        final OutputStream filteredOutput = getFilterList().applyFilters(bout);
+        try {
+            outputRawStreamData(filteredOutput);
+            filteredOutput.close();
+        } catch (final IOException e) {
+            // the exception may have been wrapped on its way up
+            if (!bout.isLimitExceeded()) {
+                throw e;
+            }
+            // release the filters, the rest of the data is discarded
+            filteredOutput.close();
+            return null;
+        }
+        return bout.toByteArray();
+    }
+
+    /**
+     * Returns the encoded stream from the encoded image cache, encoding and
+     * caching it first if necessary.
+     *
+     * @return the encoded stream or null if it is too large to be cached, in
+     *         which case it has to be written directly
+     */
+    private byte[] getCachedEncodedStream(final String cacheKey)
+            throws IOException {
+        final EncodedImageCache cache = getDocument().getEncodedImageCache();
+        byte[] data = cache.get(cacheKey);
+        if (data == null) {
+            data = encodeToByteArray(cache.getMaxEntryBytes());
+            if (data != null) {
+                cache.put(cacheKey, data);
+            }
+        }
+        return data;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected StreamCache encodeStream() throws IOException {
+        final String cacheKey = getEncodedImageCacheKey();
+        if (cacheKey == null) {
+            return super.encodeStream();
+        }
+        final byte[] data = getCachedEncodedStream(cacheKey);
+        if (data == null) {
+            return super.encodeStream();
+        }
+        final StreamCache encodedStream = StreamCacheFactory.getInstance()
+                .createStreamCache(data.length);
+        final OutputStream out = encodedStream.getOutputStream();
+        out.write(data);
+        out.flush();
+        return encodedStream;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected int encodeAndWriteStream(final OutputStream out,
+            final PDFNumber refLength) throws IOException {
+        final String cacheKey = getEncodedImageCacheKey();
+        if (cacheKey == null) {
+            return super.encodeAndWriteStream(out, refLength);
+        }
+        final byte[] data = getCachedEncodedStream(cacheKey);
+        if (data == null) {
+            return super.encodeAndWriteStream(out, refLength);
+        }
+        final byte[] header = encode("stream\n");
+        final byte[] trailer = encode("\nendstream");
+        out.write(header);
+        out.write(data);
+        out.write(trailer);
+        refLength.setNumber(data.length);
+        return header.length + data.length + trailer.length;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected int getSizeHint() throws IOException {
@@ -178,4 +298,66 @@ public class PDFImageXObject extends PDFXObject {
         return this.pdfimage.getFilterHint();
     }
 
+
+    /** Thrown when an encoded stream exceeds the size of a cache entry. */
+    private static final class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = -5203869411256703497L;
+
+        LimitExceededException() {
+            super("Encoded stream exceeds the size limit");
+        }
+    }
+
+    /**
+     * Collects an encoded stream up to a size limit. Exceeding the limit
+     * throws a {@link LimitExceededException} once; the collected data is
+     * dropped and anything written afterwards is discarded.
+     */
+    private static final class BoundedOutputStream extends OutputStream {
+
+        private final long limit;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        BoundedOutputStream(final long limit) {
+            this.limit = limit;
+        }
+
+        private boolean accept(final int len) throws LimitExceededException {
+            if (this.buffer == null) {
+                return false;
+            }
+            if (this.buffer.size() + (long) len > this.limit) {
+                this.buffer = null;
+                throw new LimitExceededException();
+            }
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final int b) throws IOException {
+            if (accept(1)) {
+                this.buffer.write(b);
+            }
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            if (accept(len)) {
+                this.buffer.write(b, off, len);
+            }
+        }
+
+        boolean isLimitExceeded() {
+            return this.buffer == null;
+        }
+
+        byte[] toByteArray() {
+            return this.buffer.toByteArray();
+        }
+    }
 }
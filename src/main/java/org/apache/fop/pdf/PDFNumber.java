@@ -19,7 +19,7 @@
 
 package org.apache.fop.pdf;
 
-import org.apache.fop.util.DecimalFormatCache;
+import org.apache.fop.util.DoubleFormatUtil;
 
 /**
  * This class represents a simple number object. It also contains contains some
@@ -81,7 +81,24 @@ public class PDFNumber extends PDFObject {
      * @return the value as a string
      */
     public static String doubleOut(final double doubleDown, final int dec) {
-        return DecimalFormatCache.getDecimalFormat(dec).format(doubleDown);
+        return DoubleFormatUtil.formatDouble(doubleDown, dec);
+    }
+
+    /**
+     * Appends a double value suitable for PDF to a StringBuilder, avoiding
+     * the intermediate string of {@link #doubleOut(double, int)}.
+     *
+     * @param doubleDown
+     *            the double value
+     * @param dec
+     *            the number of decimal places to output
+     * @param sb
+     *            the StringBuilder to append to
+     * @return the StringBuilder passed to this method
+     */
+    public static StringBuilder doubleOut(final double doubleDown,
+            final int dec, final StringBuilder sb) {
+        return DoubleFormatUtil.formatDouble(doubleDown, dec, sb);
     }
 
     /** {@inheritDoc} */
@@ -95,7 +112,7 @@ public class PDFNumber extends PDFObject {
         if (hasObjectNumber()) {
             sb.append(getObjectID());
         }
-        sb.append(doubleOut(getNumber().doubleValue(), 10));
+        doubleOut(getNumber().doubleValue(), 10, sb);
         if (hasObjectNumber()) {
             sb.append("\nendobj\n");
         }
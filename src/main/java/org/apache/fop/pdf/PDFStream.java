@@ -71,6 +71,22 @@ public class PDFStream extends AbstractPDFStream {
         }
     }
 
+    /**
+     * Append the contents of a content buffer to the stream. The bytes are
+     * copied as they are, without going through a string.
+     *
+     * @param content
+     *            the buffer with the PDF to add
+     */
+    public void add(final PDFContentBuffer content) {
+        try {
+            content.writeTo(getBufferOutputStream());
+        } catch (final IOException ex) {
+            throw new IllegalStateException(
+                    "I/O error while adding content to a PDF stream", ex);
+        }
+    }
+
     private void flush() throws IOException {
         this.streamWriter.flush();
     }
@@ -30,6 +30,9 @@ public abstract class PDFTextUtil {
     /** The number of decimal places. */
     private static final int DEC = 8;
 
+    private static final byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5',
+        '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
     /** PDF text rendering mode: Fill text */
     public static final int TR_FILL = 0;
     /** PDF text rendering mode: Stroke text */
@@ -54,7 +57,8 @@ public abstract class PDFTextUtil {
     private String startText;
     private String endText;
     private boolean useMultiByte;
-    private StringBuilder bufTJ;
+    private final PDFContentBuffer bufTJ = new PDFContentBuffer(256);
+    private final double[] matrix = new double[6];
     private int textRenderingMode = TR_FILL;
 
     private String currentFontName;
@@ -75,35 +79,64 @@ public abstract class PDFTextUtil {
      */
     protected abstract void write(final String code);
 
+    /**
+     * Writes PDF code from a buffer. The default implementation converts the
+     * buffer to a string; subclasses should override it to copy the bytes
+     * directly.
+     *
+     * @param code
+     *            the buffer with the PDF code to write
+     */
+    protected void write(final PDFContentBuffer code) {
+        write(code.toString());
+    }
+
     private void writeAffineTransform(final AffineTransform at,
             final StringBuilder sb) {
-        final double[] lt = new double[6];
+        final double[] lt = this.matrix;
         at.getMatrix(lt);
-        sb.append(PDFNumber.doubleOut(lt[0], DEC)).append(" ");
-        sb.append(PDFNumber.doubleOut(lt[1], DEC)).append(" ");
-        sb.append(PDFNumber.doubleOut(lt[2], DEC)).append(" ");
-        sb.append(PDFNumber.doubleOut(lt[3], DEC)).append(" ");
-        sb.append(PDFNumber.doubleOut(lt[4], DEC)).append(" ");
-        sb.append(PDFNumber.doubleOut(lt[5], DEC));
+        for (int i = 0; i < 6; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            PDFNumber.doubleOut(lt[i], DEC, sb);
+        }
     }
 
-    private void writeChar(final char ch, final StringBuilder sb) {
+    private void writeChar(final char ch) {
+        final PDFContentBuffer buf = this.bufTJ;
         if (!this.useMultiByte) {
             if (ch < 32 || ch > 127) {
-                sb.append("\\").append(Integer.toOctalString(ch));
+                buf.write('\\');
+                writeOctal(ch);
             } else {
                 switch (ch) {
                 case '(':
                 case ')':
                 case '\\':
-                    sb.append("\\");
+                    buf.write('\\');
                     break;
                 default:
                 }
-                sb.append(ch);
+                buf.write(ch);
             }
         } else {
-            sb.append(PDFText.toUnicodeHex(ch));
+            // Same as PDFText.toUnicodeHex(), whose UTF-16 encoding replaces
+            // unpaired surrogates
+            final int code = Character.isSurrogate(ch) ? 0xFFFD : ch;
+            for (int shift = 12; shift >= 0; shift -= 4) {
+                buf.write(HEX_DIGITS[code >> shift & 0x0F]);
+            }
+        }
+    }
+
+    private void writeOctal(final char ch) {
+        int shift = 15;
+        while (shift > 0 && ch >> shift == 0) {
+            shift -= 3;
+        }
+        for (; shift >= 0; shift -= 3) {
+            this.bufTJ.write('0' + (ch >> shift & 7));
         }
     }
 
@@ -195,7 +228,10 @@ public abstract class PDFTextUtil {
      */
     public void writeTf(final String fontName, final double fontSize) {
         checkInTextObject();
-        write("/" + fontName + " " + PDFNumber.doubleOut(fontSize) + " Tf\n");
+        final StringBuilder sb = new StringBuilder(fontName.length() + 16);
+        sb.append('/').append(fontName).append(' ');
+        PDFNumber.doubleOut(fontSize, 6, sb).append(" Tf\n");
+        write(sb.toString());
 
         this.startText = this.useMultiByte ? "<" : "(";
         this.endText = this.useMultiByte ? ">" : ")";
@@ -289,13 +325,42 @@ public abstract class PDFTextUtil {
      *            the mapped character (code point/character code)
      */
     public void writeTJMappedChar(final char codepoint) {
-        if (this.bufTJ == null) {
-            this.bufTJ = new StringBuilder();
+        if (this.bufTJ.size() == 0) {
+            this.bufTJ.write('[');
+            this.bufTJ.write(this.startText);
         }
-        if (this.bufTJ.length() == 0) {
-            this.bufTJ.append("[").append(this.startText);
+        writeChar(codepoint);
+    }
+
+    /**
+     * Writes a run of glyphs and their positioning values to the "TJ-Buffer".
+     * This produces the same output as calling
+     * {@link #writeTJMappedChar(char)} for every glyph, followed by
+     * {@link #adjustGlyphTJ(double)} with
+     * <code>-adjustments[i] / fontSize</code> for every adjustment that is
+     * not zero, but without the per-glyph calls.
+     *
+     * @param glyphs
+     *            the mapped characters (code points/character codes)
+     * @param adjustments
+     *            the adjustments applied after each glyph (in millipoints,
+     *            positive values increase the distance to the next glyph),
+     *            or null
+     * @param offset
+     *            the index of the first glyph of the run
+     * @param length
+     *            the number of glyphs in the run
+     * @param fontSize
+     *            the font size (in points)
+     */
+    public void writeTJGlyphRun(final int[] glyphs, final int[] adjustments,
+            final int offset, final int length, final float fontSize) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            writeTJMappedChar((char) glyphs[i]);
+            if (adjustments != null && adjustments[i] != 0) {
+                adjustGlyphTJ(-adjustments[i] / fontSize);
+            }
         }
-        writeChar(codepoint, this.bufTJ);
     }
 
     /**
@@ -305,18 +370,15 @@ public abstract class PDFTextUtil {
      *            the glyph adjust value in thousands of text unit space.
      */
     public void adjustGlyphTJ(final double adjust) {
-        if (this.bufTJ == null) {
-            this.bufTJ = new StringBuilder();
-        }
-        if (this.bufTJ.length() > 0) {
-            this.bufTJ.append(this.endText).append(" ");
-        }
-        if (this.bufTJ.length() == 0) {
-            this.bufTJ.append("[");
+        if (this.bufTJ.size() > 0) {
+            this.bufTJ.write(this.endText);
+            this.bufTJ.write(' ');
+        } else {
+            this.bufTJ.write('[');
         }
-        this.bufTJ.append(PDFNumber.doubleOut(adjust, DEC - 4));
-        this.bufTJ.append(" ");
-        this.bufTJ.append(this.startText);
+        this.bufTJ.writeNumber(adjust, DEC - 4);
+        this.bufTJ.write(' ');
+        this.bufTJ.write(this.startText);
     }
 
     /**
@@ -325,14 +387,15 @@ public abstract class PDFTextUtil {
      */
     public void writeTJ() {
         if (isInString()) {
-            this.bufTJ.append(this.endText).append("] TJ\n");
-            write(this.bufTJ.toString());
-            this.bufTJ.setLength(0);
+            this.bufTJ.write(this.endText);
+            this.bufTJ.write("] TJ\n");
+            write(this.bufTJ);
+            this.bufTJ.reset();
         }
     }
 
     private boolean isInString() {
-        return this.bufTJ != null && this.bufTJ.length() > 0;
+        return this.bufTJ.size() > 0;
     }
 
 }
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.xmlgraphics.image.loader.Image;
+import org.apache.xmlgraphics.image.loader.ImageFlavor;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageProcessingHints;
+import org.apache.xmlgraphics.image.loader.ImageSessionContext;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawStream;
+
+/**
+ * Loads and converts images on a background thread pool while the document is
+ * still being parsed and laid out. Layout only needs the intrinsic size of an
+ * image, which the {@link org.apache.xmlgraphics.image.loader.ImageManager}
+ * preload provides; the full load, decoding and conversion into a flavor the
+ * output format supports otherwise happens when the page is painted. Once the
+ * document handler has announced the image flavors and processing hints it
+ * will ask for ({@link #setTargetFlavors(ImageFlavor[], Map)}), every image
+ * passed to {@link #preload(ImageInfo)} is loaded ahead, and the painter picks
+ * up the result with {@link #getImage(ImageInfo, ImageFlavor[], Map)}.
+ * <p>
+ * A preloaded image is handed out once and only if it was requested with the
+ * same flavors and hints; in all other cases, and if the background load
+ * failed, the painter loads the image itself as before, so errors are still
+ * reported at the usual place. The number of images waiting to be painted is
+ * bounded to keep the decoded images from piling up in memory. When the bound
+ * is reached, the oldest image which has been loaded but not asked for yet is
+ * dropped: not every bound image gets painted (think of markers which are
+ * never retrieved), and those must not keep others from being preloaded.
+ * </p>
+ * <p>
+ * An instance belongs to a single rendering run (see
+ * {@link FOUserAgent#getImagePreloader()}). The document handler closes it at
+ * the end of the run; should the run fail before, the idle background threads
+ * still terminate on their own.
+ * </p>
+ */
+@Slf4j
+public class ImagePreloader {
+
+    /** Time after which idle background threads terminate */
+    private static final long KEEP_ALIVE_SECONDS = 5;
+
+    private final FOUserAgent userAgent;
+
+    private final int threads;
+
+    private final int maxPendingImages;
+
+    /** Images being loaded or waiting to be painted, oldest first */
+    private final Map<String, PreloadTask> pending = new LinkedHashMap<>();
+
+    /**
+     * URIs of images already handed out. They are not preloaded again: the
+     * output may reuse the image it has painted (PDF reuses the XObject) and
+     * would never ask for the second copy.
+     */
+    private final Set<String> handedOut = new HashSet<>();
+
+    private ThreadPoolExecutor executor;
+
+    private volatile ImageFlavor[] flavors;
+
+    private volatile Map hints;
+
+    /**
+     * Creates a new image preloader.
+     *
+     * @param userAgent
+     *            the user agent of the rendering run
+     * @param threads
+     *            the number of threads loading images
+     */
+    public ImagePreloader(final FOUserAgent userAgent, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of image preloading threads must be at least 1");
+        }
+        this.userAgent = userAgent;
+        this.threads = threads;
+        this.maxPendingImages = 4 * threads;
+    }
+
+    /**
+     * Sets the image flavors and processing hints the painter will use when
+     * requesting images. Preloading starts only after this has been called.
+     *
+     * @param flavors
+     *            the supported image flavors in order of preference
+     * @param hints
+     *            the image processing hints
+     */
+    public void setTargetFlavors(final ImageFlavor[] flavors, final Map hints) {
+        this.hints = new HashMap(hints);
+        this.flavors = flavors.clone();
+    }
+
+    /**
+     * Starts loading an image in the background. Nothing happens if the target
+     * flavors are not known yet, if the image is already being loaded or has
+     * been painted before, or if too many images are still being loaded.
+     *
+     * @param info
+     *            the image info obtained from the image manager's preload
+     */
+    public void preload(final ImageInfo info) {
+        final ImageFlavor[] targetFlavors = this.flavors;
+        if (targetFlavors == null || info == null) {
+            return;
+        }
+        final String uri = info.getOriginalURI();
+        synchronized (this) {
+            if (this.pending.containsKey(uri) || this.handedOut.contains(uri)) {
+                return;
+            }
+            if (this.pending.size() >= this.maxPendingImages
+                    && !evictOldestLoadedImage()) {
+                return;
+            }
+            final PreloadTask task = new PreloadTask(info, targetFlavors,
+                    this.hints);
+            this.pending.put(uri, task);
+            getExecutor().execute(task);
+        }
+    }
+
+    /**
+     * Returns a preloaded image and removes it from the preloader.
+     *
+     * @param info
+     *            the image info
+     * @param requestedFlavors
+     *            the image flavors requested by the painter
+     * @param requestedHints
+     *            the image processing hints of the painter
+     * @return the image or null if the image has not been preloaded with the
+     *         same flavors and hints, or if preloading failed
+     */
+    public Image getImage(final ImageInfo info,
+            final ImageFlavor[] requestedFlavors, final Map requestedHints) {
+        final PreloadTask task;
+        synchronized (this) {
+            task = this.pending.remove(info.getOriginalURI());
+            if (task == null) {
+                return null;
+            }
+            this.handedOut.add(info.getOriginalURI());
+        }
+        if (!Arrays.equals(task.flavors, requestedFlavors)
+                || !task.hints.equals(requestedHints)) {
+            discard(task);
+            return null;
+        }
+        try {
+            return task.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final ExecutionException e) {
+            // the painter loads the image again and reports the error
+            if (log.isDebugEnabled()) {
+                log.debug("Preloading of " + info + " failed: "
+                        + e.getCause());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Discards all images which have not been painted and stops the background
+     * threads. Preloading starts again after the next call to
+     * {@link #setTargetFlavors(ImageFlavor[], Map)}.
+     */
+    public synchronized void close() {
+        this.flavors = null;
+        this.handedOut.clear();
+        final Iterator<PreloadTask> iter = this.pending.values().iterator();
+        while (iter.hasNext()) {
+            discard(iter.next());
+            iter.remove();
+        }
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    /**
+     * Drops the oldest image which has been loaded but not asked for.
+     *
+     * @return true if an image has been dropped, false if all pending images
+     *         are still being loaded
+     */
+    private boolean evictOldestLoadedImage() {
+        final Iterator<PreloadTask> iter = this.pending.values().iterator();
+        while (iter.hasNext()) {
+            final PreloadTask task = iter.next();
+            if (task.isDone()) {
+                iter.remove();
+                discard(task);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new ThreadPoolExecutor(this.threads,
+                    this.threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private int count;
+
+                @Override
+                public synchronized Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r,
+                            "FOP image preloader " + ++this.count);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // don't keep threads alive if the run fails before close()
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+        return this.executor;
+    }
+
+    /**
+     * Cancels a task which is not handed out to the painter. If the image has
+     * already been loaded, the resources it holds are released.
+     */
+    private static void discard(final PreloadTask task) {
+        if (task.cancel(true)) {
+            // a load still running releases its image when it completes
+            return;
+        }
+        try {
+            release(task.get());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            // nothing was loaded
+        }
+    }
+
+    /**
+     * Releases the resources held by an image which won't be painted: a raw
+     * stream which can only be read once keeps its input stream open until it
+     * is read.
+     */
+    private static void release(final Image image) {
+        if (image instanceof ImageRawStream && !image.isCacheable()) {
+            IOUtils.closeQuietly(((ImageRawStream) image).createInputStream());
+        }
+    }
+
+    private class PreloadTask extends FutureTask<Image> {
+
+        private final ImageFlavor[] flavors;
+
+        private final Map hints;
+
+        PreloadTask(final ImageInfo info, final ImageFlavor[] flavors,
+                final Map hints) {
+            super(new Callable<Image>() {
+                @Override
+                public Image call() throws Exception {
+                    // the user agent's session context is not thread-safe
+                    final ImageSessionContext sessionContext = ImagePreloader.this.userAgent
+                            .createImageSessionContext();
+                    final Map taskHints = new HashMap(hints);
+                    if (taskHints
+                            .containsKey(ImageProcessingHints.IMAGE_SESSION_CONTEXT)) {
+                        taskHints.put(
+                                ImageProcessingHints.IMAGE_SESSION_CONTEXT,
+                                sessionContext);
+                    }
+                    return ImagePreloader.this.userAgent.getFactory()
+                            .getImageManager()
+                            .getImage(info, flavors, taskHints, sessionContext);
+                }
+            });
+            this.flavors = flavors;
+            this.hints = hints;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        protected void set(final Image image) {
+            super.set(image);
+            if (isCancelled()) {
+                // discarded while loading, the result is dropped
+                release(image);
+            }
+        }
+    }
+}
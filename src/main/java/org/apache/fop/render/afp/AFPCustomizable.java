@@ -101,6 +101,16 @@ public interface AFPCustomizable {
      */
     void setDefaultResourceGroupFilePath(final String filePath);
 
+    /**
+     * Controls whether the document is written straight to the final output
+     * rather than through a temporary file. Print-file level resources are then
+     * placed in the default external resource group.
+     * 
+     * @param directStreaming
+     *            true to write the document straight to the final output
+     */
+    void setDirectStreaming(final boolean directStreaming);
+
     /**
      * Sets the resource level defaults. The object passed in provides
      * information which resource level shall be used by default for various
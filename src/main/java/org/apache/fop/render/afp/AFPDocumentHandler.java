@@ -415,6 +415,12 @@ implements AFPCustomizable {
         this.resourceManager.setDefaultResourceGroupFilePath(filePath);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void setDirectStreaming(final boolean directStreaming) {
+        this.resourceManager.setDirectStreaming(directStreaming);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void setResourceLevelDefaults(final AFPResourceLevelDefaults defaults) {
@@ -42,6 +42,7 @@ import org.apache.fop.afp.modca.ResourceObject;
 import org.apache.fop.render.ImageHandler;
 import org.apache.fop.render.RenderingContext;
 import org.apache.fop.util.bitmap.BitmapImageUtil;
+import org.apache.fop.util.bitmap.TiledImageEncoder;
 import org.apache.xmlgraphics.image.loader.Image;
 import org.apache.xmlgraphics.image.loader.ImageFlavor;
 import org.apache.xmlgraphics.image.loader.ImageInfo;
@@ -209,7 +210,7 @@ ImageHandler {
             log.debug("Encoding image via RGB...");
 
             // Convert image to 24bit RGB
-            ImageEncodingHelper.encodeRenderedImageAsRGB(renderedImage, baos);
+            TiledImageEncoder.encodeRenderedImageAsRGB(renderedImage, baos);
             imageData = baos.toByteArray();
             imageObjectInfo.setBitsPerPixel(24);
 
@@ -940,6 +940,12 @@ public class AFPRenderer extends AbstractPathOrientedRenderer<AbstractData>
         this.resourceManager.setDefaultResourceGroupFilePath(filePath);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void setDirectStreaming(final boolean directStreaming) {
+        this.resourceManager.setDirectStreaming(directStreaming);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void setResourceLevelDefaults(final AFPResourceLevelDefaults defaults) {
@@ -37,6 +37,7 @@ import org.apache.fop.afp.fonts.AFPFontCollection;
 import org.apache.fop.afp.fonts.AFPFontInfo;
 import org.apache.fop.afp.fonts.CharacterSet;
 import org.apache.fop.afp.fonts.CharacterSetBuilder;
+import org.apache.fop.afp.fonts.CharacterSetCache;
 import org.apache.fop.afp.fonts.DoubleByteFont;
 import org.apache.fop.afp.fonts.OutlineFont;
 import org.apache.fop.afp.fonts.RasterFont;
@@ -330,6 +331,16 @@ public class AFPRendererConfigurator extends PrintRendererConfigurator {
                             .validateUserConfigStrictly());
         }
 
+        // Compiled character set metrics are cached along with the font cache
+        if (fontManager.useCache()
+                && CharacterSetBuilder.getMetricsCache() == null) {
+            CharacterSetCache metricsCache = CharacterSetCache.load();
+            if (metricsCache == null) {
+                metricsCache = new CharacterSetCache();
+            }
+            CharacterSetBuilder.setMetricsCache(metricsCache);
+        }
+
         final List<AFPFontInfo> fontList = new ArrayList<>();
         final Configuration[] font = fonts.getChildren("font");
         final String fontPath = null;
@@ -359,6 +370,11 @@ public class AFPRendererConfigurator extends PrintRendererConfigurator {
                 fontList.add(afi);
             }
         }
+        final CharacterSetCache metricsCache = CharacterSetBuilder
+                .getMetricsCache();
+        if (metricsCache != null && metricsCache.hasChanged()) {
+            metricsCache.save();
+        }
         return fontList;
     }
 
@@ -480,6 +496,9 @@ public class AFPRendererConfigurator extends PrintRendererConfigurator {
             }
         }
 
+        customizable.setDirectStreaming(cfg.getChild("direct-streaming")
+                .getValueAsBoolean(false));
+
         final Configuration defaultResourceLevelCfg = cfg.getChild(
                 "default-resource-levels", false);
         if (defaultResourceLevelCfg != null) {
@@ -24,13 +24,24 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
 
 import lombok.extern.slf4j.Slf4j;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FopFactoryConfigurator;
 import org.apache.fop.fonts.FontInfo;
 import org.apache.fop.render.intermediate.AbstractBinaryWritingIFDocumentHandler;
@@ -39,8 +50,10 @@ import org.apache.fop.render.intermediate.IFDocumentHandler;
 import org.apache.fop.render.intermediate.IFDocumentHandlerConfigurator;
 import org.apache.fop.render.intermediate.IFException;
 import org.apache.fop.render.intermediate.IFPainter;
+import org.apache.fop.render.intermediate.IFUtil;
 import org.apache.fop.render.java2d.Java2DPainter;
 import org.apache.fop.render.java2d.Java2DUtil;
+import org.apache.xmlgraphics.image.loader.ImageSessionContext;
 import org.apache.xmlgraphics.image.writer.ImageWriter;
 import org.apache.xmlgraphics.image.writer.ImageWriterRegistry;
 import org.apache.xmlgraphics.image.writer.MultiImageWriter;
@@ -69,7 +82,19 @@ public abstract class AbstractBitmapDocumentHandler extends
 
     private int pageCount;
     private Dimension currentPageDimensions;
-    private BufferedImage currentImage;
+    private RenderedImage currentImage;
+
+    /** Rasterizes pages in parallel, null when rendering sequentially */
+    private ExecutorService rasterizer;
+    /** Pages handed to the rasterizer, in page order */
+    private final LinkedList<PendingPage> pendingPages = new LinkedList<>();
+    private Callable<RenderedImage> currentRasterization;
+    /**
+     * Font setups of the rasterizer threads, one per thread. The fonts' metrics
+     * and character mappings are not thread-safe, so the threads can't share
+     * the document's font setup nor each other's.
+     */
+    private BlockingQueue<FontInfo> rasterizerFontInfos;
 
     private final BitmapRenderingSettings bitmapSettings = new BitmapRenderingSettings();
 
@@ -177,11 +202,52 @@ public abstract class AbstractBitmapDocumentHandler extends
                         getDefaultExtension(), getUserAgent().getOutputFile());
             }
             this.pageCount = 0;
+            final int threads = getSettings().getRenderingThreads();
+            if (threads > 1) {
+                this.rasterizer = Executors.newFixedThreadPool(threads,
+                        new ThreadFactory() {
+                            private int count;
+
+                            @Override
+                            public synchronized Thread newThread(
+                                    final Runnable r) {
+                                final Thread thread = new Thread(r,
+                                        "FOP bitmap rasterizer "
+                                                + ++this.count);
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                this.rasterizerFontInfos = createRasterizerFontInfos(threads);
+            }
         } catch (final IOException e) {
             throw new IFException("I/O error in startDocument()", e);
         }
     }
 
+    /**
+     * Sets up the fonts once more for each rasterizer thread, the same way as
+     * for the document.
+     */
+    private BlockingQueue<FontInfo> createRasterizerFontInfos(final int threads)
+            throws IFException {
+        final BlockingQueue<FontInfo> fontInfos = new LinkedBlockingQueue<>();
+        final FontInfo documentFontInfo = getFontInfo();
+        try {
+            for (int i = 0; i < threads; i++) {
+                // sets the new font setup on this document handler
+                IFUtil.setupFonts(this, new FontInfo());
+                fontInfos.add(getFontInfo());
+            }
+        } catch (final FOPException e) {
+            throw new IFException(
+                    "Error while setting up the fonts of the rasterizer", e);
+        } finally {
+            setFontInfo(documentFontInfo);
+        }
+        return fontInfos;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void endDocumentHeader() {
@@ -195,6 +261,9 @@ public abstract class AbstractBitmapDocumentHandler extends
     @Override
     public void endDocument() throws IFException {
         try {
+            while (!this.pendingPages.isEmpty()) {
+                writeNextPendingPage();
+            }
             if (this.multiImageWriter != null) {
                 this.multiImageWriter.close();
             }
@@ -202,6 +271,13 @@ public abstract class AbstractBitmapDocumentHandler extends
             this.imageWriter = null;
         } catch (final IOException ioe) {
             throw new IFException("I/O error in endDocument()", ioe);
+        } finally {
+            if (this.rasterizer != null) {
+                this.rasterizer.shutdownNow();
+                this.rasterizer = null;
+            }
+            this.rasterizerFontInfos = null;
+            this.pendingPages.clear();
         }
         super.endDocument();
     }
@@ -266,9 +342,111 @@ public abstract class AbstractBitmapDocumentHandler extends
                     / 1000f + 0.5f);
         }
 
+        if (this.rasterizer != null) {
+            // Record the page now, paint it on a worker thread later
+            final RecordingPainter recording = new RecordingPainter(
+                    getContext());
+            this.currentRasterization = createRasterization(recording,
+                    bitmapWidth, bitmapHeight, scale, offset);
+            return recording;
+        } else if (isBanded(bitmapHeight)) {
+            // Record the page now, paint it band by band while encoding
+            final RecordingPainter recording = new RecordingPainter(
+                    getContext());
+            this.currentImage = createBandedImage(recording, bitmapWidth,
+                    bitmapHeight, scale, offset);
+            return recording;
+        }
+
         // Set up bitmap to paint on
-        this.currentImage = createBufferedImage(bitmapWidth, bitmapHeight);
-        final Graphics2D graphics2D = this.currentImage.createGraphics();
+        final BufferedImage image = createBufferedImage(bitmapWidth,
+                bitmapHeight);
+        this.currentImage = image;
+        final Graphics2D graphics2D = createGraphics(image, scale, offset, 0);
+        return new Java2DPainter(graphics2D, getContext(), getFontInfo());
+    }
+
+    private boolean isBanded(final int bitmapHeight) {
+        final int bandHeight = getSettings().getBandHeight();
+        return bandHeight > 0 && bandHeight < bitmapHeight;
+    }
+
+    /**
+     * Creates a page image which is painted band by band, reusing a single
+     * band buffer, from a recorded page.
+     */
+    private RenderedImage createBandedImage(final RecordingPainter recording,
+            final int bitmapWidth, final int bitmapHeight, final double scale,
+            final Point2D offset) {
+        final BufferedImage band = createBufferedImage(bitmapWidth,
+                getSettings().getBandHeight());
+        return new BandedPageImage(bitmapWidth, bitmapHeight, band) {
+            @Override
+            protected void paintBand(final BufferedImage buffer, final int y)
+                    throws IFException {
+                paint(recording, buffer, scale, offset, y, getFontInfo(),
+                        null);
+            }
+        };
+    }
+
+    /**
+     * Replays a recorded page on a bitmap.
+     *
+     * @param recording
+     *            the recorded page
+     * @param image
+     *            the bitmap (the whole page or a band)
+     * @param scale
+     *            the scale factor from page coordinates to pixels (times 1000)
+     * @param offset
+     *            the offset of the page in the bitmap (may be null)
+     * @param bandY
+     *            the y-coordinate of the bitmap on the page in pixels
+     * @param fontInfo
+     *            the font setup to paint with
+     * @param sessionContext
+     *            the image session context to load images with, null to use
+     *            the user agent's
+     * @throws IFException
+     *             if an error occurs while painting
+     */
+    private void paint(final RecordingPainter recording,
+            final BufferedImage image, final double scale,
+            final Point2D offset, final int bandY, final FontInfo fontInfo,
+            final ImageSessionContext sessionContext) throws IFException {
+        final Graphics2D graphics2D = createGraphics(image, scale, offset,
+                bandY);
+        try {
+            final IFContext context = new IFContext(getUserAgent());
+            final Java2DPainter painter = new Java2DPainter(graphics2D,
+                    context, fontInfo);
+            painter.setImageSessionContext(sessionContext);
+            recording.replay(painter, context);
+        } finally {
+            graphics2D.dispose();
+        }
+    }
+
+    /**
+     * Sets up the graphics used to paint a page on the given bitmap.
+     *
+     * @param image
+     *            the bitmap
+     * @param scale
+     *            the scale factor from page coordinates to pixels (times 1000)
+     * @param offset
+     *            the offset of the page in the bitmap (may be null)
+     * @param bandY
+     *            the y-coordinate of the bitmap on the page in pixels, 0
+     *            unless the page is painted in bands
+     * @return the graphics
+     */
+    private Graphics2D createGraphics(final BufferedImage image,
+            final double scale, final Point2D offset, final int bandY) {
+        final int bitmapWidth = image.getWidth();
+        final int bitmapHeight = image.getHeight();
+        final Graphics2D graphics2D = image.createGraphics();
 
         // draw page background
         if (!getSettings().hasTransparentPageBackground()) {
@@ -281,7 +459,7 @@ public abstract class AbstractBitmapDocumentHandler extends
         graphics2D.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
                 RenderingHints.VALUE_FRACTIONALMETRICS_ON);
         if (getSettings().isAntiAliasingEnabled()
-                && this.currentImage.getColorModel().getPixelSize() > 1) {
+                && image.getColorModel().getPixelSize() > 1) {
             graphics2D.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
                     RenderingHints.VALUE_ANTIALIAS_ON);
             graphics2D.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
@@ -303,12 +481,88 @@ public abstract class AbstractBitmapDocumentHandler extends
                 RenderingHints.VALUE_STROKE_PURE);
 
         // Set up initial coordinate system for the page
+        if (bandY != 0) {
+            graphics2D.translate(0, -bandY);
+        }
         if (offset != null) {
             graphics2D.translate(offset.getX(), offset.getY());
         }
         graphics2D.scale(scale / 1000f, scale / 1000f);
+        return graphics2D;
+    }
 
-        return new Java2DPainter(graphics2D, getContext(), getFontInfo());
+    /**
+     * Creates the task which rasterizes a recorded page and returns the bitmap
+     * to be written in page order. The task paints with the font setup of its
+     * thread and loads images with a session context of its own since the
+     * user agent's is not thread-safe. A banded
+     * page is only painted when it is encoded, on the thread running the
+     * document handler.
+     */
+    private Callable<RenderedImage> createRasterization(
+            final RecordingPainter recording, final int bitmapWidth,
+            final int bitmapHeight, final double scale, final Point2D offset) {
+        if (isBanded(bitmapHeight)) {
+            return new Callable<RenderedImage>() {
+                @Override
+                public RenderedImage call() {
+                    return createBandedImage(recording, bitmapWidth,
+                            bitmapHeight, scale, offset);
+                }
+            };
+        }
+        final ImageSessionContext sessionContext = getUserAgent()
+                .createImageSessionContext();
+        final BlockingQueue<FontInfo> fontInfos = this.rasterizerFontInfos;
+        return new Callable<RenderedImage>() {
+            @Override
+            public RenderedImage call() throws IFException,
+                    InterruptedException {
+                final BufferedImage bitmap = createBufferedImage(bitmapWidth,
+                        bitmapHeight);
+                // there are as many font setups as threads, none is waited for
+                final FontInfo fontInfo = fontInfos.take();
+                try {
+                    paint(recording, bitmap, scale, offset, 0, fontInfo,
+                            sessionContext);
+                } finally {
+                    fontInfos.add(fontInfo);
+                }
+                return bitmap;
+            }
+        };
+    }
+
+    /**
+     * Waits for the oldest pending page to be rasterized and writes it.
+     *
+     * @throws IFException
+     *             if the page could not be rasterized
+     * @throws IOException
+     *             if an I/O error occurs while encoding the page
+     */
+    private void writeNextPendingPage() throws IFException, IOException {
+        final PendingPage page = this.pendingPages.removeFirst();
+        final RenderedImage image;
+        try {
+            image = page.image.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IFException("Interrupted while rasterizing a page", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IFException) {
+                throw (IFException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IFException("Error while rasterizing a page", e);
+        }
+        writePage(image, page.pageNumber);
     }
 
     /**
@@ -334,37 +588,65 @@ public abstract class AbstractBitmapDocumentHandler extends
     @Override
     public void endPageContent() throws IFException {
         try {
-            if (this.multiImageWriter == null) {
-                switch (this.pageCount) {
-                case 1:
-                    this.imageWriter.writeImage(this.currentImage,
-                            this.outputStream, getSettings().getWriterParams());
-                    IOUtils.closeQuietly(this.outputStream);
-                    this.outputStream = null;
-                    break;
-                default:
-                    final OutputStream out = this.multiFileUtil
-                    .createOutputStream(this.pageCount - 1);
-                    if (out == null) {
-                        final BitmapRendererEventProducer eventProducer = BitmapRendererEventProducer.Provider
-                                .get(getUserAgent().getEventBroadcaster());
-                        eventProducer.stoppingAfterFirstPageNoFilename(this);
-                    } else {
-                        try {
-                            this.imageWriter.writeImage(this.currentImage, out,
-                                    getSettings().getWriterParams());
-                        } finally {
-                            IOUtils.closeQuietly(out);
-                        }
-                    }
+            if (this.currentRasterization != null) {
+                this.pendingPages.add(new PendingPage(this.pageCount,
+                        this.rasterizer.submit(this.currentRasterization)));
+                while (this.pendingPages.size() > getSettings()
+                        .getMaxPendingPages()) {
+                    writeNextPendingPage();
                 }
             } else {
-                this.multiImageWriter.writeImage(this.currentImage,
-                        getSettings().getWriterParams());
+                writePage(this.currentImage, this.pageCount);
             }
-            this.currentImage = null;
         } catch (final IOException ioe) {
             throw new IFException("I/O error while encoding BufferedImage", ioe);
+        } finally {
+            // The page has been handed over, don't hold on to it
+            this.currentImage = null;
+            this.currentRasterization = null;
+        }
+    }
+
+    /**
+     * Encodes a page bitmap.
+     *
+     * @param image
+     *            the page bitmap
+     * @param pageNumber
+     *            the 1-based page number, used to choose the output file when
+     *            the image writer doesn't support multiple images
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    private void writePage(final RenderedImage image, final int pageNumber)
+            throws IOException {
+        if (this.multiImageWriter == null) {
+            switch (pageNumber) {
+            case 1:
+                this.imageWriter.writeImage(image, this.outputStream,
+                        getSettings().getWriterParams());
+                IOUtils.closeQuietly(this.outputStream);
+                this.outputStream = null;
+                break;
+            default:
+                final OutputStream out = this.multiFileUtil
+                .createOutputStream(pageNumber - 1);
+                if (out == null) {
+                    final BitmapRendererEventProducer eventProducer = BitmapRendererEventProducer.Provider
+                            .get(getUserAgent().getEventBroadcaster());
+                    eventProducer.stoppingAfterFirstPageNoFilename(this);
+                } else {
+                    try {
+                        this.imageWriter.writeImage(image, out, getSettings()
+                                .getWriterParams());
+                    } finally {
+                        IOUtils.closeQuietly(out);
+                    }
+                }
+            }
+        } else {
+            this.multiImageWriter.writeImage(image, getSettings()
+                    .getWriterParams());
         }
     }
 
@@ -381,4 +663,17 @@ public abstract class AbstractBitmapDocumentHandler extends
                 + extension + " (" + extension.getClass().getName() + ")");
     }
 
+
+    /** A page handed to the rasterizer */
+    private static final class PendingPage {
+
+        private final int pageNumber;
+
+        private final Future<RenderedImage> image;
+
+        PendingPage(final int pageNumber, final Future<RenderedImage> image) {
+            this.pageNumber = pageNumber;
+            this.image = image;
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import org.apache.fop.render.intermediate.IFException;
+import org.apache.xmlgraphics.image.rendered.AbstractRed;
+import org.apache.xmlgraphics.image.rendered.CachableRed;
+
+/**
+ * A page image which is painted lazily, one horizontal band at a time, into a
+ * single reusable band buffer. The image is tiled with one tile per band, so
+ * encoders pulling the image strip by strip (like the TIFF and PNG codecs)
+ * never cause the whole page to be held in memory. Each band is painted once
+ * as long as the image is read from top to bottom.
+ */
+abstract class BandedPageImage extends AbstractRed {
+
+    private final BufferedImage band;
+
+    private final int bandHeight;
+
+    /** y-coordinate of the band currently held in the buffer, -1 if none */
+    private int currentBandY = -1;
+
+    /**
+     * Creates a new banded page image.
+     *
+     * @param width
+     *            the width of the page image in pixels
+     * @param height
+     *            the height of the page image in pixels
+     * @param band
+     *            the band buffer, as wide as the page; its height is the band
+     *            height
+     */
+    BandedPageImage(final int width, final int height, final BufferedImage band) {
+        super((CachableRed) null, new Rectangle(0, 0, width, height), band
+                .getColorModel(), band.getSampleModel()
+                .createCompatibleSampleModel(width, band.getHeight()), 0, 0,
+                null);
+        this.band = band;
+        this.bandHeight = band.getHeight();
+    }
+
+    /**
+     * Paints the part of the page covered by a band. The buffer has been
+     * cleared before this method is called.
+     *
+     * @param buffer
+     *            the band buffer
+     * @param y
+     *            the y-coordinate of the band's top edge on the page
+     * @throws IFException
+     *             if an error occurs while painting
+     */
+    protected abstract void paintBand(BufferedImage buffer, int y)
+            throws IFException;
+
+    private void selectBand(final int y) {
+        if (y == this.currentBandY) {
+            return;
+        }
+        final Graphics2D g2d = this.band.createGraphics();
+        try {
+            g2d.setComposite(AlphaComposite.Clear);
+            g2d.fillRect(0, 0, this.band.getWidth(), this.bandHeight);
+        } finally {
+            g2d.dispose();
+        }
+        this.currentBandY = -1;
+        try {
+            paintBand(this.band, y);
+        } catch (final IFException e) {
+            throw new IllegalStateException("Error while painting page band",
+                    e);
+        }
+        this.currentBandY = y;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public WritableRaster copyData(final WritableRaster wr) {
+        final Rectangle area = wr.getBounds().intersection(getBounds());
+        final int maxY = area.y + area.height;
+        for (int y = area.y - area.y % this.bandHeight; y < maxY; y += this.bandHeight) {
+            selectBand(y);
+            final Rectangle part = area.intersection(new Rectangle(0, y,
+                    getWidth(), this.bandHeight));
+            final Raster src = this.band.getRaster().createChild(part.x,
+                    part.y - y, part.width, part.height, part.x, part.y, null);
+            wr.setRect(src);
+        }
+        return wr;
+    }
+
+}
@@ -99,6 +99,29 @@ public class BitmapRendererConfigurator extends Java2DRendererConfigurator {
                 settings.setQualityRendering(false);
             }
 
+            final int threads = cfg.getChild("rendering-threads")
+                    .getValueAsInteger(settings.getRenderingThreads());
+            if (threads < 1) {
+                throw new FOPException("Invalid value for rendering-threads: "
+                        + threads);
+            }
+            settings.setRenderingThreads(threads);
+            final int pendingPages = cfg.getChild("max-pending-pages")
+                    .getValueAsInteger(0);
+            if (pendingPages < 0) {
+                throw new FOPException("Invalid value for max-pending-pages: "
+                        + pendingPages);
+            }
+            settings.setMaxPendingPages(pendingPages);
+
+            final int bandHeight = cfg.getChild("band-height")
+                    .getValueAsInteger(settings.getBandHeight());
+            if (bandHeight < 0) {
+                throw new FOPException("Invalid value for band-height: "
+                        + bandHeight);
+            }
+            settings.setBandHeight(bandHeight);
+
             final String color = cfg.getChild("color-mode").getValue(null);
             if (color != null) {
                 if ("rgba".equalsIgnoreCase(color)) {
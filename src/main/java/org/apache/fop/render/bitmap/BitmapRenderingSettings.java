@@ -45,6 +45,15 @@ public class BitmapRenderingSettings extends Java2DRenderingSettings implements
     /** true if qualityRendering is set */
     private boolean qualityRendering = true;
 
+    /** number of threads rasterizing pages, 1 for sequential rendering */
+    private int renderingThreads = 1;
+
+    /** maximum number of pages waiting to be rasterized or written */
+    private int maxPendingPages = 0;
+
+    /** height of the bands pages are painted in, 0 to paint whole pages */
+    private int bandHeight = 0;
+
     /**
      * Default constructor. Initializes the settings to their default values.
      */
@@ -119,4 +128,87 @@ public class BitmapRenderingSettings extends Java2DRenderingSettings implements
         return this.qualityRendering;
     }
 
+    /**
+     * Sets the number of threads used to rasterize pages. With more than one
+     * thread, the painting operations of each page are recorded and the pages
+     * are rasterized in parallel, while still being written in page order.
+     * Each thread uses a font setup of its own.
+     * 
+     * @param threads
+     *            the number of threads (1 for sequential rendering)
+     */
+    public void setRenderingThreads(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(
+                    "The number of rendering threads must be at least 1");
+        }
+        this.renderingThreads = threads;
+    }
+
+    /**
+     * Returns the number of threads used to rasterize pages.
+     * 
+     * @return the number of threads (1 for sequential rendering)
+     */
+    public int getRenderingThreads() {
+        return this.renderingThreads;
+    }
+
+    /**
+     * Sets the maximum number of pages which may wait to be rasterized or
+     * written when rendering in parallel. Each such page holds a recording
+     * of its painting operations or its bitmap, so this bounds the memory
+     * used.
+     * 
+     * @param pages
+     *            the maximum number of pending pages, 0 to use twice the
+     *            number of rendering threads
+     */
+    public void setMaxPendingPages(final int pages) {
+        if (pages < 0) {
+            throw new IllegalArgumentException(
+                    "The maximum number of pending pages must not be negative");
+        }
+        this.maxPendingPages = pages;
+    }
+
+    /**
+     * Returns the maximum number of pages which may wait to be rasterized or
+     * written when rendering in parallel.
+     * 
+     * @return the maximum number of pending pages
+     */
+    public int getMaxPendingPages() {
+        if (this.maxPendingPages > 0) {
+            return this.maxPendingPages;
+        }
+        return 2 * this.renderingThreads;
+    }
+
+    /**
+     * Sets the height of the horizontal bands in which pages are painted.
+     * Instead of allocating a bitmap for the whole page, the page is recorded
+     * and painted band by band into a single buffer while it is being
+     * encoded. This bounds the memory needed for high-resolution output.
+     * 
+     * @param height
+     *            the band height in pixels, 0 to paint whole pages
+     */
+    public void setBandHeight(final int height) {
+        if (height < 0) {
+            throw new IllegalArgumentException(
+                    "The band height must not be negative");
+        }
+        this.bandHeight = height;
+    }
+
+    /**
+     * Returns the height of the horizontal bands in which pages are painted.
+     * 
+     * @return the band height in pixels, 0 if whole pages are painted
+     */
+    public int getBandHeight() {
+        return this.bandHeight;
+    }
+
 }
@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.bitmap;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Paint;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.fop.render.intermediate.IFContext;
+import org.apache.fop.render.intermediate.IFException;
+import org.apache.fop.render.intermediate.IFPainter;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+import org.apache.xmlgraphics.util.QName;
+import org.w3c.dom.Document;
+
+/**
+ * {@link IFPainter} implementation which records the painting operations of a
+ * page so they can be replayed later, possibly on another thread, against the
+ * painter doing the actual work. Mutable arguments are copied when recorded.
+ */
+public class RecordingPainter implements IFPainter {
+
+    /** A recorded painting operation. */
+    private interface Command {
+
+        void replay(IFPainter painter, IFContext context) throws IFException;
+    }
+
+    private final IFContext context;
+
+    private final List<Command> commands = new ArrayList<>();
+
+    /**
+     * Creates a new recording painter.
+     *
+     * @param context
+     *            the IF context, used to capture the foreign attributes in
+     *            effect when an image is painted
+     */
+    public RecordingPainter(final IFContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Replays all recorded operations.
+     *
+     * @param painter
+     *            the painter receiving the operations
+     * @param replayContext
+     *            the painter's own IF context
+     * @throws IFException
+     *             if an error occurs while painting
+     */
+    public void replay(final IFPainter painter, final IFContext replayContext)
+            throws IFException {
+        for (final Command command : this.commands) {
+            command.replay(painter, replayContext);
+        }
+    }
+
+    private static AffineTransform copy(final AffineTransform transform) {
+        return transform != null ? new AffineTransform(transform) : null;
+    }
+
+    private static AffineTransform[] copy(final AffineTransform[] transforms) {
+        if (transforms == null) {
+            return null;
+        }
+        final AffineTransform[] copies = new AffineTransform[transforms.length];
+        for (int i = 0; i < transforms.length; i++) {
+            copies[i] = copy(transforms[i]);
+        }
+        return copies;
+    }
+
+    private static Rectangle copy(final Rectangle rect) {
+        return rect != null ? new Rectangle(rect) : null;
+    }
+
+    private Map<QName, String> copyForeignAttributes() {
+        final Map<QName, String> foreignAttributes = this.context
+                .getForeignAttributes();
+        if (foreignAttributes.isEmpty()) {
+            return null;
+        }
+        return new HashMap<>(foreignAttributes);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startViewport(final AffineTransform transform,
+            final Dimension size, final Rectangle clipRect) {
+        final AffineTransform t = copy(transform);
+        final Dimension s = new Dimension(size);
+        final Rectangle clip = copy(clipRect);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.startViewport(t, s, clip);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startViewport(final AffineTransform[] transforms,
+            final Dimension size, final Rectangle clipRect) {
+        final AffineTransform[] t = copy(transforms);
+        final Dimension s = new Dimension(size);
+        final Rectangle clip = copy(clipRect);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.startViewport(t, s, clip);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endViewport() {
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.endViewport();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startGroup(final AffineTransform[] transforms) {
+        final AffineTransform[] t = copy(transforms);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.startGroup(t);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startGroup(final AffineTransform transform) {
+        final AffineTransform t = copy(transform);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.startGroup(t);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endGroup() {
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.endGroup();
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setFont(final String family, final String style,
+            final Integer weight, final String variant, final Integer size,
+            final Color color) {
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.setFont(family, style, weight, variant, size, color);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawText(final int x, final int y, final int letterSpacing,
+            final int wordSpacing, final int[] dx, final String text) {
+        final int[] adjustments = dx != null ? dx.clone() : null;
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.drawText(x, y, letterSpacing, wordSpacing,
+                        adjustments, text);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clipRect(final Rectangle rect) {
+        final Rectangle r = copy(rect);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.clipRect(r);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void fillRect(final Rectangle rect, final Paint fill) {
+        final Rectangle r = copy(rect);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.fillRect(r, fill);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawBorderRect(final Rectangle rect, final BorderProps before,
+            final BorderProps after, final BorderProps start,
+            final BorderProps end) {
+        final Rectangle r = copy(rect);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.drawBorderRect(r, before, after, start, end);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawLine(final Point start, final Point end, final int width,
+            final Color color, final RuleStyle style) {
+        final Point p1 = new Point(start);
+        final Point p2 = new Point(end);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                painter.drawLine(p1, p2, width, color, style);
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawImage(final String uri, final Rectangle rect) {
+        final Rectangle r = copy(rect);
+        final Map<QName, String> foreignAttributes = copyForeignAttributes();
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                ctx.setForeignAttributes(foreignAttributes);
+                try {
+                    painter.drawImage(uri, r);
+                } finally {
+                    ctx.resetForeignAttributes();
+                }
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawImage(final Document doc, final Rectangle rect) {
+        final Rectangle r = copy(rect);
+        final Map<QName, String> foreignAttributes = copyForeignAttributes();
+        // The DOM may be shared with other pages and DOM implementations
+        // aren't thread-safe, even for reading
+        final Document document = (Document) doc.cloneNode(true);
+        this.commands.add(new Command() {
+            @Override
+            public void replay(final IFPainter painter, final IFContext ctx)
+                    throws IFException {
+                ctx.setForeignAttributes(foreignAttributes);
+                try {
+                    painter.drawImage(document, r);
+                } finally {
+                    ctx.resetForeignAttributes();
+                }
+            }
+        });
+    }
+
+}
@@ -30,12 +30,11 @@ import java.awt.image.SampleModel;
 import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Iterator;
 
 import lombok.extern.slf4j.Slf4j;
 
-import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.area.PageViewport;
 import org.apache.fop.render.java2d.Java2DRenderer;
 import org.apache.xmlgraphics.image.GraphicsUtil;
 import org.apache.xmlgraphics.image.rendered.FormatRed;
@@ -79,6 +78,11 @@ public class TIFFRenderer extends Java2DRenderer implements TIFFConstants {
 
     private OutputStream outputStream;
 
+    private ImageWriter writer;
+
+    /** Writer used when the codec supports multi-page output */
+    private MultiImageWriter multiWriter;
+
     /** {@inheritDoc} */
     @Override
     public String getMimeType() {
@@ -109,46 +113,55 @@ public class TIFFRenderer extends Java2DRenderer implements TIFFConstants {
             throws IOException {
         this.outputStream = outputStream;
         super.startRenderer(outputStream);
-    }
-
-    /** {@inheritDoc} */
-    @Override
-    public void stopRenderer() throws IOException {
-        super.stopRenderer();
-        log.debug("Starting TIFF encoding ...");
-
-        // Creates lazy iterator over generated page images
-        final Iterator<RenderedImage> pageImagesItr = new LazyPageImagesIterator(
-                getNumberOfPages());
 
         // Creates writer
-        final ImageWriter writer = ImageWriterRegistry.getInstance()
-                .getWriterFor(getMimeType());
-        if (writer == null) {
+        this.writer = ImageWriterRegistry.getInstance().getWriterFor(
+                getMimeType());
+        if (this.writer == null) {
             final BitmapRendererEventProducer eventProducer = BitmapRendererEventProducer.Provider
                     .get(getUserAgent().getEventBroadcaster());
             eventProducer.noImageWriterFound(this, getMimeType());
         }
-        if (writer.supportsMultiImageWriter()) {
-            final MultiImageWriter multiWriter = writer
+        if (this.writer.supportsMultiImageWriter()) {
+            this.multiWriter = this.writer
                     .createMultiImageWriter(this.outputStream);
-            try {
-                // Write all pages/images
-                while (pageImagesItr.hasNext()) {
-                    final RenderedImage img = pageImagesItr.next();
-                    multiWriter.writeImage(img, this.writerParams);
-                }
-            } finally {
-                multiWriter.close();
-            }
-        } else {
-            writer.writeImage(pageImagesItr.next(), this.outputStream,
+        }
+        log.debug("Starting TIFF encoding ...");
+    }
+
+    /**
+     * {@inheritDoc} Unlike the other Java2D based renderers, the page is
+     * rasterized and encoded immediately, so its area tree does not need to be
+     * retained until the end of the document.
+     */
+    @Override
+    public void renderPage(final PageViewport pageViewport) throws IOException {
+        final int pageIndex = getCurrentPageNumber();
+        setCurrentPageNumber(pageIndex + 1);
+        if (this.multiWriter != null) {
+            this.multiWriter.writeImage(getRenderedPageImage(pageViewport),
                     this.writerParams);
-            if (pageImagesItr.hasNext()) {
-                final BitmapRendererEventProducer eventProducer = BitmapRendererEventProducer.Provider
-                        .get(getUserAgent().getEventBroadcaster());
-                eventProducer.stoppingAfterFirstPageNoFilename(this);
+        } else if (pageIndex == 0) {
+            this.writer.writeImage(getRenderedPageImage(pageViewport),
+                    this.outputStream, this.writerParams);
+        } else if (pageIndex == 1) {
+            final BitmapRendererEventProducer eventProducer = BitmapRendererEventProducer.Provider
+                    .get(getUserAgent().getEventBroadcaster());
+            eventProducer.stoppingAfterFirstPageNoFilename(this);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void stopRenderer() throws IOException {
+        super.stopRenderer();
+        try {
+            if (this.multiWriter != null) {
+                this.multiWriter.close();
             }
+        } finally {
+            this.multiWriter = null;
+            this.writer = null;
         }
 
         // Cleaning
@@ -165,78 +178,42 @@ public class TIFFRenderer extends Java2DRenderer implements TIFFConstants {
                 this.bufferedImageType);
     }
 
-    /** Private inner class to lazy page rendering. */
-    private class LazyPageImagesIterator implements Iterator<RenderedImage> {
-
-        private final int count;
-
-        private int current = 0;
-
-        /**
-         * Main constructor
-         *
-         * @param c
-         *            number of pages to iterate over
-         * @param log
-         *            the logger to use (this is a hack so this compiles under
-         *            JDK 1.3)
-         */
-        public LazyPageImagesIterator(final int c) {
-            this.count = c;
-        }
-
-        @Override
-        public boolean hasNext() {
-            return this.current < this.count;
-        }
+    /**
+     * Renders a page and prepares the resulting image for encoding by the
+     * codec.
+     *
+     * @param pageViewport
+     *            the page to render
+     * @return the page image
+     */
+    private RenderedImage getRenderedPageImage(final PageViewport pageViewport) {
+        log.debug("[{}]", getCurrentPageNumber());
 
-        @Override
-        public RenderedImage next() {
-            log.debug("[{}]", this.current + 1);
-
-            // Renders current page as image
-            BufferedImage pageImage = null;
-            try {
-                pageImage = getPageImage(this.current++);
-            } catch (final FOPException e) {
-                log.error("FOPException", e);
-                return null;
-            }
+        // Renders current page as image
+        final BufferedImage pageImage = getPageImage(pageViewport);
 
-            if (COMPRESSION_CCITT_T4
-                    .equalsIgnoreCase(TIFFRenderer.this.writerParams
-                            .getCompressionMethod())
-                            || COMPRESSION_CCITT_T6
-                            .equalsIgnoreCase(TIFFRenderer.this.writerParams
-                                    .getCompressionMethod())) {
-                return pageImage;
-            } else {
-                // Decorate the image with a packed sample model for encoding by
-                // the codec
-                SinglePixelPackedSampleModel sppsm;
-                sppsm = (SinglePixelPackedSampleModel) pageImage
-                        .getSampleModel();
-
-                final int bands = sppsm.getNumBands();
-                final int[] off = new int[bands];
-                final int w = pageImage.getWidth();
-                final int h = pageImage.getHeight();
-                for (int i = 0; i < bands; ++i) {
-                    off[i] = i;
-                }
-                final SampleModel sm = new PixelInterleavedSampleModel(
-                        DataBuffer.TYPE_BYTE, w, h, bands, w * bands, off);
-
-                final RenderedImage rimg = new FormatRed(
-                        GraphicsUtil.wrap(pageImage), sm);
-                return rimg;
+        if (COMPRESSION_CCITT_T4.equalsIgnoreCase(this.writerParams
+                .getCompressionMethod())
+                || COMPRESSION_CCITT_T6.equalsIgnoreCase(this.writerParams
+                        .getCompressionMethod())) {
+            return pageImage;
+        } else {
+            // Decorate the image with a packed sample model for encoding by
+            // the codec
+            SinglePixelPackedSampleModel sppsm;
+            sppsm = (SinglePixelPackedSampleModel) pageImage.getSampleModel();
+
+            final int bands = sppsm.getNumBands();
+            final int[] off = new int[bands];
+            final int w = pageImage.getWidth();
+            final int h = pageImage.getHeight();
+            for (int i = 0; i < bands; ++i) {
+                off[i] = i;
             }
-        }
+            final SampleModel sm = new PixelInterleavedSampleModel(
+                    DataBuffer.TYPE_BYTE, w, h, bands, w * bands, off);
 
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException(
-                    "Method 'remove' is not supported.");
+            return new FormatRed(GraphicsUtil.wrap(pageImage), sm);
         }
     }
 
@@ -38,6 +38,7 @@ import org.apache.fop.apps.FopFactory;
 import org.apache.fop.render.ImageHandler;
 import org.apache.fop.render.ImageHandlerRegistry;
 import org.apache.fop.render.ImageHandlerUtil;
+import org.apache.fop.render.ImagePreloader;
 import org.apache.fop.render.RenderingContext;
 import org.apache.fop.traits.BorderProps;
 import org.apache.fop.traits.RuleStyle;
@@ -65,12 +66,40 @@ public abstract class AbstractIFPainter implements IFPainter {
     /** Holds the intermediate format state */
     protected IFState state;
 
+    private ImageSessionContext imageSessionContext;
+
     /**
      * Default constructor.
      */
     public AbstractIFPainter() {
     }
 
+    /**
+     * Sets the image session context used to load images. By default, the
+     * painter uses the one of the user agent, which must only be used from the
+     * thread running the rendering run. A painter used on another thread needs
+     * its own (see {@link FOUserAgent#createImageSessionContext()}).
+     *
+     * @param sessionContext
+     *            the image session context or null to use the user agent's
+     */
+    public void setImageSessionContext(
+            final ImageSessionContext sessionContext) {
+        this.imageSessionContext = sessionContext;
+    }
+
+    /**
+     * Returns the image session context used to load images.
+     *
+     * @return the image session context
+     */
+    protected ImageSessionContext getImageSessionContext() {
+        if (this.imageSessionContext != null) {
+            return this.imageSessionContext;
+        }
+        return getUserAgent().getImageSessionContext();
+    }
+
     /**
      * Returns the intermediate format context object.
      *
@@ -140,8 +169,7 @@ public abstract class AbstractIFPainter implements IFPainter {
     protected void drawImageUsingImageHandler(final ImageInfo info,
             final Rectangle rect) throws ImageException, IOException {
         final ImageManager manager = getFopFactory().getImageManager();
-        final ImageSessionContext sessionContext = getUserAgent()
-                .getImageSessionContext();
+        final ImageSessionContext sessionContext = getImageSessionContext();
         final ImageHandlerRegistry imageHandlerRegistry = getFopFactory()
                 .getImageHandlerRegistry();
 
@@ -152,8 +180,14 @@ public abstract class AbstractIFPainter implements IFPainter {
 
         final ImageFlavor[] flavors = imageHandlerRegistry
                 .getSupportedFlavors(context);
-        final org.apache.xmlgraphics.image.loader.Image img = manager.getImage(
-                info, flavors, hints, sessionContext);
+        org.apache.xmlgraphics.image.loader.Image img = null;
+        final ImagePreloader preloader = getUserAgent().getImagePreloader();
+        if (preloader != null) {
+            img = preloader.getImage(info, flavors, hints);
+        }
+        if (img == null) {
+            img = manager.getImage(info, flavors, hints, sessionContext);
+        }
 
         try {
             drawImage(img, rect, context);
@@ -239,8 +273,8 @@ public abstract class AbstractIFPainter implements IFPainter {
         Image effImage;
         context.putHints(additionalHints);
         if (convert) {
-            final Map hints = createDefaultImageProcessingHints(getUserAgent()
-                    .getImageSessionContext());
+            final Map hints = createDefaultImageProcessingHints(
+                    getImageSessionContext());
             if (additionalHints != null) {
                 hints.putAll(additionalHints);
             }
@@ -280,8 +314,7 @@ public abstract class AbstractIFPainter implements IFPainter {
     protected ImageInfo getImageInfo(final String uri) {
         final ImageManager manager = getFopFactory().getImageManager();
         try {
-            final ImageSessionContext sessionContext = getUserAgent()
-                    .getImageSessionContext();
+            final ImageSessionContext sessionContext = getImageSessionContext();
             return manager.getImageInfo(uri, sessionContext);
         } catch (final ImageException ie) {
             final ResourceEventProducer eventProducer = ResourceEventProducer.Provider
@@ -311,8 +344,7 @@ public abstract class AbstractIFPainter implements IFPainter {
         final ImageManager manager = getFopFactory().getImageManager();
         ImageInfo info = null;
         try {
-            final ImageSessionContext sessionContext = getUserAgent()
-                    .getImageSessionContext();
+            final ImageSessionContext sessionContext = getImageSessionContext();
             info = manager.getImageInfo(uri, sessionContext);
 
             drawImageUsingImageHandler(info, rect);
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import org.apache.fop.apps.MimeConstants;
+
+/**
+ * Constants for the binary encoding of the intermediate format.
+ * <p>
+ * A binary IF file starts with {@link #MAGIC} and {@link #VERSION}, followed
+ * by one record per IF event. Each record is an opcode byte followed by the
+ * event's arguments. Integers are written as variable-length quantities
+ * (zigzag-encoded if they may be negative), strings go through a shared
+ * table of recently used strings and colors and font changes are interned in
+ * tables so repeated values only cost an index. Parts of the IF which have no
+ * fixed structure (navigation, extensions, structure tree, embedded
+ * documents) are carried as XML fragments.
+ */
+interface IFBinaryConstants {
+
+    /** MIME type of the binary intermediate format. */
+    String MIME_TYPE = MimeConstants.MIME_FOP_IF_BINARY;
+
+    /** File signature */
+    byte[] MAGIC = new byte[] { 'F', 'O', 'P', 'B' };
+
+    /** Version of the encoding */
+    int VERSION = 1;
+
+    /** Number of entries in the string table */
+    int STRING_TABLE_SIZE = 4096;
+
+    /** Strings longer than this are never entered into the string table */
+    int MAX_TABLE_STRING_LENGTH = 64;
+
+    int OP_START_DOCUMENT = 1;
+    int OP_END_DOCUMENT = 2;
+    int OP_START_DOCUMENT_HEADER = 3;
+    int OP_END_DOCUMENT_HEADER = 4;
+    int OP_START_DOCUMENT_TRAILER = 5;
+    int OP_END_DOCUMENT_TRAILER = 6;
+    int OP_START_PAGE_SEQUENCE = 7;
+    int OP_END_PAGE_SEQUENCE = 8;
+    int OP_START_PAGE = 9;
+    int OP_END_PAGE = 10;
+    int OP_START_PAGE_HEADER = 11;
+    int OP_END_PAGE_HEADER = 12;
+    int OP_START_PAGE_CONTENT = 13;
+    int OP_END_PAGE_CONTENT = 14;
+    int OP_START_PAGE_TRAILER = 15;
+    int OP_END_PAGE_TRAILER = 16;
+    int OP_START_VIEWPORT = 17;
+    int OP_END_VIEWPORT = 18;
+    int OP_START_GROUP = 19;
+    int OP_END_GROUP = 20;
+    int OP_SET_FONT = 21;
+    int OP_DRAW_TEXT = 22;
+    int OP_CLIP_RECT = 23;
+    int OP_FILL_RECT = 24;
+    int OP_DRAW_BORDER_RECT = 25;
+    int OP_DRAW_LINE = 26;
+    int OP_DRAW_IMAGE = 27;
+    int OP_DRAW_IMAGE_DOCUMENT = 28;
+    /** XML fragment handed to the IF parser (navigation, extensions) */
+    int OP_XML_FRAGMENT = 29;
+
+    /** Transformation types */
+    int TRANSFORM_IDENTITY = 0;
+    int TRANSFORM_TRANSLATE = 1;
+    int TRANSFORM_MATRIX = 2;
+
+    /** Flags for the optional parts of a text record */
+    int TEXT_LETTER_SPACING = 0x01;
+    int TEXT_WORD_SPACING = 0x02;
+    int TEXT_DX = 0x04;
+    int TEXT_STRUCTURE_POINTER = 0x08;
+
+    /** Flags for the fields of a font definition */
+    int FONT_FAMILY = 0x01;
+    int FONT_STYLE = 0x02;
+    int FONT_WEIGHT = 0x04;
+    int FONT_VARIANT = 0x08;
+    int FONT_SIZE = 0x10;
+    int FONT_COLOR = 0x20;
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Buffered reader for the primitives of the binary intermediate format. It
+ * mirrors {@link IFBinaryOutput}, including the string table.
+ */
+final class IFBinaryInput implements IFBinaryConstants {
+
+    private final InputStream in;
+
+    private final byte[] buf = new byte[8192];
+
+    private int pos;
+
+    private int limit;
+
+    private final String[] strings = new String[STRING_TABLE_SIZE];
+
+    private int nextString;
+
+    /**
+     * Creates a new reader.
+     *
+     * @param in
+     *            the stream to read from
+     */
+    IFBinaryInput(final InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a single byte.
+     *
+     * @return the byte (0-255), or -1 at the end of the stream
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    int read() throws IOException {
+        if (this.pos == this.limit && !fill()) {
+            return -1;
+        }
+        return this.buf[this.pos++] & 0xFF;
+    }
+
+    /**
+     * Reads a single byte which must be present.
+     *
+     * @return the byte (0-255)
+     * @throws IOException
+     *             In case of an I/O error or at the end of the stream
+     */
+    int readByte() throws IOException {
+        final int b = read();
+        if (b < 0) {
+            throw new EOFException("Unexpected end of binary IF stream");
+        }
+        return b;
+    }
+
+    /**
+     * Reads a block of bytes.
+     *
+     * @param b
+     *            the array receiving the bytes
+     * @param off
+     *            the offset in the array
+     * @param len
+     *            the number of bytes to read
+     * @throws IOException
+     *             In case of an I/O error or at the end of the stream
+     */
+    void readFully(final byte[] b, final int off, final int len)
+            throws IOException {
+        int done = 0;
+        while (done < len) {
+            if (this.pos == this.limit && !fill()) {
+                throw new EOFException("Unexpected end of binary IF stream");
+            }
+            final int n = Math.min(len - done, this.limit - this.pos);
+            System.arraycopy(this.buf, this.pos, b, off + done, n);
+            this.pos += n;
+            done += n;
+        }
+    }
+
+    /**
+     * Reads an integer written by {@link IFBinaryOutput#writeVarint(int)}.
+     *
+     * @return the value
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    int readVarint() throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) {
+                throw new IOException("Malformed variable-length integer");
+            }
+            b = readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Reads an integer written by {@link IFBinaryOutput#writeSignedVarint(int)}.
+     *
+     * @return the value
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    int readSignedVarint() throws IOException {
+        final int v = readVarint();
+        return v >>> 1 ^ -(v & 1);
+    }
+
+    /**
+     * Reads a double written by {@link IFBinaryOutput#writeDouble(double)}.
+     *
+     * @return the value
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    double readDouble() throws IOException {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits = bits << 8 | readByte();
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    /**
+     * Reads a string written by {@link IFBinaryOutput#writeString(String)}.
+     *
+     * @return the string (may be null)
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    String readString() throws IOException {
+        final int tag = readVarint();
+        if (tag == 0) {
+            return null;
+        } else if (tag > 1) {
+            final int slot = tag - 2;
+            if (slot >= STRING_TABLE_SIZE || this.strings[slot] == null) {
+                throw new IOException("Invalid string reference: " + slot);
+            }
+            return this.strings[slot];
+        }
+        final byte[] bytes = readBytes();
+        final String s = new String(bytes, "UTF-8");
+        if (s.length() <= MAX_TABLE_STRING_LENGTH) {
+            this.strings[this.nextString] = s;
+            this.nextString = (this.nextString + 1) % STRING_TABLE_SIZE;
+        }
+        return s;
+    }
+
+    /**
+     * Reads a block of bytes preceded by its length.
+     *
+     * @return the bytes
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    byte[] readBytes() throws IOException {
+        final byte[] bytes = new byte[readVarint()];
+        readFully(bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private boolean fill() throws IOException {
+        final int n = this.in.read(this.buf, 0, this.buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        this.pos = 0;
+        this.limit = n;
+        return true;
+    }
+}
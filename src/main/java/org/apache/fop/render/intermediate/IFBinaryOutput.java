@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Buffered writer for the primitives of the binary intermediate format:
+ * variable-length integers, doubles and strings deduplicated through the
+ * string table.
+ */
+final class IFBinaryOutput implements IFBinaryConstants {
+
+    private final OutputStream out;
+
+    private final byte[] buf = new byte[8192];
+
+    private int count;
+
+    /** string -> slot in the string table */
+    private final Map<String, Integer> stringIndex = new java.util.HashMap<>();
+
+    private final String[] strings = new String[STRING_TABLE_SIZE];
+
+    private int nextString;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param out
+     *            the stream to write to
+     */
+    IFBinaryOutput(final OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param b
+     *            the byte (only the lower 8 bits are used)
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeByte(final int b) throws IOException {
+        if (this.count == this.buf.length) {
+            flushBuffer();
+        }
+        this.buf[this.count++] = (byte) b;
+    }
+
+    /**
+     * Writes a block of bytes.
+     *
+     * @param b
+     *            the bytes
+     * @param off
+     *            the offset in the array
+     * @param len
+     *            the number of bytes to write
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeBytes(final byte[] b, final int off, final int len)
+            throws IOException {
+        if (len > this.buf.length - this.count) {
+            flushBuffer();
+            if (len > this.buf.length) {
+                this.out.write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, this.buf, this.count, len);
+        this.count += len;
+    }
+
+    /**
+     * Writes a block of bytes preceded by its length.
+     *
+     * @param b
+     *            the bytes
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeBlock(final byte[] b) throws IOException {
+        writeVarint(b.length);
+        writeBytes(b, 0, b.length);
+    }
+
+    /**
+     * Writes a non-negative integer in 7-bit groups, least significant first.
+     *
+     * @param value
+     *            the value (treated as unsigned)
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeVarint(final int value) throws IOException {
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            writeByte(v & 0x7F | 0x80);
+            v >>>= 7;
+        }
+        writeByte(v);
+    }
+
+    /**
+     * Writes an integer which may be negative, zigzag-encoded so small
+     * magnitudes stay short.
+     *
+     * @param value
+     *            the value
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeSignedVarint(final int value) throws IOException {
+        writeVarint(value << 1 ^ value >> 31);
+    }
+
+    /**
+     * Writes a double as its 64-bit IEEE 754 representation.
+     *
+     * @param value
+     *            the value
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeDouble(final double value) throws IOException {
+        final long bits = Double.doubleToLongBits(value);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (bits >>> shift));
+        }
+    }
+
+    /**
+     * Writes a string. A string found in the string table is written as a
+     * reference to its slot; otherwise it is written in UTF-8 and, unless it
+     * is long, takes the oldest slot of the table.
+     *
+     * @param s
+     *            the string (may be null)
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeString(final String s) throws IOException {
+        if (s == null) {
+            writeVarint(0);
+            return;
+        }
+        final Integer slot = this.stringIndex.get(s);
+        if (slot != null) {
+            writeVarint(slot.intValue() + 2);
+            return;
+        }
+        final byte[] bytes = s.getBytes("UTF-8");
+        writeVarint(1);
+        writeVarint(bytes.length);
+        writeBytes(bytes, 0, bytes.length);
+        if (s.length() <= MAX_TABLE_STRING_LENGTH) {
+            final String evicted = this.strings[this.nextString];
+            if (evicted != null) {
+                this.stringIndex.remove(evicted);
+            }
+            this.strings[this.nextString] = s;
+            this.stringIndex.put(s, this.nextString);
+            this.nextString = (this.nextString + 1) % STRING_TABLE_SIZE;
+        }
+    }
+
+    /**
+     * Writes out the buffered bytes and flushes the underlying stream.
+     *
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void flush() throws IOException {
+        flushBuffer();
+        this.out.flush();
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.count > 0) {
+            this.out.write(this.buf, 0, this.count);
+            this.count = 0;
+        }
+    }
+}
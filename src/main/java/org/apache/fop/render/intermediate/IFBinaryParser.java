@@ -0,0 +1,572 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.apache.fop.accessibility.AccessibilityEventProducer;
+import org.apache.fop.accessibility.StructureTreeBuilder;
+import org.apache.fop.apps.FOUserAgent;
+import org.apache.fop.fo.ElementMapping;
+import org.apache.fop.fo.expr.PropertyException;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+import org.apache.fop.util.ColorUtil;
+import org.apache.fop.util.ContentHandlerFactory;
+import org.apache.fop.util.DOMBuilderContentHandlerFactory;
+import org.apache.fop.util.DefaultErrorListener;
+import org.apache.fop.util.XMLUtil;
+import org.apache.xmlgraphics.util.QName;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * This is a parser for the binary intermediate format written by
+ * {@link IFBinarySerializer}. It converts the binary file into
+ * {@link IFDocumentHandler} and {@link IFPainter} events.
+ */
+public class IFBinaryParser implements IFBinaryConstants {
+
+    private static SAXTransformerFactory tFactory = (SAXTransformerFactory) SAXTransformerFactory
+            .newInstance();
+
+    /**
+     * Parses a binary intermediate file and paints it.
+     *
+     * @param in
+     *            the stream to read the binary intermediate file from
+     * @param documentHandler
+     *            the intermediate format document handler used to process the
+     *            IF events
+     * @param userAgent
+     *            the user agent
+     * @throws IOException
+     *             if an I/O error occurs or the file is malformed
+     * @throws IFException
+     *             if an IF-related error occurs inside the target document
+     *             handler
+     */
+    public void parse(final InputStream in,
+            final IFDocumentHandler documentHandler, final FOUserAgent userAgent)
+                    throws IOException, IFException {
+        new Decoder(new IFBinaryInput(in), documentHandler, userAgent).decode();
+    }
+
+    private static final class Decoder {
+
+        private final IFBinaryInput input;
+        private final IFDocumentHandler documentHandler;
+        private final FOUserAgent userAgent;
+        private IFPainter painter;
+
+        /** receives navigation and extension fragments */
+        private final ContentHandler fragmentHandler;
+
+        private StructureTreeBuilder structureTreeBuilder;
+
+        private final List<Color> colors = new ArrayList<>();
+        private final List<FontChange> fonts = new ArrayList<>();
+
+        private int lastTextX;
+        private int lastTextY;
+
+        Decoder(final IFBinaryInput input,
+                final IFDocumentHandler documentHandler,
+                final FOUserAgent userAgent) {
+            this.input = input;
+            this.documentHandler = documentHandler;
+            this.userAgent = userAgent;
+            this.fragmentHandler = new IFParser().getContentHandler(
+                    documentHandler, userAgent);
+            // Created after the fragment handler so this structure tree is
+            // the one registered with the user agent
+            if (userAgent.isAccessibilityEnabled()) {
+                this.structureTreeBuilder = new StructureTreeBuilder(tFactory);
+                userAgent.setStructureTree(this.structureTreeBuilder
+                        .getStructureTree());
+            }
+        }
+
+        void decode() throws IOException, IFException {
+            final byte[] magic = new byte[MAGIC.length];
+            this.input.readFully(magic, 0, magic.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IFException(
+                        "Not a binary intermediate format file", null);
+            }
+            final int version = this.input.readByte();
+            if (version != VERSION) {
+                throw new IFException(
+                        "Unsupported binary intermediate format version: "
+                                + version, null);
+            }
+            int opcode;
+            while ((opcode = this.input.read()) >= 0) {
+                decodeRecord(opcode);
+            }
+        }
+
+        private void decodeRecord(final int opcode) throws IOException,
+        IFException {
+            switch (opcode) {
+            case OP_START_DOCUMENT:
+                this.documentHandler.startDocument();
+                break;
+            case OP_END_DOCUMENT:
+                this.documentHandler.endDocument();
+                break;
+            case OP_START_DOCUMENT_HEADER:
+                this.documentHandler.startDocumentHeader();
+                break;
+            case OP_END_DOCUMENT_HEADER:
+                this.documentHandler.endDocumentHeader();
+                break;
+            case OP_START_DOCUMENT_TRAILER:
+                this.documentHandler.startDocumentTrailer();
+                break;
+            case OP_END_DOCUMENT_TRAILER:
+                this.documentHandler.endDocumentTrailer();
+                break;
+            case OP_START_PAGE_SEQUENCE:
+                startPageSequence();
+                break;
+            case OP_END_PAGE_SEQUENCE:
+                this.documentHandler.endPageSequence();
+                this.documentHandler.getContext().setLanguage(null);
+                break;
+            case OP_START_PAGE:
+                startPage();
+                break;
+            case OP_END_PAGE:
+                this.documentHandler.endPage();
+                break;
+            case OP_START_PAGE_HEADER:
+                this.documentHandler.startPageHeader();
+                break;
+            case OP_END_PAGE_HEADER:
+                this.documentHandler.endPageHeader();
+                break;
+            case OP_START_PAGE_CONTENT:
+                this.painter = this.documentHandler.startPageContent();
+                this.lastTextX = 0;
+                this.lastTextY = 0;
+                break;
+            case OP_END_PAGE_CONTENT:
+                this.documentHandler.endPageContent();
+                this.painter = null;
+                break;
+            case OP_START_PAGE_TRAILER:
+                this.documentHandler.startPageTrailer();
+                break;
+            case OP_END_PAGE_TRAILER:
+                this.documentHandler.endPageTrailer();
+                break;
+            case OP_START_VIEWPORT:
+                startViewport();
+                break;
+            case OP_END_VIEWPORT:
+                getPainter().endViewport();
+                break;
+            case OP_START_GROUP:
+                getPainter().startGroup(readTransforms());
+                break;
+            case OP_END_GROUP:
+                getPainter().endGroup();
+                break;
+            case OP_SET_FONT:
+                setFont();
+                break;
+            case OP_DRAW_TEXT:
+                drawText();
+                break;
+            case OP_CLIP_RECT:
+                getPainter().clipRect(readRectangle());
+                break;
+            case OP_FILL_RECT:
+                fillRect();
+                break;
+            case OP_DRAW_BORDER_RECT:
+                drawBorderRect();
+                break;
+            case OP_DRAW_LINE:
+                drawLine();
+                break;
+            case OP_DRAW_IMAGE:
+                drawImage();
+                break;
+            case OP_DRAW_IMAGE_DOCUMENT:
+                drawImageDocument();
+                break;
+            case OP_XML_FRAGMENT:
+                parseFragment(this.input.readBytes(), this.fragmentHandler);
+                break;
+            default:
+                throw new IFException("Invalid record in binary IF: "
+                        + opcode, null);
+            }
+        }
+
+        private IFPainter getPainter() throws IFException {
+            if (this.painter == null) {
+                throw new IFException(
+                        "Painting operation outside of page content", null);
+            }
+            return this.painter;
+        }
+
+        private void startPageSequence() throws IOException, IFException {
+            final String id = this.input.readString();
+            final String lang = this.input.readString();
+            final Map<QName, String> foreignAttributes = readForeignAttributes();
+            final byte[] structureTree = this.input.readByte() != 0 ? this.input
+                    .readBytes() : null;
+            if (this.structureTreeBuilder != null) {
+                if (structureTree != null) {
+                    try {
+                        parseFragment(structureTree, this.structureTreeBuilder
+                                .getHandlerForNextPageSequence());
+                    } catch (final SAXException e) {
+                        throw new IFException(
+                                "SAX error reading the structure tree", e);
+                    }
+                } else {
+                    AccessibilityEventProducer.Provider.get(
+                            this.userAgent.getEventBroadcaster())
+                            .noStructureTreeInXML(this);
+                }
+            }
+            if (lang != null) {
+                this.documentHandler.getContext().setLanguage(
+                        XMLUtil.convertRFC3066ToLocale(lang));
+            }
+            this.documentHandler.getContext().setForeignAttributes(
+                    foreignAttributes);
+            this.documentHandler.startPageSequence(id);
+            this.documentHandler.getContext().resetForeignAttributes();
+        }
+
+        private void startPage() throws IOException, IFException {
+            final int index = this.input.readVarint();
+            final String name = this.input.readString();
+            final String pageMasterName = this.input.readString();
+            final int width = this.input.readSignedVarint();
+            final int height = this.input.readSignedVarint();
+            this.documentHandler.getContext().setForeignAttributes(
+                    readForeignAttributes());
+            this.documentHandler.startPage(index, name, pageMasterName,
+                    new Dimension(width, height));
+            this.documentHandler.getContext().resetForeignAttributes();
+        }
+
+        private void startViewport() throws IOException, IFException {
+            final AffineTransform[] transforms = readTransforms();
+            final int width = this.input.readSignedVarint();
+            final int height = this.input.readSignedVarint();
+            final Rectangle clipRect = this.input.readByte() != 0 ? readRectangle()
+                    : null;
+            getPainter().startViewport(transforms,
+                    new Dimension(width, height), clipRect);
+        }
+
+        private void setFont() throws IOException, IFException {
+            final int index = this.input.readVarint();
+            final FontChange font;
+            if (index < this.fonts.size()) {
+                font = this.fonts.get(index);
+            } else if (index == this.fonts.size()) {
+                font = readFontChange();
+                this.fonts.add(font);
+            } else {
+                throw new IFException("Invalid font reference: " + index, null);
+            }
+            getPainter().setFont(font.family, font.style, font.weight,
+                    font.variant, font.size, font.color);
+        }
+
+        private FontChange readFontChange() throws IOException, IFException {
+            final int flags = this.input.readByte();
+            final String family = (flags & FONT_FAMILY) != 0 ? this.input
+                    .readString() : null;
+            final String style = (flags & FONT_STYLE) != 0 ? this.input
+                    .readString() : null;
+            final Integer weight = (flags & FONT_WEIGHT) != 0 ? Integer
+                    .valueOf(this.input.readSignedVarint()) : null;
+            final String variant = (flags & FONT_VARIANT) != 0 ? this.input
+                    .readString() : null;
+            final Integer size = (flags & FONT_SIZE) != 0 ? Integer
+                    .valueOf(this.input.readSignedVarint()) : null;
+            final Color color = (flags & FONT_COLOR) != 0 ? readColor() : null;
+            return new FontChange(family, style, weight, variant, size, color);
+        }
+
+        private void drawText() throws IOException, IFException {
+            final int flags = this.input.readByte();
+            this.lastTextX += this.input.readSignedVarint();
+            this.lastTextY += this.input.readSignedVarint();
+            final int letterSpacing = (flags & TEXT_LETTER_SPACING) != 0 ? this.input
+                    .readSignedVarint() : 0;
+            final int wordSpacing = (flags & TEXT_WORD_SPACING) != 0 ? this.input
+                    .readSignedVarint() : 0;
+            int[] dx = null;
+            if ((flags & TEXT_DX) != 0) {
+                dx = new int[this.input.readVarint()];
+                for (int i = 0; i < dx.length; i++) {
+                    dx[i] = this.input.readSignedVarint();
+                }
+            }
+            final String ptr = (flags & TEXT_STRUCTURE_POINTER) != 0 ? this.input
+                    .readString() : null;
+            final String text = this.input.readString();
+            establishStructurePointer(ptr);
+            getPainter().drawText(this.lastTextX, this.lastTextY,
+                    letterSpacing, wordSpacing, dx, text);
+            this.documentHandler.getContext().resetStructurePointer();
+        }
+
+        private void fillRect() throws IOException, IFException {
+            final Rectangle rect = readRectangle();
+            getPainter().fillRect(rect, readColor());
+        }
+
+        private void drawBorderRect() throws IOException, IFException {
+            final Rectangle rect = readRectangle();
+            final int present = this.input.readByte();
+            final BorderProps[] borders = new BorderProps[4];
+            for (int i = 0; i < 4; i++) {
+                if ((present & 1 << i) != 0) {
+                    final int style = this.input.readVarint();
+                    final int width = this.input.readSignedVarint();
+                    final Color color = readColor();
+                    final int mode = this.input.readVarint();
+                    borders[i] = new BorderProps(style, width, color, mode);
+                }
+            }
+            getPainter().drawBorderRect(rect, borders[0], borders[1],
+                    borders[2], borders[3]);
+        }
+
+        private void drawLine() throws IOException, IFException {
+            final int x1 = this.input.readSignedVarint();
+            final int y1 = this.input.readSignedVarint();
+            final int x2 = this.input.readSignedVarint();
+            final int y2 = this.input.readSignedVarint();
+            final int width = this.input.readSignedVarint();
+            final Color color = readColor();
+            final RuleStyle style = RuleStyle.valueOf(this.input.readString());
+            getPainter().drawLine(new Point(x1, y1), new Point(x2, y2), width,
+                    color, style);
+        }
+
+        private void drawImage() throws IOException, IFException {
+            final String uri = this.input.readString();
+            final Rectangle rect = readRectangle();
+            final Map<QName, String> foreignAttributes = readForeignAttributes();
+            final String ptr = this.input.readString();
+            this.documentHandler.getContext().setForeignAttributes(
+                    foreignAttributes);
+            establishStructurePointer(ptr);
+            getPainter().drawImage(uri, rect);
+            this.documentHandler.getContext().resetForeignAttributes();
+            this.documentHandler.getContext().resetStructurePointer();
+        }
+
+        private void drawImageDocument() throws IOException, IFException {
+            final Rectangle rect = readRectangle();
+            final Map<QName, String> foreignAttributes = readForeignAttributes();
+            final String ptr = this.input.readString();
+            String namespace = this.input.readString();
+            if (namespace == null) {
+                namespace = "";
+            }
+            final byte[] fragment = this.input.readBytes();
+
+            DOMImplementation domImplementation = this.userAgent.getFactory()
+                    .getElementMappingRegistry()
+                    .getDOMImplementationForNamespace(namespace);
+            if (domImplementation == null) {
+                domImplementation = ElementMapping
+                        .getDefaultDOMImplementation();
+            }
+            final Document doc;
+            try {
+                final ContentHandler handler = new DOMBuilderContentHandlerFactory(
+                        namespace, domImplementation).createContentHandler();
+                parseFragment(fragment, handler);
+                doc = (Document) ((ContentHandlerFactory.ObjectSource) handler)
+                        .getObject();
+            } catch (final SAXException e) {
+                throw new IFException("SAX error reading embedded document", e);
+            }
+            this.documentHandler.getContext().setForeignAttributes(
+                    foreignAttributes);
+            establishStructurePointer(ptr);
+            getPainter().drawImage(doc, rect);
+            this.documentHandler.getContext().resetForeignAttributes();
+            this.documentHandler.getContext().resetStructurePointer();
+        }
+
+        private void establishStructurePointer(final String ptr) {
+            if (ptr != null && ptr.length() > 0) {
+                this.documentHandler.getContext().setStructurePointer(ptr);
+            }
+        }
+
+        private Color readColor() throws IOException, IFException {
+            final int tag = this.input.readVarint();
+            if (tag == 0) {
+                return null;
+            }
+            final int index = tag - 1;
+            if (index < this.colors.size()) {
+                return this.colors.get(index);
+            } else if (index == this.colors.size()) {
+                final String s = this.input.readString();
+                final Color color;
+                try {
+                    color = ColorUtil.parseColorString(this.userAgent, s);
+                } catch (final PropertyException pe) {
+                    throw new IFException("Error parsing color: " + s, pe);
+                }
+                this.colors.add(color);
+                return color;
+            } else {
+                throw new IFException("Invalid color reference: " + index,
+                        null);
+            }
+        }
+
+        private Rectangle readRectangle() throws IOException {
+            final int x = this.input.readSignedVarint();
+            final int y = this.input.readSignedVarint();
+            final int width = this.input.readSignedVarint();
+            final int height = this.input.readSignedVarint();
+            return new Rectangle(x, y, width, height);
+        }
+
+        private AffineTransform[] readTransforms() throws IOException,
+        IFException {
+            final AffineTransform[] transforms = new AffineTransform[this.input
+                                                                     .readVarint()];
+            for (int i = 0; i < transforms.length; i++) {
+                final int type = this.input.readByte();
+                switch (type) {
+                case TRANSFORM_IDENTITY:
+                    transforms[i] = new AffineTransform();
+                    break;
+                case TRANSFORM_TRANSLATE:
+                    final int tx = this.input.readSignedVarint();
+                    final int ty = this.input.readSignedVarint();
+                    transforms[i] = AffineTransform.getTranslateInstance(tx,
+                            ty);
+                    break;
+                case TRANSFORM_MATRIX:
+                    final double[] matrix = new double[6];
+                    for (int j = 0; j < 6; j++) {
+                        matrix[j] = this.input.readDouble();
+                    }
+                    transforms[i] = new AffineTransform(matrix);
+                    break;
+                default:
+                    throw new IFException("Invalid transformation type: "
+                            + type, null);
+                }
+            }
+            return transforms;
+        }
+
+        private Map<QName, String> readForeignAttributes() throws IOException {
+            final int count = this.input.readVarint();
+            if (count == 0) {
+                return null;
+            }
+            final Map<QName, String> foreignAttributes = new java.util.HashMap<>();
+            for (int i = 0; i < count; i++) {
+                final String ns = this.input.readString();
+                final String qName = this.input.readString();
+                foreignAttributes.put(new QName(ns, qName),
+                        this.input.readString());
+            }
+            return foreignAttributes;
+        }
+
+        private void parseFragment(final byte[] fragment,
+                final ContentHandler handler) throws IFException {
+            try {
+                final Transformer transformer = tFactory.newTransformer();
+                transformer.setErrorListener(new DefaultErrorListener());
+                transformer.transform(new StreamSource(
+                        new ByteArrayInputStream(fragment)), new SAXResult(
+                                handler));
+            } catch (final TransformerException te) {
+                // Unpack original IFException if applicable
+                if (te.getCause() instanceof SAXException) {
+                    final SAXException se = (SAXException) te.getCause();
+                    if (se.getCause() instanceof IFException) {
+                        throw (IFException) se.getCause();
+                    }
+                } else if (te.getCause() instanceof IFException) {
+                    throw (IFException) te.getCause();
+                }
+                throw new IFException("Error parsing XML fragment", te);
+            }
+        }
+    }
+
+    /** An entry of the font table. */
+    private static final class FontChange {
+
+        private final String family;
+        private final String style;
+        private final Integer weight;
+        private final String variant;
+        private final Integer size;
+        private final Color color;
+
+        FontChange(final String family, final String style,
+                final Integer weight, final String variant,
+                final Integer size, final Color color) {
+            this.family = family;
+            this.style = style;
+            this.weight = weight;
+            this.variant = variant;
+            this.size = size;
+            this.color = color;
+        }
+    }
+}
@@ -0,0 +1,1022 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.intermediate;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Paint;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.fop.accessibility.StructureTree;
+import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.render.PrintRendererConfigurator;
+import org.apache.fop.render.intermediate.extensions.AbstractAction;
+import org.apache.fop.render.intermediate.extensions.Bookmark;
+import org.apache.fop.render.intermediate.extensions.BookmarkTree;
+import org.apache.fop.render.intermediate.extensions.DocumentNavigationExtensionConstants;
+import org.apache.fop.render.intermediate.extensions.Link;
+import org.apache.fop.render.intermediate.extensions.NamedDestination;
+import org.apache.fop.traits.BorderProps;
+import org.apache.fop.traits.RuleStyle;
+import org.apache.fop.util.ColorUtil;
+import org.apache.fop.util.DOM2SAX;
+import org.apache.fop.util.GenerationHelperContentHandler;
+import org.apache.fop.util.XMLConstants;
+import org.apache.fop.util.XMLUtil;
+import org.apache.xmlgraphics.util.QName;
+import org.apache.xmlgraphics.util.XMLizable;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * IFPainter implementation that serializes the intermediate format in a
+ * compact binary encoding (see {@link IFBinaryConstants}). The result can be
+ * rendered to the final format with {@link IFBinaryParser} without the cost
+ * of generating and parsing XML.
+ */
+public class IFBinarySerializer extends AbstractBinaryWritingIFDocumentHandler
+implements IFConstants, IFPainter, IFDocumentNavigationHandler {
+
+    private static SAXTransformerFactory tFactory = (SAXTransformerFactory) SAXTransformerFactory
+            .newInstance();
+
+    private IFDocumentHandler mimicHandler;
+    private int pageSequenceIndex; // used for accessibility
+
+    private IFBinaryOutput output;
+
+    /** Holds the intermediate format state */
+    private IFState state;
+
+    /**
+     * color -> index in the color table. Colors are keyed by their string
+     * form: that is what gets written, and Color.equals() isn't symmetric
+     * between plain colors and ColorExt instances.
+     */
+    private final Map<String, Integer> colors = new HashMap<>();
+
+    /** font change -> index in the font table */
+    private final Map<FontChange, Integer> fonts = new HashMap<>();
+
+    /** text positions are written relative to the previous text */
+    private int lastTextX;
+    private int lastTextY;
+
+    private final ByteArrayOutputStream fragmentBuffer = new ByteArrayOutputStream();
+
+    /**
+     * Default constructor.
+     */
+    public IFBinarySerializer() {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean supportsPagesOutOfOrder() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMimeType() {
+        return IFBinaryConstants.MIME_TYPE;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IFDocumentHandlerConfigurator getConfigurator() {
+        if (this.mimicHandler != null) {
+            return getMimickedDocumentHandler().getConfigurator();
+        } else {
+            return new PrintRendererConfigurator(getUserAgent());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IFDocumentNavigationHandler getDocumentNavigationHandler() {
+        return this;
+    }
+
+    /**
+     * Tells this serializer to mimic the given document handler (mostly applies
+     * to the font set that is used during layout).
+     *
+     * @param targetHandler
+     *            the document handler to mimic
+     */
+    public void mimicDocumentHandler(final IFDocumentHandler targetHandler) {
+        this.mimicHandler = targetHandler;
+    }
+
+    /**
+     * Returns the document handler that is being mimicked by this serializer.
+     *
+     * @return the mimicked document handler or null if no such document handler
+     *         has been set
+     */
+    public IFDocumentHandler getMimickedDocumentHandler() {
+        return this.mimicHandler;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public FontInfo getFontInfo() {
+        if (this.mimicHandler != null) {
+            return this.mimicHandler.getFontInfo();
+        } else {
+            return super.getFontInfo();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setFontInfo(final FontInfo fontInfo) {
+        if (this.mimicHandler != null) {
+            this.mimicHandler.setFontInfo(fontInfo);
+        } else {
+            super.setFontInfo(fontInfo);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setDefaultFontInfo(final FontInfo fontInfo) {
+        if (this.mimicHandler != null) {
+            this.mimicHandler.setDefaultFontInfo(fontInfo);
+        } else {
+            super.setDefaultFontInfo(fontInfo);
+        }
+    }
+
+    private void writeRecord(final int opcode) throws IFException {
+        try {
+            this.output.writeByte(opcode);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error writing binary IF", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startDocument() throws IFException {
+        super.startDocument();
+        this.output = new IFBinaryOutput(this.outputStream);
+        try {
+            this.output.writeBytes(IFBinaryConstants.MAGIC, 0,
+                    IFBinaryConstants.MAGIC.length);
+            this.output.writeByte(IFBinaryConstants.VERSION);
+            this.output.writeByte(IFBinaryConstants.OP_START_DOCUMENT);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in startDocument()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startDocumentHeader() throws IFException {
+        writeRecord(IFBinaryConstants.OP_START_DOCUMENT_HEADER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocumentHeader() throws IFException {
+        writeRecord(IFBinaryConstants.OP_END_DOCUMENT_HEADER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startDocumentTrailer() throws IFException {
+        writeRecord(IFBinaryConstants.OP_START_DOCUMENT_TRAILER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocumentTrailer() throws IFException {
+        writeRecord(IFBinaryConstants.OP_END_DOCUMENT_TRAILER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endDocument() throws IFException {
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_END_DOCUMENT);
+            this.output.flush();
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in endDocument()", ioe);
+        }
+        finishDocumentNavigation();
+        this.output = null;
+        super.endDocument();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPageSequence(final String id) throws IFException {
+        try {
+            byte[] structureTree = null;
+            if (getUserAgent().isAccessibilityEnabled()) {
+                final StructureTree tree = getUserAgent().getStructureTree();
+                final GenerationHelperContentHandler handler = startFragment();
+                handler.startElement(EL_STRUCTURE_TREE);
+                final NodeList nodes = tree
+                        .getPageSequence(this.pageSequenceIndex++);
+                for (int i = 0, n = nodes.getLength(); i < n; ++i) {
+                    new DOM2SAX(handler).writeFragment(nodes.item(i));
+                }
+                handler.endElement(EL_STRUCTURE_TREE);
+                structureTree = endFragment(handler);
+            }
+            this.output.writeByte(IFBinaryConstants.OP_START_PAGE_SEQUENCE);
+            this.output.writeString(id);
+            final Locale lang = getContext().getLanguage();
+            this.output.writeString(lang != null ? XMLUtil.toRFC3066(lang)
+                    : null);
+            writeForeignAttributes();
+            if (structureTree != null) {
+                this.output.writeByte(1);
+                this.output.writeBlock(structureTree);
+            } else {
+                this.output.writeByte(0);
+            }
+        } catch (final SAXException e) {
+            throw new IFException("SAX error in startPageSequence()", e);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in startPageSequence()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPageSequence() throws IFException {
+        writeRecord(IFBinaryConstants.OP_END_PAGE_SEQUENCE);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPage(final int index, final String name,
+            final String pageMasterName, final Dimension size)
+                    throws IFException {
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_START_PAGE);
+            this.output.writeVarint(index);
+            this.output.writeString(name);
+            this.output.writeString(pageMasterName);
+            this.output.writeSignedVarint(size.width);
+            this.output.writeSignedVarint(size.height);
+            writeForeignAttributes();
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in startPage()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPageHeader() throws IFException {
+        writeRecord(IFBinaryConstants.OP_START_PAGE_HEADER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPageHeader() throws IFException {
+        writeRecord(IFBinaryConstants.OP_END_PAGE_HEADER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public IFPainter startPageContent() throws IFException {
+        writeRecord(IFBinaryConstants.OP_START_PAGE_CONTENT);
+        this.state = IFState.create();
+        this.lastTextX = 0;
+        this.lastTextY = 0;
+        return this;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPageContent() throws IFException {
+        this.state = null;
+        writeRecord(IFBinaryConstants.OP_END_PAGE_CONTENT);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startPageTrailer() throws IFException {
+        writeRecord(IFBinaryConstants.OP_START_PAGE_TRAILER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPageTrailer() throws IFException {
+        commitNavigation();
+        writeRecord(IFBinaryConstants.OP_END_PAGE_TRAILER);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endPage() throws IFException {
+        writeRecord(IFBinaryConstants.OP_END_PAGE);
+    }
+
+    // ---=== IFPainter ===---
+
+    /** {@inheritDoc} */
+    @Override
+    public void startViewport(final AffineTransform transform,
+            final Dimension size, final Rectangle clipRect) throws IFException {
+        startViewport(transform != null ? new AffineTransform[] { transform }
+        : null, size, clipRect);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startViewport(final AffineTransform[] transforms,
+            final Dimension size, final Rectangle clipRect) throws IFException {
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_START_VIEWPORT);
+            writeTransforms(transforms);
+            this.output.writeSignedVarint(size.width);
+            this.output.writeSignedVarint(size.height);
+            if (clipRect != null) {
+                this.output.writeByte(1);
+                writeRectangle(clipRect);
+            } else {
+                this.output.writeByte(0);
+            }
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in startViewport()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endViewport() throws IFException {
+        writeRecord(IFBinaryConstants.OP_END_VIEWPORT);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startGroup(final AffineTransform[] transforms)
+            throws IFException {
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_START_GROUP);
+            writeTransforms(transforms);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in startGroup()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void startGroup(final AffineTransform transform) throws IFException {
+        startGroup(transform != null ? new AffineTransform[] { transform }
+        : null);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void endGroup() throws IFException {
+        writeRecord(IFBinaryConstants.OP_END_GROUP);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawImage(final String uri, final Rectangle rect)
+            throws IFException {
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_DRAW_IMAGE);
+            this.output.writeString(uri);
+            writeRectangle(rect);
+            writeForeignAttributes();
+            this.output.writeString(getContext().getStructurePointer());
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in drawImage()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawImage(final Document doc, final Rectangle rect)
+            throws IFException {
+        try {
+            final GenerationHelperContentHandler handler = startFragment();
+            new DOM2SAX(handler).writeDocument(doc, true);
+            final byte[] fragment = endFragment(handler);
+            this.output.writeByte(IFBinaryConstants.OP_DRAW_IMAGE_DOCUMENT);
+            writeRectangle(rect);
+            writeForeignAttributes();
+            this.output.writeString(getContext().getStructurePointer());
+            this.output.writeString(doc.getDocumentElement()
+                    .getNamespaceURI());
+            this.output.writeBlock(fragment);
+        } catch (final SAXException e) {
+            throw new IFException("SAX error in drawImage()", e);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in drawImage()", ioe);
+        }
+    }
+
+    private static Color toColor(final Paint paint) {
+        if (paint instanceof Color) {
+            return (Color) paint;
+        } else {
+            throw new UnsupportedOperationException("Paint not supported: "
+                    + paint);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void clipRect(final Rectangle rect) throws IFException {
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_CLIP_RECT);
+            writeRectangle(rect);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in clipRect()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void fillRect(final Rectangle rect, final Paint fill)
+            throws IFException {
+        if (fill == null) {
+            return;
+        }
+        try {
+            final Color color = toColor(fill);
+            this.output.writeByte(IFBinaryConstants.OP_FILL_RECT);
+            writeRectangle(rect);
+            writeColor(color);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in fillRect()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawBorderRect(final Rectangle rect, final BorderProps before,
+            final BorderProps after, final BorderProps start,
+            final BorderProps end) throws IFException {
+        if (before == null && after == null && start == null && end == null) {
+            return;
+        }
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_DRAW_BORDER_RECT);
+            writeRectangle(rect);
+            this.output.writeByte((before != null ? 1 : 0)
+                    | (after != null ? 2 : 0) | (start != null ? 4 : 0)
+                    | (end != null ? 8 : 0));
+            writeBorder(before);
+            writeBorder(after);
+            writeBorder(start);
+            writeBorder(end);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in drawBorderRect()", ioe);
+        }
+    }
+
+    private void writeBorder(final BorderProps border) throws IOException {
+        if (border != null) {
+            this.output.writeVarint(border.style);
+            this.output.writeSignedVarint(border.width);
+            writeColor(border.color);
+            this.output.writeVarint(border.mode);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawLine(final Point start, final Point end, final int width,
+            final Color color, final RuleStyle style) throws IFException {
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_DRAW_LINE);
+            this.output.writeSignedVarint(start.x);
+            this.output.writeSignedVarint(start.y);
+            this.output.writeSignedVarint(end.x);
+            this.output.writeSignedVarint(end.y);
+            this.output.writeSignedVarint(width);
+            writeColor(color);
+            this.output.writeString(style.getName());
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in drawLine()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void drawText(final int x, final int y, final int letterSpacing,
+            final int wordSpacing, final int[] dx, final String text)
+                    throws IFException {
+        try {
+            final String ptr = getContext().getStructurePointer();
+            int flags = 0;
+            if (letterSpacing != 0) {
+                flags |= IFBinaryConstants.TEXT_LETTER_SPACING;
+            }
+            if (wordSpacing != 0) {
+                flags |= IFBinaryConstants.TEXT_WORD_SPACING;
+            }
+            if (dx != null) {
+                flags |= IFBinaryConstants.TEXT_DX;
+            }
+            if (ptr != null) {
+                flags |= IFBinaryConstants.TEXT_STRUCTURE_POINTER;
+            }
+            this.output.writeByte(IFBinaryConstants.OP_DRAW_TEXT);
+            this.output.writeByte(flags);
+            this.output.writeSignedVarint(x - this.lastTextX);
+            this.output.writeSignedVarint(y - this.lastTextY);
+            this.lastTextX = x;
+            this.lastTextY = y;
+            if (letterSpacing != 0) {
+                this.output.writeSignedVarint(letterSpacing);
+            }
+            if (wordSpacing != 0) {
+                this.output.writeSignedVarint(wordSpacing);
+            }
+            if (dx != null) {
+                this.output.writeVarint(dx.length);
+                for (final int d : dx) {
+                    this.output.writeSignedVarint(d);
+                }
+            }
+            if (ptr != null) {
+                this.output.writeString(ptr);
+            }
+            this.output.writeString(text);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in drawText()", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setFont(final String family, final String style,
+            final Integer weight, final String variant, final Integer size,
+            final Color color) throws IFException {
+        // Like the XML serializer, only the changed values are recorded
+        String changedFamily = null;
+        if (family != null && !family.equals(this.state.getFontFamily())) {
+            this.state.setFontFamily(family);
+            changedFamily = family;
+        }
+        String changedStyle = null;
+        if (style != null && !style.equals(this.state.getFontStyle())) {
+            this.state.setFontStyle(style);
+            changedStyle = style;
+        }
+        Integer changedWeight = null;
+        if (weight != null && weight.intValue() != this.state.getFontWeight()) {
+            this.state.setFontWeight(weight.intValue());
+            changedWeight = weight;
+        }
+        String changedVariant = null;
+        if (variant != null && !variant.equals(this.state.getFontVariant())) {
+            this.state.setFontVariant(variant);
+            changedVariant = variant;
+        }
+        Integer changedSize = null;
+        if (size != null && size.intValue() != this.state.getFontSize()) {
+            this.state.setFontSize(size.intValue());
+            changedSize = size;
+        }
+        Color changedColor = null;
+        if (color != null && !color.equals(this.state.getTextColor())) {
+            this.state.setTextColor(color);
+            changedColor = color;
+        }
+        final FontChange change = new FontChange(changedFamily, changedStyle,
+                changedWeight, changedVariant, changedSize,
+                changedColor != null ? ColorUtil.colorToString(changedColor)
+                        : null);
+        if (change.isEmpty()) {
+            return;
+        }
+        try {
+            this.output.writeByte(IFBinaryConstants.OP_SET_FONT);
+            final Integer index = this.fonts.get(change);
+            if (index != null) {
+                this.output.writeVarint(index.intValue());
+            } else {
+                final int newIndex = this.fonts.size();
+                this.fonts.put(change, newIndex);
+                this.output.writeVarint(newIndex);
+                writeFontChange(change);
+            }
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error in setFont()", ioe);
+        }
+    }
+
+    private void writeFontChange(final FontChange change) throws IOException {
+        int flags = 0;
+        if (change.family != null) {
+            flags |= IFBinaryConstants.FONT_FAMILY;
+        }
+        if (change.style != null) {
+            flags |= IFBinaryConstants.FONT_STYLE;
+        }
+        if (change.weight != null) {
+            flags |= IFBinaryConstants.FONT_WEIGHT;
+        }
+        if (change.variant != null) {
+            flags |= IFBinaryConstants.FONT_VARIANT;
+        }
+        if (change.size != null) {
+            flags |= IFBinaryConstants.FONT_SIZE;
+        }
+        if (change.color != null) {
+            flags |= IFBinaryConstants.FONT_COLOR;
+        }
+        this.output.writeByte(flags);
+        if (change.family != null) {
+            this.output.writeString(change.family);
+        }
+        if (change.style != null) {
+            this.output.writeString(change.style);
+        }
+        if (change.weight != null) {
+            this.output.writeSignedVarint(change.weight.intValue());
+        }
+        if (change.variant != null) {
+            this.output.writeString(change.variant);
+        }
+        if (change.size != null) {
+            this.output.writeSignedVarint(change.size.intValue());
+        }
+        if (change.color != null) {
+            writeColor(change.color);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void handleExtensionObject(final Object extension)
+            throws IFException {
+        if (extension instanceof XMLizable) {
+            serializeXMLizable((XMLizable) extension);
+        } else {
+            throw new UnsupportedOperationException(
+                    "Extension must implement XMLizable: " + extension + " ("
+                            + extension.getClass().getName() + ")");
+        }
+    }
+
+    private void writeColor(final Color color) throws IOException {
+        writeColor(color != null ? ColorUtil.colorToString(color) : null);
+    }
+
+    private void writeColor(final String color) throws IOException {
+        if (color == null) {
+            this.output.writeVarint(0);
+            return;
+        }
+        final Integer index = this.colors.get(color);
+        if (index != null) {
+            this.output.writeVarint(index.intValue() + 1);
+        } else {
+            // A new entry is recognized by its index being the table size
+            final int newIndex = this.colors.size();
+            this.colors.put(color, newIndex);
+            this.output.writeVarint(newIndex + 1);
+            this.output.writeString(color);
+        }
+    }
+
+    private void writeRectangle(final Rectangle rect) throws IOException {
+        this.output.writeSignedVarint(rect.x);
+        this.output.writeSignedVarint(rect.y);
+        this.output.writeSignedVarint(rect.width);
+        this.output.writeSignedVarint(rect.height);
+    }
+
+    private void writeTransforms(final AffineTransform[] transforms)
+            throws IOException {
+        if (transforms == null) {
+            this.output.writeVarint(0);
+            return;
+        }
+        this.output.writeVarint(transforms.length);
+        for (final AffineTransform transform : transforms) {
+            writeTransform(transform);
+        }
+    }
+
+    private void writeTransform(final AffineTransform transform)
+            throws IOException {
+        if (transform == null || transform.isIdentity()) {
+            this.output.writeByte(IFBinaryConstants.TRANSFORM_IDENTITY);
+            return;
+        }
+        final double tx = transform.getTranslateX();
+        final double ty = transform.getTranslateY();
+        if (transform.getType() == AffineTransform.TYPE_TRANSLATION
+                && tx == (int) tx && ty == (int) ty) {
+            this.output.writeByte(IFBinaryConstants.TRANSFORM_TRANSLATE);
+            this.output.writeSignedVarint((int) tx);
+            this.output.writeSignedVarint((int) ty);
+        } else {
+            this.output.writeByte(IFBinaryConstants.TRANSFORM_MATRIX);
+            final double[] matrix = new double[6];
+            transform.getMatrix(matrix);
+            for (final double value : matrix) {
+                this.output.writeDouble(value);
+            }
+        }
+    }
+
+    private void writeForeignAttributes() throws IOException {
+        final Map<QName, String> foreignAttributes = getContext()
+                .getForeignAttributes();
+        this.output.writeVarint(foreignAttributes.size());
+        for (final Entry<QName, String> entry : foreignAttributes.entrySet()) {
+            this.output.writeString(entry.getKey().getNamespaceURI());
+            this.output.writeString(entry.getKey().getQName());
+            this.output.writeString(entry.getValue());
+        }
+    }
+
+    // ---=== XML fragments ===---
+
+    private GenerationHelperContentHandler startFragment() throws SAXException {
+        final TransformerHandler transformerHandler;
+        try {
+            transformerHandler = tFactory.newTransformerHandler();
+        } catch (final TransformerConfigurationException e) {
+            throw new SAXException(e);
+        }
+        transformerHandler.getTransformer().setOutputProperty(
+                OutputKeys.OMIT_XML_DECLARATION, "yes");
+        transformerHandler.getTransformer().setOutputProperty(
+                OutputKeys.ENCODING, "UTF-8");
+        this.fragmentBuffer.reset();
+        transformerHandler.setResult(new StreamResult(this.fragmentBuffer));
+        final GenerationHelperContentHandler handler = new GenerationHelperContentHandler(
+                transformerHandler, NAMESPACE);
+        handler.startDocument();
+        handler.startPrefixMapping("", NAMESPACE);
+        handler.startPrefixMapping(XLINK_PREFIX, XLINK_NAMESPACE);
+        handler.startPrefixMapping(
+                DocumentNavigationExtensionConstants.PREFIX,
+                DocumentNavigationExtensionConstants.NAMESPACE);
+        return handler;
+    }
+
+    private byte[] endFragment(final GenerationHelperContentHandler handler)
+            throws SAXException {
+        handler.endDocument();
+        return this.fragmentBuffer.toByteArray();
+    }
+
+    private void writeFragment(final GenerationHelperContentHandler handler)
+            throws SAXException, IOException {
+        final byte[] fragment = endFragment(handler);
+        this.output.writeByte(IFBinaryConstants.OP_XML_FRAGMENT);
+        this.output.writeBlock(fragment);
+    }
+
+    // ---=== IFDocumentNavigationHandler ===---
+
+    private final Map<String, AbstractAction> incompleteActions = new HashMap<>();
+    private final List<AbstractAction> completeActions = new LinkedList<>();
+
+    private void noteAction(final AbstractAction action) {
+        if (action == null) {
+            throw new NullPointerException("action must not be null");
+        }
+        if (!action.isComplete()) {
+            assert action.hasID();
+            this.incompleteActions.put(action.getID(), action);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renderNamedDestination(final NamedDestination destination)
+            throws IFException {
+        noteAction(destination.getAction());
+
+        final AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute(null, "name", "name", XMLConstants.CDATA,
+                destination.getName());
+        try {
+            final GenerationHelperContentHandler handler = startFragment();
+            handler.startElement(
+                    DocumentNavigationExtensionConstants.NAMED_DESTINATION,
+                    atts);
+            destination.getAction().toSAX(handler);
+            handler.endElement(DocumentNavigationExtensionConstants.NAMED_DESTINATION);
+            writeFragment(handler);
+        } catch (final SAXException e) {
+            throw new IFException("SAX error serializing named destination", e);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error serializing named destination",
+                    ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renderBookmarkTree(final BookmarkTree tree) throws IFException {
+        final AttributesImpl atts = new AttributesImpl();
+        try {
+            final GenerationHelperContentHandler handler = startFragment();
+            handler.startElement(
+                    DocumentNavigationExtensionConstants.BOOKMARK_TREE, atts);
+            for (final Bookmark b : tree.getBookmarks()) {
+                serializeBookmark(handler, b);
+            }
+            handler.endElement(DocumentNavigationExtensionConstants.BOOKMARK_TREE);
+            writeFragment(handler);
+        } catch (final SAXException e) {
+            throw new IFException("SAX error serializing bookmark tree", e);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error serializing bookmark tree", ioe);
+        }
+    }
+
+    private void serializeBookmark(
+            final GenerationHelperContentHandler handler,
+            final Bookmark bookmark) throws SAXException {
+        noteAction(bookmark.getAction());
+
+        final AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute(null, "title", "title", XMLConstants.CDATA,
+                bookmark.getTitle());
+        atts.addAttribute(null, "starting-state", "starting-state",
+                XMLConstants.CDATA, bookmark.isShown() ? "show" : "hide");
+        handler.startElement(DocumentNavigationExtensionConstants.BOOKMARK,
+                atts);
+        bookmark.getAction().toSAX(handler);
+        for (final Bookmark b : bookmark.getChildBookmarks()) {
+            serializeBookmark(handler, b);
+        }
+        handler.endElement(DocumentNavigationExtensionConstants.BOOKMARK);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void renderLink(final Link link) throws IFException {
+        noteAction(link.getAction());
+
+        final AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute(null, "rect", "rect", XMLConstants.CDATA,
+                IFUtil.toString(link.getTargetRect()));
+        if (getUserAgent().isAccessibilityEnabled()) {
+            XMLUtil.addAttribute(atts, "ptr", link.getAction()
+                    .getStructurePointer());
+        }
+        try {
+            final GenerationHelperContentHandler handler = startFragment();
+            handler.startElement(DocumentNavigationExtensionConstants.LINK,
+                    atts);
+            link.getAction().toSAX(handler);
+            handler.endElement(DocumentNavigationExtensionConstants.LINK);
+            writeFragment(handler);
+        } catch (final SAXException e) {
+            throw new IFException("SAX error serializing link", e);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error serializing link", ioe);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addResolvedAction(final AbstractAction action) {
+        assert action.isComplete();
+        assert action.hasID();
+        final AbstractAction noted = this.incompleteActions.remove(action
+                .getID());
+        if (noted != null) {
+            this.completeActions.add(action);
+        } else {
+            // ignore as it was already complete when it was first used.
+        }
+    }
+
+    private void commitNavigation() throws IFException {
+        final Iterator<AbstractAction> iter = this.completeActions.iterator();
+        while (iter.hasNext()) {
+            final AbstractAction action = iter.next();
+            iter.remove();
+            serializeXMLizable(action);
+        }
+        assert this.completeActions.size() == 0;
+    }
+
+    private void finishDocumentNavigation() {
+        assert this.incompleteActions.size() == 0 : "Still holding incomplete actions!";
+    }
+
+    private void serializeXMLizable(final XMLizable object) throws IFException {
+        try {
+            final GenerationHelperContentHandler handler = startFragment();
+            object.toSAX(handler);
+            writeFragment(handler);
+        } catch (final SAXException e) {
+            throw new IFException("SAX error serializing object", e);
+        } catch (final IOException ioe) {
+            throw new IFException("I/O error serializing object", ioe);
+        }
+    }
+
+    /** The values changed by a setFont() call, used as font table key. */
+    private static final class FontChange {
+
+        private final String family;
+        private final String style;
+        private final Integer weight;
+        private final String variant;
+        private final Integer size;
+        /** the color in its string form (see ColorUtil.colorToString()) */
+        private final String color;
+
+        FontChange(final String family, final String style,
+                final Integer weight, final String variant,
+                final Integer size, final String color) {
+            this.family = family;
+            this.style = style;
+            this.weight = weight;
+            this.variant = variant;
+            this.size = size;
+            this.color = color;
+        }
+
+        boolean isEmpty() {
+            return this.family == null && this.style == null
+                    && this.weight == null && this.variant == null
+                    && this.size == null && this.color == null;
+        }
+
+        private static boolean equal(final Object o1, final Object o2) {
+            return o1 == null ? o2 == null : o1.equals(o2);
+        }
+
+        private static int hash(final Object o) {
+            return o != null ? o.hashCode() : 0;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            int hash = hash(this.family);
+            hash = 31 * hash + hash(this.style);
+            hash = 31 * hash + hash(this.weight);
+            hash = 31 * hash + hash(this.variant);
+            hash = 31 * hash + hash(this.size);
+            return 31 * hash + hash(this.color);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof FontChange)) {
+                return false;
+            }
+            final FontChange other = (FontChange) obj;
+            return equal(this.family, other.family)
+                    && equal(this.style, other.style)
+                    && equal(this.weight, other.weight)
+                    && equal(this.variant, other.variant)
+                    && equal(this.size, other.size)
+                    && equal(this.color, other.color);
+        }
+    }
+}
@@ -25,21 +25,21 @@ import java.awt.geom.AffineTransform;
 import org.apache.fop.apps.FOPException;
 import org.apache.fop.apps.FopFactory;
 import org.apache.fop.fonts.FontInfo;
-import org.apache.fop.util.DecimalFormatCache;
+import org.apache.fop.util.DoubleFormatUtil;
 
 /**
  * Utility functions for the intermediate format.
  */
 public class IFUtil {
 
-    private static String format(double value) {
+    private static StringBuilder format(double value, final StringBuilder sb) {
         if (value == -0.0) {
             // Don't allow negative zero because of testing
             // See
             // http://java.sun.com/docs/books/jls/third_edition/html/typesValues.html#4.2.3
             value = 0.0;
         }
-        return DecimalFormatCache.getDecimalFormat(6).format(value);
+        return DoubleFormatUtil.formatDouble(value, 6, sb);
     }
 
     /**
@@ -62,9 +62,9 @@ public class IFUtil {
         if (matrix[0] == 1 && matrix[3] == 1 && matrix[1] == 0
                 && matrix[2] == 0) {
             sb.append("translate(");
-            sb.append(format(matrix[4]));
+            format(matrix[4], sb);
             if (matrix[5] != 0) {
-                sb.append(',').append(format(matrix[5]));
+                format(matrix[5], sb.append(','));
             }
         } else {
             sb.append("matrix(");
@@ -72,7 +72,7 @@ public class IFUtil {
                 if (i > 0) {
                     sb.append(',');
                 }
-                sb.append(format(matrix[i]));
+                format(matrix[i], sb);
             }
         }
         sb.append(')');
@@ -179,13 +179,11 @@ public class IFUtil {
         if (fontInfo == null) {
             fontInfo = new FontInfo();
         }
-        if (documentHandler instanceof IFSerializer) {
-            final IFSerializer serializer = (IFSerializer) documentHandler;
-            if (serializer.getMimickedDocumentHandler() != null) {
-                // Use the mimicked document handler's configurator to set up
-                // fonts
-                documentHandler = serializer.getMimickedDocumentHandler();
-            }
+        final IFDocumentHandler mimic = getMimickedDocumentHandler(documentHandler);
+        if (mimic != null) {
+            // Use the mimicked document handler's configurator to set up
+            // fonts
+            documentHandler = mimic;
         }
         final IFDocumentHandlerConfigurator configurator = documentHandler
                 .getConfigurator();
@@ -214,8 +212,8 @@ public class IFUtil {
     /**
      * Returns the MIME type of the output format that the given document
      * handler is supposed to handle. If the document handler is an
-     * {@link IFSerializer} it returns the MIME type of the document handler it
-     * is mimicking.
+     * {@link IFSerializer} or {@link IFBinarySerializer} it returns the MIME
+     * type of the document handler it is mimicking.
      * 
      * @param documentHandler
      *            the document handler
@@ -223,14 +221,23 @@ public class IFUtil {
      */
     public static String getEffectiveMIMEType(
             final IFDocumentHandler documentHandler) {
+        final IFDocumentHandler mimic = getMimickedDocumentHandler(documentHandler);
+        if (mimic != null) {
+            return mimic.getMimeType();
+        }
+        return documentHandler.getMimeType();
+    }
+
+    private static IFDocumentHandler getMimickedDocumentHandler(
+            final IFDocumentHandler documentHandler) {
         if (documentHandler instanceof IFSerializer) {
-            final IFDocumentHandler mimic = ((IFSerializer) documentHandler)
+            return ((IFSerializer) documentHandler)
+                    .getMimickedDocumentHandler();
+        } else if (documentHandler instanceof IFBinarySerializer) {
+            return ((IFBinarySerializer) documentHandler)
                     .getMimickedDocumentHandler();
-            if (mimic != null) {
-                return mimic.getMimeType();
-            }
         }
-        return documentHandler.getMimeType();
+        return null;
     }
 
 }
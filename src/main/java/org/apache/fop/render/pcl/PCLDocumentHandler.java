@@ -31,6 +31,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.apache.fop.apps.FopFactoryConfigurator;
 import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.render.bitmap.RecordingPainter;
 import org.apache.fop.render.intermediate.AbstractBinaryWritingIFDocumentHandler;
 import org.apache.fop.render.intermediate.IFContext;
 import org.apache.fop.render.intermediate.IFDocumentHandler;
@@ -68,6 +69,12 @@ implements PCLConstants {
     /** the current page image (only set when all-bitmap painting is activated) */
     private BufferedImage currentImage;
 
+    /**
+     * the recorded current page (only set when all-bitmap painting in bands is
+     * activated)
+     */
+    private RecordingPainter currentRecording;
+
     /**
      * Default constructor.
      */
@@ -236,16 +243,46 @@ implements PCLConstants {
     }
 
     private IFPainter createAllBitmapPainter() {
+        final int bitmapHeight = getBitmapHeight();
+        final int bandHeight = this.pclUtil.getBandHeight();
+        if (bandHeight > 0 && bandHeight < bitmapHeight) {
+            // Record the page now, paint it band by band in endPageContent()
+            this.currentRecording = new RecordingPainter(getContext());
+            return this.currentRecording;
+        }
+        this.currentImage = createBufferedImage(getBitmapWidth(), bitmapHeight);
+        final Graphics2D graphics2D = createGraphics(this.currentImage, 0);
+        return new Java2DPainter(graphics2D, getContext(), getFontInfo());
+    }
+
+    private int getBitmapWidth() {
+        return (int) Math.ceil(UnitConv.mpt2px(this.currentPageDefinition
+                .getLogicalPageRect().width, this.gen
+                .getMaximumBitmapResolution()));
+    }
+
+    private int getBitmapHeight() {
+        return (int) Math.ceil(UnitConv.mpt2px(this.currentPageDefinition
+                .getLogicalPageRect().height, this.gen
+                .getMaximumBitmapResolution()));
+    }
+
+    /**
+     * Sets up a graphics for painting (a band of) the page bitmap.
+     *
+     * @param image
+     *            the bitmap
+     * @param bandY
+     *            the y-coordinate of the bitmap on the page in pixels
+     * @return the graphics
+     */
+    private Graphics2D createGraphics(final BufferedImage image,
+            final int bandY) {
         final double scale = this.gen.getMaximumBitmapResolution()
                 / FopFactoryConfigurator.DEFAULT_TARGET_RESOLUTION;
         final Rectangle printArea = this.currentPageDefinition
                 .getLogicalPageRect();
-        final int bitmapWidth = (int) Math.ceil(UnitConv.mpt2px(
-                printArea.width, this.gen.getMaximumBitmapResolution()));
-        final int bitmapHeight = (int) Math.ceil(UnitConv.mpt2px(
-                printArea.height, this.gen.getMaximumBitmapResolution()));
-        this.currentImage = createBufferedImage(bitmapWidth, bitmapHeight);
-        final Graphics2D graphics2D = this.currentImage.createGraphics();
+        final Graphics2D graphics2D = image.createGraphics();
 
         if (!PCLGenerator.isJAIAvailable()) {
             final RenderingHints hints = new RenderingHints(null);
@@ -258,16 +295,18 @@ implements PCLConstants {
 
         // Ensure white page background
         graphics2D.setBackground(Color.WHITE);
-        graphics2D.clearRect(0, 0, bitmapWidth, bitmapHeight);
+        graphics2D.clearRect(0, 0, image.getWidth(), image.getHeight());
 
         graphics2D.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
                 RenderingHints.VALUE_FRACTIONALMETRICS_ON);
         graphics2D.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL,
                 RenderingHints.VALUE_STROKE_PURE);
+        if (bandY != 0) {
+            graphics2D.translate(0, -bandY);
+        }
         graphics2D.scale(scale / 1000f, scale / 1000f);
         graphics2D.translate(-printArea.x, -printArea.y);
-
-        return new Java2DPainter(graphics2D, getContext(), getFontInfo());
+        return graphics2D;
     }
 
     private BufferedImage createBufferedImage(final int bitmapWidth,
@@ -289,7 +328,16 @@ implements PCLConstants {
     /** {@inheritDoc} */
     @Override
     public void endPageContent() throws IFException {
-        if (this.currentImage != null) {
+        if (this.currentRecording != null) {
+            try {
+                paintBands(this.currentRecording);
+            } catch (final IOException ioe) {
+                throw new IFException("I/O error while encoding page image",
+                        ioe);
+            } finally {
+                this.currentRecording = null;
+            }
+        } else if (this.currentImage != null) {
             try {
                 // ImageWriterUtil.saveAsPNG(this.currentImage, new
                 // java.io.File("D:/page.png"));
@@ -307,6 +355,36 @@ implements PCLConstants {
         }
     }
 
+    /**
+     * Paints a recorded page as a bitmap, one band at a time. Each band is
+     * encoded before the next one is painted into the same buffer.
+     */
+    private void paintBands(final RecordingPainter recording)
+            throws IOException, IFException {
+        final int bitmapWidth = getBitmapWidth();
+        final int bitmapHeight = getBitmapHeight();
+        final int bandHeight = this.pclUtil.getBandHeight();
+        final BufferedImage band = createBufferedImage(bitmapWidth, bandHeight);
+        this.gen.setCursorPos(0, 0);
+        this.gen.startBitmapBands(bitmapWidth, bitmapHeight,
+                this.gen.getMaximumBitmapResolution(),
+                PCLGenerator.isMonochromeImage(band), true);
+        for (int y = 0; y < bitmapHeight; y += bandHeight) {
+            final Graphics2D graphics2D = createGraphics(band, y);
+            try {
+                final IFContext context = new IFContext(getUserAgent());
+                recording.replay(new Java2DPainter(graphics2D, context,
+                        getFontInfo()), context);
+            } finally {
+                graphics2D.dispose();
+            }
+            final int height = Math.min(bandHeight, bitmapHeight - y);
+            this.gen.paintBitmapBand(height < bandHeight ? band.getSubimage(0,
+                    0, bitmapWidth, height) : band);
+        }
+        this.gen.endBitmapBands();
+    }
+
     /** {@inheritDoc} */
     @Override
     public void endPage() throws IFException {
@@ -40,6 +40,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 import java.util.Locale;
 
 import org.apache.commons.io.output.ByteArrayOutputStream;
@@ -77,6 +78,9 @@ public class PCLGenerator {
 
     private int maxBitmapResolution = PCL_RESOLUTIONS[PCL_RESOLUTIONS.length - 1];
 
+    /** encoder of the bitmap currently painted in bands, null if none */
+    private Encoder bandEncoder;
+
     /**
      * true: Standard PCL shades are used (poor quality). false: user-defined
      * pattern are used to create custom dither patterns for better grayscale
@@ -945,20 +949,112 @@ public class PCLGenerator {
      */
     public void paintMonochromeBitmap(final RenderedImage img,
             final int resolution) throws IOException {
-        if (!isValidPCLResolution(resolution)) {
-            throw new IllegalArgumentException("Invalid PCL resolution: "
-                    + resolution);
-        }
         final boolean monochrome = isMonochromeImage(img);
         if (!monochrome) {
             throw new IllegalArgumentException("img must be a monochrome image");
         }
+        final Encoder encoder = startMonochromeRaster(img.getWidth(),
+                img.getHeight(), resolution);
+        encodeMonochromeLines(img, encoder);
+        // End raster graphics
+        writeCommand("*rB");
+    }
+
+    /**
+     * Starts painting a bitmap at the current cursor position which is
+     * delivered in horizontal bands, top to bottom, through
+     * {@link #paintBitmapBand(RenderedImage)}. Only one band needs to be held
+     * in memory at a time. The bitmap is not scaled, so it has to be rendered
+     * at a PCL resolution.
+     * 
+     * @param width
+     *            the width of the bitmap in pixels
+     * @param height
+     *            the height of the bitmap in pixels (the sum of all band
+     *            heights)
+     * @param resolution
+     *            the resolution of the bitmap (must be a PCL resolution)
+     * @param monochrome
+     *            true if the bands are monochrome (1-bit) images, false if
+     *            they have to be converted to monochrome
+     * @param sourceTransparency
+     *            true if the background should not be erased
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public void startBitmapBands(final int width, final int height,
+            final int resolution, final boolean monochrome,
+            final boolean sourceTransparency) throws IOException {
+        if (this.bandEncoder != null) {
+            throw new IllegalStateException("Bitmap bands already started");
+        }
+        if (monochrome) {
+            setSourceTransparencyMode(sourceTransparency);
+            selectCurrentPattern(0, 0); // Solid black
+        } else {
+            selectCurrentPattern(0, 0); // Solid black
+            setTransparencyMode(sourceTransparency, true);
+        }
+        this.bandEncoder = startMonochromeRaster(width, height, resolution);
+    }
+
+    /**
+     * Paints the next band of a bitmap started with
+     * {@link #startBitmapBands(int, int, int, boolean, boolean)}. Bands which
+     * aren't monochrome are converted to monochrome bitmaps.
+     * 
+     * @param band
+     *            the band image (as wide as the bitmap)
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public void paintBitmapBand(final RenderedImage band) throws IOException {
+        if (this.bandEncoder == null) {
+            throw new IllegalStateException("Bitmap bands not started");
+        }
+        RenderedImage effImg = band;
+        if (!isMonochromeImage(band)) {
+            final MonochromeBitmapConverter converter = BitmapImageUtil
+                    .createDefaultMonochromeBitmapConverter();
+            converter.setHint("quality", "false");
+            effImg = converter.convertToMonochrome(
+                    band instanceof BufferedImage && isGrayscaleImage(band)
+                            ? (BufferedImage) band
+                            : BitmapImageUtil.convertToGrayscale(band, null));
+        }
+        encodeMonochromeLines(effImg, this.bandEncoder);
+    }
 
+    /**
+     * Ends a bitmap painted in bands.
+     * 
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public void endBitmapBands() throws IOException {
+        if (this.bandEncoder == null) {
+            throw new IllegalStateException("Bitmap bands not started");
+        }
+        this.bandEncoder = null;
+        // End raster graphics
+        writeCommand("*rB");
+    }
+
+    private Encoder startMonochromeRaster(final int width, final int height,
+            final int resolution) throws IOException {
+        if (!isValidPCLResolution(resolution)) {
+            throw new IllegalArgumentException("Invalid PCL resolution: "
+                    + resolution);
+        }
         setRasterGraphicsResolution(resolution);
-        writeCommand("*r0f" + img.getHeight() + "t" + img.getWidth() + "s1A");
+        writeCommand("*r0f" + height + "t" + width + "s1A");
+        return new Encoder(width);
+    }
+
+    private void encodeMonochromeLines(final RenderedImage img,
+            final Encoder encoder) throws IOException {
         final Raster raster = img.getData();
 
-        final Encoder encoder = new Encoder(img);
         // Transfer graphics data
         final int imgw = img.getWidth();
         final IndexColorModel cm = (IndexColorModel) img.getColorModel();
@@ -1009,32 +1105,39 @@ public class PCLGenerator {
                 encoder.endLine();
             }
         }
-
-        // End raster graphics
-        writeCommand("*rB");
     }
 
+    /**
+     * Encodes monochrome raster rows. Each row is sent with the compression
+     * method giving the smallest output: unencoded, run-length, TIFF or delta
+     * row (compared to the previous row). Trailing white bytes are dropped
+     * since the printer fills a short row with zeros.
+     */
     private class Encoder {
 
         private final int imgw;
-        private int bytewidth;
-        private final byte[] rle; // compressed (RLE)
-        private final byte[] uncompressed; // uncompressed
-        private int lastcount = -1;
-        private byte lastbyte = 0;
-        private int rlewidth = 0;
+        private final int bytewidth;
+        private final byte[] row; // current row, uncompressed
+        private final byte[] seed; // the row transferred last
+        private byte[] compressed; // smallest encoding of the current row
+        private byte[] scratch; // encoding in progress
+        private int mode = -1; // current compression method
         private byte ib = 0; // current image bits
         private int x = 0;
-        private boolean zeroRow = true;
 
-        public Encoder(final RenderedImage img) {
-            this.imgw = img.getWidth();
-            this.bytewidth = this.imgw / 8;
+        public Encoder(final int width) {
+            this.imgw = width;
+            int bytes = this.imgw / 8;
             if (this.imgw % 8 != 0) {
-                this.bytewidth++;
+                bytes++;
             }
-            this.rle = new byte[this.bytewidth * 2];
-            this.uncompressed = new byte[this.bytewidth];
+            this.bytewidth = bytes;
+            this.row = new byte[this.bytewidth];
+            // Start Raster Graphics clears the seed row
+            this.seed = new byte[this.bytewidth];
+            // Room for the cost of a compression method change
+            this.compressed = new byte[this.bytewidth + 2];
+            this.scratch = new byte[this.bytewidth + 2];
         }
 
         public void addBit(final boolean bit) {
@@ -1043,8 +1146,11 @@ public class PCLGenerator {
                 this.ib |= 1;
             }
 
-            // RLE encoding
-            if (this.x % 8 == 7 || this.x + 1 == this.imgw) {
+            if (this.x % 8 == 7) {
+                finishedByte();
+            } else if (this.x + 1 == this.imgw) {
+                // left-align the bits of the last partial byte
+                this.ib <<= 7 - this.x % 8;
                 finishedByte();
             } else {
                 this.ib <<= 1;
@@ -1059,49 +1165,84 @@ public class PCLGenerator {
         }
 
         private void finishedByte() {
-            if (this.rlewidth < this.bytewidth) {
-                if (this.lastcount >= 0) {
-                    if (this.ib == this.lastbyte) {
-                        this.lastcount++;
-                    } else {
-                        this.rle[this.rlewidth++] = (byte) (this.lastcount & 0xFF);
-                        this.rle[this.rlewidth++] = this.lastbyte;
-                        this.lastbyte = this.ib;
-                        this.lastcount = 0;
-                    }
-                } else {
-                    this.lastbyte = this.ib;
-                    this.lastcount = 0;
-                }
-                if (this.lastcount == 255 || this.x + 1 == this.imgw) {
-                    this.rle[this.rlewidth++] = (byte) (this.lastcount & 0xFF);
-                    this.rle[this.rlewidth++] = this.lastbyte;
-                    this.lastbyte = 0;
-                    this.lastcount = -1;
-                }
-            }
-            this.uncompressed[this.x / 8] = this.ib;
-            if (this.ib != 0) {
-                this.zeroRow = false;
-            }
+            this.row[this.x / 8] = this.ib;
             this.ib = 0;
         }
 
+        /** @return the number of bytes the compression method change costs */
+        private int switchCost(final int method) {
+            return method == this.mode ? 0 : 2;
+        }
+
         public void endLine() throws IOException {
-            if (this.zeroRow && PCLGenerator.this.currentSourceTransparency) {
+            int len = this.bytewidth;
+            while (len > 0 && this.row[len - 1] == 0) {
+                len--;
+            }
+            if (len == 0 && PCLGenerator.this.currentSourceTransparency) {
+                // A Y offset also clears the seed row
                 writeCommand("*b1Y");
-            } else if (this.rlewidth < this.bytewidth) {
-                writeCommand("*b1m" + this.rlewidth + "W");
-                PCLGenerator.this.out.write(this.rle, 0, this.rlewidth);
+                Arrays.fill(this.seed, (byte) 0);
             } else {
-                writeCommand("*b0m" + this.bytewidth + "W");
-                PCLGenerator.this.out.write(this.uncompressed);
+                int bestMode = PCLRasterCompression.UNENCODED;
+                int bestLength = len;
+                byte[] bestData = this.row;
+                int bestCost = bestLength + switchCost(bestMode);
+
+                int limit = bestCost - switchCost(PCLRasterCompression.DELTA_ROW) - 1;
+                int length = limit >= 0 ? PCLRasterCompression.encodeDeltaRow(
+                        this.row, this.seed, this.bytewidth, this.scratch, limit)
+                        : -1;
+                if (length >= 0) {
+                    bestMode = PCLRasterCompression.DELTA_ROW;
+                    bestLength = length;
+                    bestData = swapBuffers();
+                    bestCost = bestLength + switchCost(bestMode);
+                }
+
+                limit = bestCost - switchCost(PCLRasterCompression.TIFF) - 1;
+                length = limit >= 0 ? PCLRasterCompression.encodeTIFF(this.row,
+                        len, this.scratch, limit) : -1;
+                if (length >= 0) {
+                    bestMode = PCLRasterCompression.TIFF;
+                    bestLength = length;
+                    bestData = swapBuffers();
+                    bestCost = bestLength + switchCost(bestMode);
+                }
+
+                limit = bestCost - switchCost(PCLRasterCompression.RUN_LENGTH) - 1;
+                length = limit >= 0 ? PCLRasterCompression.encodeRunLength(
+                        this.row, len, this.scratch, limit) : -1;
+                if (length >= 0) {
+                    bestMode = PCLRasterCompression.RUN_LENGTH;
+                    bestLength = length;
+                    bestData = swapBuffers();
+                }
+
+                if (bestMode == this.mode) {
+                    writeCommand("*b" + bestLength + "W");
+                } else {
+                    writeCommand("*b" + bestMode + "m" + bestLength + "W");
+                    this.mode = bestMode;
+                }
+                PCLGenerator.this.out.write(bestData, 0, bestLength);
+                // every transfer updates the seed row, whatever the method
+                System.arraycopy(this.row, 0, this.seed, 0, this.bytewidth);
             }
-            this.lastcount = -1;
-            this.rlewidth = 0;
             this.ib = 0;
             this.x = 0;
-            this.zeroRow = true;
+        }
+
+        /**
+         * Makes the encoding in progress the best one.
+         *
+         * @return the buffer holding the best encoding
+         */
+        private byte[] swapBuffers() {
+            final byte[] best = this.scratch;
+            this.scratch = this.compressed;
+            this.compressed = best;
+            return best;
         }
 
     }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.pcl;
+
+/**
+ * Encoders for the PCL raster compression methods. Each encoder gives up as
+ * soon as the encoded row would exceed a given limit, so the caller can try
+ * all methods and pick the smallest result without finishing the encodings
+ * which are already known to lose.
+ */
+final class PCLRasterCompression {
+
+    /** Compression method 0: unencoded */
+    static final int UNENCODED = 0;
+
+    /** Compression method 1: run-length encoding */
+    static final int RUN_LENGTH = 1;
+
+    /** Compression method 2: TIFF (PackBits) */
+    static final int TIFF = 2;
+
+    /** Compression method 3: delta row */
+    static final int DELTA_ROW = 3;
+
+    private PCLRasterCompression() {
+    }
+
+    /**
+     * Encodes a row with run-length encoding (method 1).
+     *
+     * @param row
+     *            the row data
+     * @param len
+     *            the number of bytes to encode
+     * @param out
+     *            the buffer receiving the encoded row
+     * @param limit
+     *            the maximum number of encoded bytes
+     * @return the number of encoded bytes, or -1 if the limit is exceeded
+     */
+    static int encodeRunLength(final byte[] row, final int len,
+            final byte[] out, final int limit) {
+        int o = 0;
+        int i = 0;
+        while (i < len) {
+            final byte b = row[i];
+            int run = 1;
+            while (i + run < len && run < 256 && row[i + run] == b) {
+                run++;
+            }
+            if (o + 2 > limit) {
+                return -1;
+            }
+            out[o++] = (byte) (run - 1);
+            out[o++] = b;
+            i += run;
+        }
+        return o;
+    }
+
+    /**
+     * Encodes a row with TIFF PackBits encoding (method 2).
+     *
+     * @param row
+     *            the row data
+     * @param len
+     *            the number of bytes to encode
+     * @param out
+     *            the buffer receiving the encoded row
+     * @param limit
+     *            the maximum number of encoded bytes
+     * @return the number of encoded bytes, or -1 if the limit is exceeded
+     */
+    static int encodeTIFF(final byte[] row, final int len, final byte[] out,
+            final int limit) {
+        int o = 0;
+        int i = 0;
+        while (i < len) {
+            final byte b = row[i];
+            int run = 1;
+            while (i + run < len && run < 128 && row[i + run] == b) {
+                run++;
+            }
+            if (run >= 3) {
+                if (o + 2 > limit) {
+                    return -1;
+                }
+                out[o++] = (byte) (1 - run);
+                out[o++] = b;
+                i += run;
+            } else {
+                // literal bytes up to the start of the next repeated run
+                final int start = i;
+                int n = 0;
+                while (i < len && n < 128) {
+                    if (i + 2 < len && row[i] == row[i + 1]
+                            && row[i] == row[i + 2]) {
+                        break;
+                    }
+                    i++;
+                    n++;
+                }
+                if (o + 1 + n > limit) {
+                    return -1;
+                }
+                out[o++] = (byte) (n - 1);
+                System.arraycopy(row, start, out, o, n);
+                o += n;
+            }
+        }
+        return o;
+    }
+
+    /**
+     * Encodes a row as the differences to the seed row (method 3).
+     *
+     * @param row
+     *            the row data
+     * @param seed
+     *            the seed row, i.e. the row transferred last
+     * @param len
+     *            the number of bytes in a row
+     * @param out
+     *            the buffer receiving the encoded row
+     * @param limit
+     *            the maximum number of encoded bytes
+     * @return the number of encoded bytes, or -1 if the limit is exceeded
+     */
+    static int encodeDeltaRow(final byte[] row, final byte[] seed,
+            final int len, final byte[] out, final int limit) {
+        int o = 0;
+        int i = 0;
+        int last = 0; // the byte following the previous replacement
+        while (i < len) {
+            if (row[i] == seed[i]) {
+                i++;
+                continue;
+            }
+            // up to 8 replacement bytes per command byte
+            final int start = i;
+            int n = 0;
+            while (i < len && n < 8 && row[i] != seed[i]) {
+                i++;
+                n++;
+            }
+            final int offset = start - last;
+            final int extra = offset >= 31 ? (offset - 31) / 255 + 1 : 0;
+            if (o + 1 + extra + n > limit) {
+                return -1;
+            }
+            out[o++] = (byte) ((n - 1) << 5 | Math.min(offset, 31));
+            if (offset >= 31) {
+                int remaining = offset - 31;
+                while (remaining >= 255) {
+                    out[o++] = (byte) 255;
+                    remaining -= 255;
+                }
+                out[o++] = (byte) remaining;
+            }
+            System.arraycopy(row, start, out, o, n);
+            o += n;
+            last = i;
+        }
+        return o;
+    }
+}
@@ -104,6 +104,14 @@ public class PCLRendererConfigurator extends PrintRendererConfigurator {
 
         pclUtil.setPJLDisabled(cfg.getChild("disable-pjl").getValueAsBoolean(
                 false));
+
+        final int bandHeight = cfg.getChild("band-height").getValueAsInteger(
+                pclUtil.getBandHeight());
+        if (bandHeight < 0) {
+            throw new FOPException("Invalid value for 'band-height': "
+                    + bandHeight);
+        }
+        pclUtil.setBandHeight(bandHeight);
     }
 
     // ---=== IFDocumentHandler configuration ===---
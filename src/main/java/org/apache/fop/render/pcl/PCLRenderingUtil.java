@@ -63,6 +63,12 @@ public class PCLRenderingUtil {
      */
     private boolean disabledPJL = false;
 
+    /**
+     * Height of the bands (in pixels) in which pages are painted in bitmap
+     * rendering mode, 0 to paint whole pages at once.
+     */
+    private int bandHeight = 0;
+
     PCLRenderingUtil(final FOUserAgent userAgent) {
         this.userAgent = userAgent;
         initialize();
@@ -119,6 +125,32 @@ public class PCLRenderingUtil {
         return this.disabledPJL;
     }
 
+    /**
+     * Sets the height of the bands in which pages are painted in bitmap
+     * rendering mode. Painting pages in bands means only one band rather than
+     * the whole page has to be held in memory.
+     *
+     * @param height
+     *            the band height in pixels, 0 to paint whole pages at once
+     */
+    public void setBandHeight(final int height) {
+        if (height < 0) {
+            throw new IllegalArgumentException(
+                    "The band height must not be negative");
+        }
+        this.bandHeight = height;
+    }
+
+    /**
+     * Returns the height of the bands in which pages are painted in bitmap
+     * rendering mode.
+     *
+     * @return the band height in pixels, 0 if whole pages are painted at once
+     */
+    public int getBandHeight() {
+        return this.bandHeight;
+    }
+
     /**
      * Controls whether all text should be generated as bitmaps or only text for
      * which there's no native font.
@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.pdf;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.color.ICC_Profile;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.PDFResourceContext;
+import org.apache.fop.pdf.PDFXObject;
+import org.apache.xmlgraphics.image.loader.Image;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
+import org.apache.xmlgraphics.image.loader.ImageSize;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawCCITTFax;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawPNG;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawStream;
+import org.apache.xmlgraphics.image.loader.impl.ImageRendered;
+
+/**
+ * Computes content digests of images so identical images referenced under
+ * different URIs share one image XObject (see
+ * {@link PDFDocument#addImage(PDFResourceContext, org.apache.fop.pdf.PDFImage, String)}).
+ * The digest is kept with the {@link ImageInfo}, which is shared through the
+ * image cache, so each image is hashed only once.
+ */
+final class ImageContentDigest {
+
+    private ImageContentDigest() {
+    }
+
+    /**
+     * Adds an image to the PDF document, reusing an existing image XObject
+     * with the same content if image deduplication is enabled and the encoded
+     * stream of the same image from an earlier document if an encoded image
+     * cache is set.
+     *
+     * @param doc
+     *            the PDF document
+     * @param res
+     *            the resource context (may be null)
+     * @param adapter
+     *            the image adapter
+     * @return the image XObject
+     * @throws IOException
+     *             if the image data cannot be read
+     */
+    static PDFXObject addImage(final PDFDocument doc,
+            final PDFResourceContext res, final AbstractImageAdapter adapter)
+                    throws IOException {
+        if (!isDigestUsed(doc, adapter)
+                || doc.getXObject(adapter.getKey()) != null) {
+            return doc.addImage(res, adapter);
+        }
+        return doc.addImage(res, adapter, getDigest(adapter));
+    }
+
+    /**
+     * Indicates whether the content digest of an image is of any use for a
+     * document. Raw streams are written as they are, so they only profit from
+     * deduplication, not from the encoded image cache.
+     *
+     * @param doc
+     *            the PDF document
+     * @param adapter
+     *            the image adapter
+     * @return true if the digest should be computed
+     */
+    static boolean isDigestUsed(final PDFDocument doc,
+            final AbstractImageAdapter adapter) {
+        return doc.isImageDeduplication()
+                || doc.getEncodedImageCache() != null
+                && !(adapter.image instanceof ImageRawStream);
+    }
+
+    /**
+     * Returns the content digest of the image behind an adapter.
+     *
+     * @param adapter
+     *            the image adapter
+     * @return the digest as a hex string, or null if the image type is not
+     *         supported
+     * @throws IOException
+     *             if the image data cannot be read
+     */
+    static String getDigest(final AbstractImageAdapter adapter)
+            throws IOException {
+        final Image image = adapter.image;
+        final Map customObjects = image.getInfo().getCustomObjects();
+        final String cacheKey = getCacheKey(adapter, image);
+        synchronized (customObjects) {
+            final String digest = (String) customObjects.get(cacheKey);
+            if (digest != null) {
+                return digest;
+            }
+        }
+        final String digest = computeDigest(adapter, image);
+        if (digest != null) {
+            synchronized (customObjects) {
+                customObjects.put(cacheKey, digest);
+            }
+        }
+        return digest;
+    }
+
+    /**
+     * The same ImageInfo may be converted into several images (for example at
+     * a different color depth), so the key includes what distinguishes them.
+     */
+    private static String getCacheKey(final AbstractImageAdapter adapter,
+            final Image image) {
+        final StringBuffer sb = new StringBuffer(
+                ImageContentDigest.class.getName());
+        sb.append(':').append(adapter.getClass().getName());
+        sb.append(':').append(image.getClass().getName());
+        if (image instanceof ImageRendered) {
+            final RenderedImage ri = ((ImageRendered) image).getRenderedImage();
+            sb.append(':').append(ri.getWidth()).append('x')
+            .append(ri.getHeight());
+            sb.append(':').append(ri.getColorModel());
+        }
+        return sb.toString();
+    }
+
+    private static String computeDigest(final AbstractImageAdapter adapter,
+            final Image image) throws IOException {
+        if (!(image instanceof ImageRawStream || image instanceof ImageRendered)) {
+            return null;
+        }
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new UnsupportedOperationException(e.getMessage());
+        }
+        final DataOutputStream dout = new DataOutputStream(
+                new DigestOutputStream(new NullOutputStream(), md));
+        dout.writeUTF(adapter.getClass().getName());
+        final ImageSize size = image.getInfo().getSize();
+        if (size != null) {
+            dout.writeInt(size.getWidthPx());
+            dout.writeInt(size.getHeightPx());
+        }
+        if (image instanceof ImageRawStream) {
+            writeRawStream(dout, (ImageRawStream) image);
+        } else {
+            writeRendered(dout, (ImageRendered) image);
+        }
+        dout.flush();
+        return toHex(md.digest());
+    }
+
+    /**
+     * The encoded bytes are hashed as they are. A stream which can only be
+     * read once is buffered first so it is still available for the output.
+     */
+    private static void writeRawStream(final DataOutputStream dout,
+            final ImageRawStream raw) throws IOException {
+        dout.writeUTF(raw.getMimeType());
+        if (raw instanceof ImageRawCCITTFax) {
+            dout.writeInt(((ImageRawCCITTFax) raw).getCompression());
+        }
+        if (raw instanceof ImageRawPNG) {
+            // palette, tRNS, bit depth and color profile are not in the IDAT
+            // stream
+            final ImageRawPNG png = (ImageRawPNG) raw;
+            dout.writeInt(png.getBitDepth());
+            writeColorModel(dout, png.getColorModel());
+            writeICCProfile(dout, png.getICCProfile());
+            writeTransparentColor(dout, png.getTransparentColor());
+        }
+        if (raw.isCacheable()) {
+            raw.writeTo(dout);
+        } else {
+            final InputStream in = raw.createInputStream();
+            byte[] data;
+            try {
+                data = IOUtils.toByteArray(in);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            raw.setInputStreamFactory(new ImageRawStream.ByteArrayStreamFactory(
+                    data));
+            dout.write(data);
+        }
+    }
+
+    /**
+     * Everything the adapter derives its output from: color model, palette,
+     * ICC profile, transparent color and the pixels themselves.
+     */
+    private static void writeRendered(final DataOutputStream dout,
+            final ImageRendered imageRend) throws IOException {
+        final RenderedImage ri = imageRend.getRenderedImage();
+        writeColorModel(dout, ri.getColorModel());
+        writeICCProfile(dout, imageRend.getICCProfile());
+        writeTransparentColor(dout, imageRend.getTransparentColor());
+
+        final Rectangle bounds = new Rectangle(ri.getMinX(), ri.getMinY(),
+                ri.getWidth(), ri.getHeight());
+        final int minTileX = ri.getMinTileX();
+        final int minTileY = ri.getMinTileY();
+        byte[] elements = null;
+        byte[] bytes = null;
+        int[] samples = null;
+        for (int ty = minTileY; ty < minTileY + ri.getNumYTiles(); ty++) {
+            for (int tx = minTileX; tx < minTileX + ri.getNumXTiles(); tx++) {
+                final Raster tile = ri.getTile(tx, ty);
+                final Rectangle area = tile.getBounds().intersection(bounds);
+                if (area.isEmpty()) {
+                    continue;
+                }
+                final int w = area.width;
+                if (tile.getTransferType() == DataBuffer.TYPE_BYTE) {
+                    final int count = w * tile.getNumDataElements();
+                    if (elements == null || elements.length < count) {
+                        elements = new byte[count];
+                    }
+                    for (int y = area.y; y < area.y + area.height; y++) {
+                        tile.getDataElements(area.x, y, w, 1, elements);
+                        dout.write(elements, 0, count);
+                    }
+                } else {
+                    final int count = w * tile.getNumBands();
+                    if (bytes == null || bytes.length < count * 4) {
+                        bytes = new byte[count * 4];
+                        samples = new int[count];
+                    }
+                    for (int y = area.y; y < area.y + area.height; y++) {
+                        tile.getPixels(area.x, y, w, 1, samples);
+                        for (int i = 0, j = 0; i < count; i++) {
+                            final int s = samples[i];
+                            bytes[j++] = (byte) (s >>> 24);
+                            bytes[j++] = (byte) (s >>> 16);
+                            bytes[j++] = (byte) (s >>> 8);
+                            bytes[j++] = (byte) s;
+                        }
+                        dout.write(bytes, 0, count * 4);
+                    }
+                }
+            }
+        }
+    }
+
+    /** The palette entries are written with their alpha (getRGBs()). */
+    private static void writeColorModel(final DataOutputStream dout,
+            final ColorModel cm) throws IOException {
+        dout.writeUTF(cm.getClass().getName());
+        dout.writeInt(cm.getColorSpace().getType());
+        dout.writeInt(cm.getNumComponents());
+        dout.writeInt(cm.getPixelSize());
+        dout.writeInt(cm.getTransparency());
+        dout.writeBoolean(cm.isAlphaPremultiplied());
+        if (cm instanceof IndexColorModel) {
+            final IndexColorModel icm = (IndexColorModel) cm;
+            final int[] rgbs = new int[icm.getMapSize()];
+            icm.getRGBs(rgbs);
+            dout.writeInt(rgbs.length);
+            for (final int rgb : rgbs) {
+                dout.writeInt(rgb);
+            }
+        }
+    }
+
+    private static void writeICCProfile(final DataOutputStream dout,
+            final ICC_Profile profile) throws IOException {
+        if (profile != null) {
+            final byte[] data = profile.getData();
+            dout.writeInt(data.length);
+            dout.write(data);
+        } else {
+            dout.writeInt(-1);
+        }
+    }
+
+    private static void writeTransparentColor(final DataOutputStream dout,
+            final Color transparent) throws IOException {
+        dout.writeBoolean(transparent != null);
+        if (transparent != null) {
+            dout.writeInt(transparent.getRGB());
+        }
+    }
+
+    private static String toHex(final byte[] digest) {
+        final char[] hex = new char[digest.length * 2];
+        final String digits = "0123456789abcdef";
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = digits.charAt(digest[i] >> 4 & 0x0F);
+            hex[i * 2 + 1] = digits.charAt(digest[i] & 0x0F);
+        }
+        return new String(hex);
+    }
+}
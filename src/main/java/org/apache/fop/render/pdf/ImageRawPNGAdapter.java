@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.pdf;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.fop.pdf.BitmapImage;
+import org.apache.fop.pdf.FlateFilter;
+import org.apache.fop.pdf.PDFArray;
+import org.apache.fop.pdf.PDFColor;
+import org.apache.fop.pdf.PDFDeviceColorSpace;
+import org.apache.fop.pdf.PDFDictionary;
+import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.PDFFilter;
+import org.apache.fop.pdf.PDFFilterException;
+import org.apache.fop.pdf.PDFFilterList;
+import org.apache.fop.pdf.PDFName;
+import org.apache.fop.pdf.PDFReference;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawPNG;
+import org.apache.xmlgraphics.image.loader.impl.ImageRawStream;
+
+/**
+ * PDFImage implementation for the PDF renderer which handles raw PNG images.
+ * <p>
+ * The zlib stream of the PNG's IDAT chunks is copied to the XObject's stream
+ * as-is with a /FlateDecode filter whose /Predictor 15 undoes the PNG row
+ * filters, so the image is neither decoded nor compressed again. An alpha
+ * channel cannot stay in the image data since PDF has no interleaved alpha:
+ * it is split from the color samples row by row, which keeps the row filters
+ * valid because they only ever refer to samples of the same channel, and
+ * added as a soft mask. Palettes with varying alpha also end up as a soft
+ * mask, a palette with a single fully transparent entry as a color key mask.
+ */
+@Slf4j
+public class ImageRawPNGAdapter extends AbstractImageAdapter {
+
+    private static final int MAX_HIVAL = 255;
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUB = 1;
+    private static final int FILTER_UP = 2;
+    private static final int FILTER_AVERAGE = 3;
+    private static final int FILTER_PAETH = 4;
+
+    private PDFFilter pdfFilter = null;
+
+    /** the re-deflated color samples if the alpha had to be split off */
+    private byte[] colorData;
+
+    private PDFReference softMask;
+
+    /**
+     * Creates a new PDFImage from an Image instance.
+     *
+     * @param image
+     *            the PNG image
+     * @param key
+     *            XObject key
+     */
+    public ImageRawPNGAdapter(final ImageRawPNG image, final String key) {
+        super(image, key);
+    }
+
+    /**
+     * Returns the {@link ImageRawPNG} instance for this adapter.
+     *
+     * @return the image instance
+     */
+    public ImageRawPNG getImage() {
+        return (ImageRawPNG) this.image;
+    }
+
+    private ColorModel getColorModel() {
+        return getImage().getColorModel();
+    }
+
+    private boolean isIndexed() {
+        return getColorModel() instanceof IndexColorModel;
+    }
+
+    /** @return the number of color samples per pixel, alpha excluded */
+    private int getNumColorComponents() {
+        return isIndexed() ? 1 : getColorModel().getNumColorComponents();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setup(final PDFDocument doc) {
+        super.setup(doc);
+
+        final ColorModel cm = getColorModel();
+        final boolean alphaChannel = !isIndexed() && cm.hasAlpha();
+        final boolean alphaPalette = isIndexed()
+                && getTransparentIndex((IndexColorModel) cm) < 0
+                && hasTransparency((IndexColorModel) cm);
+        if (alphaChannel || alphaPalette) {
+            doc.getProfile().verifyTransparencyAllowed(
+                    this.image.getInfo().getOriginalURI());
+            // the mask is derived from this image, so is its digest (the
+            // digest has to be taken before the stream is read here)
+            String maskDigest = null;
+            if (ImageContentDigest.isDigestUsed(doc, this)) {
+                try {
+                    final String digest = ImageContentDigest.getDigest(this);
+                    if (digest != null) {
+                        maskDigest = "Mask:" + digest;
+                    }
+                } catch (final IOException e) {
+                    log.warn("Could not compute the content digest of "
+                            + getKey() + ": " + e.getMessage());
+                }
+            }
+            byte[] alpha;
+            try {
+                bufferStream();
+                alpha = alphaChannel ? splitAlpha() : readPaletteAlpha();
+            } catch (final IOException e) {
+                throw new IllegalStateException(
+                        "Could not read the PNG image data of "
+                                + this.image.getInfo() + ": " + e.getMessage());
+            }
+            final BitmapImage alphaImage = new BitmapImage("Mask:" + getKey(),
+                    getWidth(), getHeight(), alpha, null);
+            alphaImage.setColorSpace(new PDFDeviceColorSpace(
+                    PDFDeviceColorSpace.DEVICE_GRAY));
+            this.softMask = doc.addImage(null, alphaImage, maskDigest)
+                    .makeReference();
+        }
+
+        final FlateFilter flate = new FlateFilter();
+        try {
+            flate.setPredictor(FlateFilter.PREDICTION_PNG_OPT);
+            flate.setColors(getNumColorComponents());
+            flate.setBitsPerComponent(getBitsPerComponent());
+            flate.setColumns(getWidth());
+        } catch (final PDFFilterException e) {
+            throw new IllegalStateException(e.getMessage());
+        }
+        flate.setApplied(true);
+        this.pdfFilter = flate;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PDFDeviceColorSpace getColorSpace() {
+        // DeviceGray or DeviceRGB (Indexed is set up in
+        // populateXObjectDictionary())
+        return toPDFColorSpace(getImageColorSpace());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getBitsPerComponent() {
+        return getImage().getBitDepth();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isTransparent() {
+        // a transparent palette entry is handled in populateXObjectDictionary()
+        return !isIndexed() && getImage().isTransparent()
+                && getImage().getTransparentColor() != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PDFColor getTransparentColor() {
+        return new PDFColor(getImage().getTransparentColor());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PDFReference getSoftMaskReference() {
+        return this.softMask;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PDFFilter getPDFFilter() {
+        return this.pdfFilter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void outputContents(final OutputStream out) throws IOException {
+        if (this.colorData != null) {
+            out.write(this.colorData);
+            return;
+        }
+        final InputStream in = getImage().createInputStream();
+        try {
+            IOUtils.copy(in, out);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void populateXObjectDictionary(final PDFDictionary dict) {
+        final ColorModel cm = getColorModel();
+        if (cm instanceof IndexColorModel) {
+            final IndexColorModel icm = (IndexColorModel) cm;
+            final PDFArray indexed = new PDFArray(dict);
+            indexed.add(new PDFName("Indexed"));
+            if (icm.getColorSpace().getType() != ColorSpace.TYPE_RGB) {
+                log.warn("Indexed color space is not using RGB as base color space."
+                        + " The image may not be handled correctly."
+                        + " Base color space: "
+                        + icm.getColorSpace()
+                        + " Image: " + this.image.getInfo());
+            }
+            indexed.add(new PDFName(toPDFColorSpace(icm.getColorSpace())
+                    .getName()));
+            final int c = icm.getMapSize();
+            final int hival = c - 1;
+            if (hival > MAX_HIVAL) {
+                throw new UnsupportedOperationException(
+                        "hival must not go beyond " + MAX_HIVAL);
+            }
+            indexed.add(hival);
+            final int[] palette = new int[c];
+            icm.getRGBs(palette);
+            final byte[] lookup = new byte[c * 3];
+            for (int i = 0; i < c; ++i) {
+                final int entry = palette[i];
+                lookup[i * 3] = (byte) (entry >> 16);
+                lookup[i * 3 + 1] = (byte) (entry >> 8);
+                lookup[i * 3 + 2] = (byte) entry;
+            }
+            indexed.add(lookup);
+            dict.put("ColorSpace", indexed);
+
+            final int index = getTransparentIndex(icm);
+            if (index >= 0) {
+                final PDFArray mask = new PDFArray(dict);
+                mask.add(index);
+                mask.add(index);
+                dict.put("Mask", mask);
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getFilterHint() {
+        return PDFFilterList.PRECOMPRESSED_FILTER;
+    }
+
+    private static boolean hasTransparency(final IndexColorModel icm) {
+        for (int i = 0, c = icm.getMapSize(); i < c; i++) {
+            if (icm.getAlpha(i) != 0xFF) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the palette index to use as color key mask: the only entry of a
+     * palette which is fully transparent while all others are fully opaque.
+     *
+     * @return the index or -1 if there is none
+     */
+    private static int getTransparentIndex(final IndexColorModel icm) {
+        int index = -1;
+        for (int i = 0, c = icm.getMapSize(); i < c; i++) {
+            final int alpha = icm.getAlpha(i);
+            if (alpha == 0 && index < 0) {
+                index = i;
+            } else if (alpha != 0xFF) {
+                return -1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Makes sure the image data can be read more than once since it is
+     * decoded here for the mask and still needed for the stream.
+     */
+    private void bufferStream() throws IOException {
+        final ImageRawPNG png = getImage();
+        if (!png.isCacheable()) {
+            final InputStream in = png.createInputStream();
+            try {
+                png.setInputStreamFactory(new ImageRawStream.ByteArrayStreamFactory(
+                        IOUtils.toByteArray(in)));
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    /**
+     * Splits the interleaved alpha samples off the color samples. The color
+     * samples are deflated again together with the row filter bytes for
+     * {@link #outputContents(OutputStream)}.
+     *
+     * @return the decoded alpha samples, one byte per pixel
+     */
+    private byte[] splitAlpha() throws IOException {
+        final int width = getWidth();
+        final int height = getHeight();
+        final int bytesPerSample = getBitsPerComponent() / 8;
+        final int colorBytes = getNumColorComponents() * bytesPerSample;
+        final int pixelBytes = colorBytes + bytesPerSample;
+        final byte[] row = new byte[1 + width * pixelBytes];
+        final byte[] colorRow = new byte[1 + width * colorBytes];
+        final byte[] alpha = new byte[height * width];
+        final byte[] alphaRow = new byte[1 + width * bytesPerSample];
+        final byte[] prevAlphaRow = new byte[alphaRow.length];
+
+        final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        final DeflaterOutputStream colorOut = new DeflaterOutputStream(bout,
+                deflater);
+        final DataInputStream din = new DataInputStream(
+                new InflaterInputStream(getImage().createInputStream()));
+        try {
+            for (int y = 0; y < height; y++) {
+                din.readFully(row);
+                colorRow[0] = row[0];
+                alphaRow[0] = row[0];
+                for (int x = 0, src = 1, c = 1, a = 1; x < width; x++) {
+                    System.arraycopy(row, src, colorRow, c, colorBytes);
+                    src += colorBytes;
+                    c += colorBytes;
+                    System.arraycopy(row, src, alphaRow, a, bytesPerSample);
+                    src += bytesPerSample;
+                    a += bytesPerSample;
+                }
+                colorOut.write(colorRow);
+                unfilter(alphaRow, prevAlphaRow, bytesPerSample);
+                // only the most significant byte of 16 bit samples is kept
+                for (int x = 0, off = y * width; x < width; x++) {
+                    alpha[off + x] = alphaRow[1 + x * bytesPerSample];
+                }
+                System.arraycopy(alphaRow, 0, prevAlphaRow, 0, alphaRow.length);
+            }
+            colorOut.finish();
+        } finally {
+            IOUtils.closeQuietly(din);
+            deflater.end();
+        }
+        this.colorData = bout.toByteArray();
+        return alpha;
+    }
+
+    /**
+     * Decodes the palette indices and looks up their alpha values. The color
+     * stream is left as it is.
+     *
+     * @return the alpha samples, one byte per pixel
+     */
+    private byte[] readPaletteAlpha() throws IOException {
+        final IndexColorModel icm = (IndexColorModel) getColorModel();
+        final int width = getWidth();
+        final int height = getHeight();
+        final int bitDepth = getBitsPerComponent();
+        final int rowBytes = (width * bitDepth + 7) / 8;
+        final byte[] row = new byte[1 + rowBytes];
+        final byte[] prevRow = new byte[row.length];
+        final byte[] alpha = new byte[height * width];
+        final int pixelMask = (1 << bitDepth) - 1;
+        final int pixelsPerByte = 8 / bitDepth;
+
+        final DataInputStream din = new DataInputStream(
+                new InflaterInputStream(getImage().createInputStream()));
+        try {
+            for (int y = 0; y < height; y++) {
+                din.readFully(row);
+                unfilter(row, prevRow, 1);
+                for (int x = 0, off = y * width; x < width; x++) {
+                    final int b = row[1 + x / pixelsPerByte] & 0xFF;
+                    final int shift = 8 - bitDepth * (x % pixelsPerByte + 1);
+                    final int index = b >> shift & pixelMask;
+                    alpha[off + x] = (byte) icm.getAlpha(index);
+                }
+                System.arraycopy(row, 0, prevRow, 0, row.length);
+            }
+        } finally {
+            IOUtils.closeQuietly(din);
+        }
+        return alpha;
+    }
+
+    /**
+     * Reverses the PNG row filter of a row in place.
+     *
+     * @param row
+     *            the row, starting with the filter type byte
+     * @param prevRow
+     *            the previous row, already reversed (all zero for the first)
+     * @param bpp
+     *            the number of bytes per complete pixel (at least one)
+     */
+    private static void unfilter(final byte[] row, final byte[] prevRow,
+            final int bpp) throws IOException {
+        final int filter = row[0];
+        switch (filter) {
+        case FILTER_NONE:
+            break;
+        case FILTER_SUB:
+            for (int i = 1 + bpp; i < row.length; i++) {
+                row[i] += row[i - bpp];
+            }
+            break;
+        case FILTER_UP:
+            for (int i = 1; i < row.length; i++) {
+                row[i] += prevRow[i];
+            }
+            break;
+        case FILTER_AVERAGE:
+            for (int i = 1; i < row.length; i++) {
+                final int left = i > bpp ? row[i - bpp] & 0xFF : 0;
+                row[i] += (byte) ((left + (prevRow[i] & 0xFF)) >> 1);
+            }
+            break;
+        case FILTER_PAETH:
+            for (int i = 1; i < row.length; i++) {
+                final int a = i > bpp ? row[i - bpp] & 0xFF : 0;
+                final int b = prevRow[i] & 0xFF;
+                final int c = i > bpp ? prevRow[i - bpp] & 0xFF : 0;
+                final int p = a + b - c;
+                final int pa = Math.abs(p - a);
+                final int pb = Math.abs(p - b);
+                final int pc = Math.abs(p - c);
+                if (pa <= pb && pa <= pc) {
+                    row[i] += (byte) a;
+                } else if (pb <= pc) {
+                    row[i] += (byte) b;
+                } else {
+                    row[i] += (byte) c;
+                }
+            }
+            break;
+        default:
+            throw new IOException("Invalid PNG row filter type: " + filter);
+        }
+    }
+
+}
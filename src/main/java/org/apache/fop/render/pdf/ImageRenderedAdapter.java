@@ -42,6 +42,7 @@ import org.apache.fop.pdf.PDFFilter;
 import org.apache.fop.pdf.PDFFilterList;
 import org.apache.fop.pdf.PDFName;
 import org.apache.fop.pdf.PDFReference;
+import org.apache.fop.util.bitmap.TiledImageEncoder;
 import org.apache.xmlgraphics.image.loader.impl.ImageRendered;
 import org.apache.xmlgraphics.ps.ImageEncodingHelper;
 
@@ -134,7 +135,21 @@ public class ImageRenderedAdapter extends AbstractImageAdapter {
 
             final AlphaRasterImage alphaImage = new AlphaRasterImage("Mask:"
                     + getKey(), ri);
-            this.softMask = doc.addImage(null, alphaImage).makeReference();
+            // the mask is derived from this image, so is its digest
+            String maskDigest = null;
+            if (ImageContentDigest.isDigestUsed(doc, this)) {
+                try {
+                    final String digest = ImageContentDigest.getDigest(this);
+                    if (digest != null) {
+                        maskDigest = "Mask:" + digest;
+                    }
+                } catch (final IOException e) {
+                    log.warn("Could not compute the content digest of "
+                            + getKey() + ": " + e.getMessage());
+                }
+            }
+            this.softMask = doc.addImage(null, alphaImage, maskDigest)
+                    .makeReference();
         }
     }
 
@@ -228,7 +243,7 @@ public class ImageRenderedAdapter extends AbstractImageAdapter {
     /** {@inheritDoc} */
     @Override
     public void outputContents(final OutputStream out) throws IOException {
-        this.encodingHelper.encode(out);
+        new TiledImageEncoder(this.encodingHelper).writeTo(out);
     }
 
     private static final int MAX_HIVAL = 255;
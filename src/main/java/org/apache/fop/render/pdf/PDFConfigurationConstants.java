@@ -64,4 +64,9 @@ public interface PDFConfigurationConstants {
      * if no PDF/A or PDF/X profile is active).
      */
     String KEY_DISABLE_SRGB_COLORSPACE = "disable-srgb-colorspace";
+    /**
+     * Rendering Options key for sharing one XObject between images with
+     * identical content.
+     */
+    String KEY_IMAGE_DEDUPLICATION = "image-deduplication";
 }
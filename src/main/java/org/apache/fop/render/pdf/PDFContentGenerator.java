@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import org.apache.fop.pdf.PDFColor;
+import org.apache.fop.pdf.PDFContentBuffer;
 import org.apache.fop.pdf.PDFDocument;
 import org.apache.fop.pdf.PDFFilterList;
 import org.apache.fop.pdf.PDFNumber;
@@ -82,6 +83,11 @@ public class PDFContentGenerator {
             protected void write(final String code) {
                 PDFContentGenerator.this.currentStream.add(code);
             }
+
+            @Override
+            protected void write(final PDFContentBuffer code) {
+                PDFContentGenerator.this.currentStream.add(code);
+            }
         };
 
         this.currentState = new PDFPaintingState();
@@ -320,10 +326,10 @@ public class PDFContentGenerator {
      */
     public void clipRect(final Rectangle rect) {
         final StringBuilder sb = new StringBuilder();
-        sb.append(format(rect.x / 1000f)).append(' ');
-        sb.append(format(rect.y / 1000f)).append(' ');
-        sb.append(format(rect.width / 1000f)).append(' ');
-        sb.append(format(rect.height / 1000f)).append(" re W n\n");
+        format(rect.x / 1000f, sb).append(' ');
+        format(rect.y / 1000f, sb).append(' ');
+        format(rect.width / 1000f, sb).append(' ');
+        format(rect.height / 1000f, sb).append(" re W n\n");
         add(sb.toString());
     }
 
@@ -337,6 +343,16 @@ public class PDFContentGenerator {
         this.currentStream.add(content);
     }
 
+    /**
+     * Adds the content of a buffer to the stream.
+     * 
+     * @param content
+     *            the buffer with the PDF content
+     */
+    public void add(final PDFContentBuffer content) {
+        this.currentStream.add(content);
+    }
+
     /**
      * Formats a float value (normally coordinates in points) as Strings.
      * 
@@ -348,6 +364,21 @@ public class PDFContentGenerator {
         return PDFNumber.doubleOut(value);
     }
 
+    /**
+     * Appends a float value (normally coordinates in points) to a
+     * StringBuilder.
+     * 
+     * @param value
+     *            the value
+     * @param sb
+     *            the StringBuilder to append to
+     * @return the StringBuilder passed to this method
+     */
+    public static final StringBuilder format(final float value,
+            final StringBuilder sb) {
+        return PDFNumber.doubleOut(value, 6, sb);
+    }
+
     /**
      * Sets the current line width in points.
      * 
@@ -469,8 +500,7 @@ public class PDFContentGenerator {
     public void placeImage(final float x, final float y, final float w,
             final float h, final PDFXObject xobj) {
         saveGraphicsState();
-        add(format(w) + " 0 0 " + format(-h) + " " + format(x) + " "
-                + format(y + h) + " cm\n" + xobj.getName() + " Do\n");
+        add(placeImageOperators(x, y, w, h, xobj));
         restoreGraphicsState();
     }
 
@@ -498,9 +528,19 @@ public class PDFContentGenerator {
             final float h, final PDFXObject xobj, final String structElemType,
             final int mcid) {
         saveGraphicsState(structElemType, mcid);
-        add(format(w) + " 0 0 " + format(-h) + " " + format(x) + " "
-                + format(y + h) + " cm\n" + xobj.getName() + " Do\n");
+        add(placeImageOperators(x, y, w, h, xobj));
         restoreGraphicsStateAccess();
     }
 
+    private static String placeImageOperators(final float x, final float y,
+            final float w, final float h, final PDFXObject xobj) {
+        final StringBuilder sb = new StringBuilder(64);
+        format(w, sb).append(" 0 0 ");
+        format(-h, sb).append(' ');
+        format(x, sb).append(' ');
+        format(y + h, sb).append(" cm\n");
+        sb.append(xobj.getName()).append(" Do\n");
+        return sb.toString();
+    }
+
 }
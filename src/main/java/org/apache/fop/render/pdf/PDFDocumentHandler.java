@@ -36,6 +36,7 @@ import org.apache.fop.pdf.PDFPage;
 import org.apache.fop.pdf.PDFReference;
 import org.apache.fop.pdf.PDFResourceContext;
 import org.apache.fop.pdf.PDFResources;
+import org.apache.fop.render.ImagePreloader;
 import org.apache.fop.render.extensions.prepress.PageBoundaries;
 import org.apache.fop.render.extensions.prepress.PageScale;
 import org.apache.fop.render.intermediate.AbstractBinaryWritingIFDocumentHandler;
@@ -46,6 +47,8 @@ import org.apache.fop.render.intermediate.IFDocumentNavigationHandler;
 import org.apache.fop.render.intermediate.IFException;
 import org.apache.fop.render.intermediate.IFPainter;
 import org.apache.fop.util.XMLUtil;
+import org.apache.xmlgraphics.image.loader.ImageSessionContext;
+import org.apache.xmlgraphics.image.loader.util.ImageUtil;
 import org.apache.xmlgraphics.xmp.Metadata;
 import org.w3c.dom.NodeList;
 
@@ -148,11 +151,31 @@ public class PDFDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
                 this.logicalStructureHandler = new PDFLogicalStructureHandler(
                         this.pdfDoc, getUserAgent().getEventBroadcaster());
             }
+            startImagePreloading();
         } catch (final IOException e) {
             throw new IFException("I/O error in startDocument()", e);
         }
     }
 
+    /**
+     * Tells the image preloader, if enabled, which image flavors and hints
+     * {@link PDFPainter} will ask for, so images can be loaded in the right
+     * flavor while the document is laid out.
+     */
+    private void startImagePreloading() {
+        final ImagePreloader preloader = getUserAgent().getImagePreloader();
+        if (preloader != null) {
+            final ImageSessionContext sessionContext = getUserAgent()
+                    .getImageSessionContext();
+            // the handlers only check the type of the rendering context
+            final PDFRenderingContext context = new PDFRenderingContext(
+                    getUserAgent(), null, null, this.fontInfo);
+            preloader.setTargetFlavors(getUserAgent().getFactory()
+                    .getImageHandlerRegistry().getSupportedFlavors(context),
+                    ImageUtil.getDefaultHints(sessionContext));
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public void endDocumentHeader() throws IFException {
@@ -173,6 +196,11 @@ public class PDFDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
             this.currentPage = null;
         } catch (final IOException ioe) {
             throw new IFException("I/O error in endDocument()", ioe);
+        } finally {
+            final ImagePreloader preloader = getUserAgent().getImagePreloader();
+            if (preloader != null) {
+                preloader.close();
+            }
         }
         super.endDocument();
     }
@@ -118,7 +118,7 @@ public class PDFGraphics2DAdapter extends AbstractGraphics2DAdapter {
             painter.paint(graphics, area);
         }
 
-        generator.add(graphics.getString());
+        generator.add(graphics.getContentBuffer());
         generator.restoreGraphicsState();
         generator.comment("G2D end");
     }
@@ -125,7 +125,7 @@ public class PDFImageHandlerGraphics2D extends AbstractImageHandlerGraphics2D
         final Rectangle2D area = new Rectangle2D.Double(0.0, 0.0, imw, imh);
         imageG2D.getGraphics2DImagePainter().paint(graphics, area);
 
-        generator.add(graphics.getString());
+        generator.add(graphics.getContentBuffer());
         if (accessibilityEnabled) {
             generator.restoreGraphicsStateAccess();
         } else {
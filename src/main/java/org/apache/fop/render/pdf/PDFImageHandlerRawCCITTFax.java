@@ -24,7 +24,6 @@ import java.awt.Rectangle;
 import java.io.IOException;
 
 import org.apache.fop.pdf.PDFDocument;
-import org.apache.fop.pdf.PDFImage;
 import org.apache.fop.pdf.PDFResourceContext;
 import org.apache.fop.pdf.PDFXObject;
 import org.apache.fop.render.ImageHandler;
@@ -55,9 +54,10 @@ public class PDFImageHandlerRawCCITTFax implements PDFImageHandler,
         final PDFResourceContext resContext = (PDFResourceContext) context
                 .getProperty(PDFRendererContextConstants.PDF_CONTEXT);
 
-        final PDFImage pdfimage = new ImageRawCCITTFaxAdapter(ccitt, image
-                .getInfo().getOriginalURI());
-        final PDFXObject xobj = pdfDoc.addImage(resContext, pdfimage);
+        final ImageRawCCITTFaxAdapter pdfimage = new ImageRawCCITTFaxAdapter(
+                ccitt, image.getInfo().getOriginalURI());
+        final PDFXObject xobj = ImageContentDigest.addImage(pdfDoc,
+                resContext, pdfimage);
 
         final float x = (float) pos.getX() / 1000f;
         final float y = (float) pos.getY() / 1000f;
@@ -76,10 +76,11 @@ public class PDFImageHandlerRawCCITTFax implements PDFImageHandler,
         final PDFContentGenerator generator = pdfContext.getGenerator();
         final ImageRawCCITTFax ccitt = (ImageRawCCITTFax) image;
 
-        final PDFImage pdfimage = new ImageRawCCITTFaxAdapter(ccitt, image
-                .getInfo().getOriginalURI());
-        final PDFXObject xobj = generator.getDocument().addImage(
-                generator.getResourceContext(), pdfimage);
+        final ImageRawCCITTFaxAdapter pdfimage = new ImageRawCCITTFaxAdapter(
+                ccitt, image.getInfo().getOriginalURI());
+        final PDFXObject xobj = ImageContentDigest.addImage(
+                generator.getDocument(), generator.getResourceContext(),
+                pdfimage);
 
         final float x = (float) pos.getX() / 1000f;
         final float y = (float) pos.getY() / 1000f;
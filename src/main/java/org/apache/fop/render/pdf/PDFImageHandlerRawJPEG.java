@@ -24,7 +24,6 @@ import java.awt.Rectangle;
 import java.io.IOException;
 
 import org.apache.fop.pdf.PDFDocument;
-import org.apache.fop.pdf.PDFImage;
 import org.apache.fop.pdf.PDFResourceContext;
 import org.apache.fop.pdf.PDFXObject;
 import org.apache.fop.render.ImageHandler;
@@ -54,9 +53,10 @@ public class PDFImageHandlerRawJPEG implements PDFImageHandler, ImageHandler {
         final PDFResourceContext resContext = (PDFResourceContext) context
                 .getProperty(PDFRendererContextConstants.PDF_CONTEXT);
 
-        final PDFImage pdfimage = new ImageRawJPEGAdapter(jpeg, image.getInfo()
-                .getOriginalURI());
-        final PDFXObject xobj = pdfDoc.addImage(resContext, pdfimage);
+        final ImageRawJPEGAdapter pdfimage = new ImageRawJPEGAdapter(
+                jpeg, image.getInfo().getOriginalURI());
+        final PDFXObject xobj = ImageContentDigest.addImage(pdfDoc,
+                resContext, pdfimage);
 
         final float x = (float) pos.getX() / 1000f;
         final float y = (float) pos.getY() / 1000f;
@@ -75,10 +75,11 @@ public class PDFImageHandlerRawJPEG implements PDFImageHandler, ImageHandler {
         final PDFContentGenerator generator = pdfContext.getGenerator();
         final ImageRawJPEG imageJPEG = (ImageRawJPEG) image;
 
-        final PDFImage pdfimage = new ImageRawJPEGAdapter(imageJPEG, image
-                .getInfo().getOriginalURI());
-        final PDFXObject xobj = generator.getDocument().addImage(
-                generator.getResourceContext(), pdfimage);
+        final ImageRawJPEGAdapter pdfimage = new ImageRawJPEGAdapter(
+                imageJPEG, image.getInfo().getOriginalURI());
+        final PDFXObject xobj = ImageContentDigest.addImage(
+                generator.getDocument(), generator.getResourceContext(),
+                pdfimage);
 
         final float x = (float) pos.getX() / 1000f;
         final float y = (float) pos.getY() / 1000f;
@@ -24,7 +24,6 @@ import java.awt.Rectangle;
 import java.io.IOException;
 
 import org.apache.fop.pdf.PDFDocument;
-import org.apache.fop.pdf.PDFImage;
 import org.apache.fop.pdf.PDFResourceContext;
 import org.apache.fop.pdf.PDFXObject;
 import org.apache.fop.render.ImageHandler;
@@ -57,9 +56,10 @@ public class PDFImageHandlerRenderedImage implements PDFImageHandler,
         final PDFResourceContext resContext = (PDFResourceContext) context
                 .getProperty(PDFRendererContextConstants.PDF_CONTEXT);
 
-        final PDFImage pdfimage = new ImageRenderedAdapter(imageRend, image
-                .getInfo().getOriginalURI());
-        final PDFXObject xobj = pdfDoc.addImage(resContext, pdfimage);
+        final ImageRenderedAdapter pdfimage = new ImageRenderedAdapter(
+                imageRend, image.getInfo().getOriginalURI());
+        final PDFXObject xobj = ImageContentDigest.addImage(pdfDoc,
+                resContext, pdfimage);
 
         final float x = (float) pos.getX() / 1000f;
         final float y = (float) pos.getY() / 1000f;
@@ -78,10 +78,11 @@ public class PDFImageHandlerRenderedImage implements PDFImageHandler,
         final PDFContentGenerator generator = pdfContext.getGenerator();
         final ImageRendered imageRend = (ImageRendered) image;
 
-        final PDFImage pdfimage = new ImageRenderedAdapter(imageRend, image
-                .getInfo().getOriginalURI());
-        final PDFXObject xobj = generator.getDocument().addImage(
-                generator.getResourceContext(), pdfimage);
+        final ImageRenderedAdapter pdfimage = new ImageRenderedAdapter(
+                imageRend, image.getInfo().getOriginalURI());
+        final PDFXObject xobj = ImageContentDigest.addImage(
+                generator.getDocument(), generator.getResourceContext(),
+                pdfimage);
 
         final float x = (float) pos.getX() / 1000f;
         final float y = (float) pos.getY() / 1000f;
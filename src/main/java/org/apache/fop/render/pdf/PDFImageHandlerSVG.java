@@ -22,7 +22,9 @@ package org.apache.fop.render.pdf;
 import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -33,6 +35,13 @@ import org.apache.batik.gvt.GraphicsNode;
 import org.apache.batik.util.SVGConstants;
 import org.apache.fop.apps.FOUserAgent;
 import org.apache.fop.image.loader.batik.BatikImageFlavors;
+import org.apache.fop.pdf.PDFDocument;
+import org.apache.fop.pdf.PDFFilterList;
+import org.apache.fop.pdf.PDFFormXObject;
+import org.apache.fop.pdf.PDFPaintingState;
+import org.apache.fop.pdf.PDFResourceContext;
+import org.apache.fop.pdf.PDFStream;
+import org.apache.fop.pdf.PDFXObject;
 import org.apache.fop.render.ImageHandler;
 import org.apache.fop.render.RenderingContext;
 import org.apache.fop.render.pdf.PDFLogicalStructureHandler.MarkedContentInfo;
@@ -44,6 +53,7 @@ import org.apache.fop.svg.SVGUserAgent;
 import org.apache.xmlgraphics.image.loader.Image;
 import org.apache.xmlgraphics.image.loader.ImageFlavor;
 import org.apache.xmlgraphics.image.loader.impl.ImageXMLDOM;
+import org.w3c.dom.Document;
 
 /**
  * Image Handler implementation which handles SVG images.
@@ -51,6 +61,12 @@ import org.apache.xmlgraphics.image.loader.impl.ImageXMLDOM;
 @Slf4j
 public class PDFImageHandlerSVG implements ImageHandler {
 
+    /** user data key of the id which identifies an SVG document */
+    private static final String FORM_ID_KEY = PDFImageHandlerSVG.class
+            .getName() + ".form-id";
+
+    private static final AtomicLong NEXT_FORM_ID = new AtomicLong();
+
     /** {@inheritDoc} */
     @Override
     public void handleImage(final RenderingContext context, final Image image,
@@ -59,6 +75,20 @@ public class PDFImageHandlerSVG implements ImageHandler {
         final PDFContentGenerator generator = pdfContext.getGenerator();
         final ImageXMLDOM imageSVG = (ImageXMLDOM) image;
 
+        // An SVG without links is painted once per document into a form
+        // XObject which every further occurrence refers to
+        final String formKey = getFormKey(imageSVG.getDocument());
+        if (formKey != null) {
+            final PDFXObject form = generator.getDocument().getXObject(
+                    formKey);
+            if (form != null) {
+                generator.getResourceContext().getPDFResources()
+                .addXObject(form);
+                placeForm(pdfContext, form, pos);
+                return;
+            }
+        }
+
         final FOUserAgent userAgent = context.getUserAgent();
         final float deviceResolution = userAgent.getTargetResolution();
         if (log.isDebugEnabled()) {
@@ -101,6 +131,22 @@ public class PDFImageHandlerSVG implements ImageHandler {
         final float w = (float) ctx.getDocumentSize().getWidth() * 1000f;
         final float h = (float) ctx.getDocumentSize().getHeight() * 1000f;
 
+        if (formKey != null && w > 0 && h > 0) {
+            final PDFXObject form;
+            try {
+                form = createForm(pdfContext, root, ctx, resolutionScaling,
+                        formKey);
+            } catch (final Exception e) {
+                final SVGEventProducer eventProducer = SVGEventProducer.Provider
+                        .get(context.getUserAgent().getEventBroadcaster());
+                eventProducer.svgRenderingError(this, e, image.getInfo()
+                        .getOriginalURI());
+                return;
+            }
+            placeForm(pdfContext, form, pos);
+            return;
+        }
+
         final float sx = pos.width / w;
         final float sy = pos.height / h;
 
@@ -167,7 +213,7 @@ public class PDFImageHandlerSVG implements ImageHandler {
         graphics.setOutputStream(generator.getOutputStream());
         try {
             root.paint(graphics);
-            generator.add(graphics.getString());
+            generator.add(graphics.getContentBuffer());
         } catch (final Exception e) {
             final SVGEventProducer eventProducer = SVGEventProducer.Provider
                     .get(context.getUserAgent().getEventBroadcaster());
@@ -183,6 +229,103 @@ public class PDFImageHandlerSVG implements ImageHandler {
         generator.comment("SVG end");
     }
 
+    /**
+     * Returns the key of the form XObject into which an SVG document is
+     * painted. Every document gets its own id, kept with the document, so the
+     * key stays the same as long as the image cache serves the same document.
+     *
+     * @param doc
+     *            the SVG document
+     * @return the form key, or null if the SVG document must be painted for
+     *         each occurrence since its links are page annotations
+     */
+    private static String getFormKey(final Document doc) {
+        if (doc.getElementsByTagNameNS(SVGDOMImplementation.SVG_NAMESPACE_URI,
+                SVGConstants.SVG_A_TAG).getLength() > 0) {
+            return null;
+        }
+        synchronized (doc) {
+            String id = (String) doc.getUserData(FORM_ID_KEY);
+            if (id == null) {
+                id = Long.toString(NEXT_FORM_ID.incrementAndGet());
+                doc.setUserData(FORM_ID_KEY, id, null);
+            }
+            return "SVG:" + id;
+        }
+    }
+
+    /**
+     * Paints an SVG graphic into a new form XObject. The form's matrix maps
+     * the SVG document's size to the unit square, so the form can be placed
+     * like an image.
+     */
+    private PDFXObject createForm(final PDFRenderingContext pdfContext,
+            final GraphicsNode root, final BridgeContext ctx,
+            final AffineTransform resolutionScaling, final String formKey) {
+        final PDFContentGenerator generator = pdfContext.getGenerator();
+        final PDFDocument pdfDoc = generator.getDocument();
+        final PDFResourceContext resContext = generator.getResourceContext();
+
+        final PDFGraphics2D graphics = new PDFGraphics2D(true,
+                pdfContext.getFontInfo(), pdfDoc, resContext, pdfContext
+                .getPage().referencePDF(), "", 0);
+        graphics.setGraphicContext(new org.apache.xmlgraphics.java2d.GraphicContext());
+        final PDFStream stream = pdfDoc.getFactory().makeStream(
+                PDFFilterList.CONTENT_FILTER, false);
+        if (!resolutionScaling.isIdentity()) {
+            stream.add(CTMHelper.toPDFString(resolutionScaling, false)
+                    + " cm\n");
+            graphics.scale(1 / resolutionScaling.getScaleX(),
+                    1 / resolutionScaling.getScaleY());
+        }
+        // the form has its own coordinate system
+        final PDFPaintingState state = new PDFPaintingState();
+        state.concatenate(resolutionScaling);
+        graphics.setPaintingState(state);
+        graphics.setOutputStream(generator.getOutputStream());
+        root.paint(graphics);
+        stream.add(graphics.getContentBuffer());
+
+        final PDFFormXObject form = pdfDoc.addFormXObject(resContext, stream,
+                resContext.getPDFResources().makeReference(), formKey);
+        final double docWidth = ctx.getDocumentSize().getWidth();
+        final double docHeight = ctx.getDocumentSize().getHeight();
+        form.setMatrix(AffineTransform.getScaleInstance(1 / docWidth,
+                1 / docHeight));
+        // content may overflow the viewport
+        final Rectangle2D bbox = new Rectangle2D.Double(0, 0, docWidth,
+                docHeight);
+        final Rectangle2D bounds = root.getBounds();
+        if (bounds != null) {
+            bbox.add(bounds);
+        }
+        form.setBBox(bbox);
+        return form;
+    }
+
+    private void placeForm(final PDFRenderingContext pdfContext,
+            final PDFXObject form, final Rectangle pos) {
+        final PDFContentGenerator generator = pdfContext.getGenerator();
+        generator.comment("SVG form");
+        if (pdfContext.getUserAgent().isAccessibilityEnabled()) {
+            final MarkedContentInfo mci = pdfContext.getMarkedContentInfo();
+            generator.saveGraphicsState(mci.tag, mci.mcid);
+        } else {
+            generator.saveGraphicsState();
+        }
+        generator.setColor(Color.black, false);
+        generator.setColor(Color.black, true);
+        generator.add(CTMHelper.toPDFString(new AffineTransform(
+                pos.width / 1000f, 0, 0, pos.height / 1000f, pos.x / 1000f,
+                pos.y / 1000f), false)
+                + " cm\n" + form.getName() + " Do\n");
+        if (pdfContext.getUserAgent().isAccessibilityEnabled()) {
+            generator.restoreGraphicsStateAccess();
+        } else {
+            generator.restoreGraphicsState();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public int getPriority() {
@@ -190,9 +190,7 @@ public class PDFPainter extends AbstractIFPainter {
      */
     private void placeImage(final Rectangle rect, final PDFXObject xobj) {
         this.generator.saveGraphicsState();
-        this.generator.add(format(rect.width) + " 0 0 " + format(-rect.height)
-                + " " + format(rect.x) + " " + format(rect.y + rect.height)
-                + " cm " + xobj.getName() + " Do\n");
+        this.generator.add(placeImageOperators(rect, xobj));
         this.generator.restoreGraphicsState();
     }
 
@@ -213,9 +211,7 @@ public class PDFPainter extends AbstractIFPainter {
      */
     private void placeImageAccess(final Rectangle rect, final PDFXObject xobj) {
         this.generator.saveGraphicsState(this.imageMCI.tag, this.imageMCI.mcid);
-        this.generator.add(format(rect.width) + " 0 0 " + format(-rect.height)
-                + " " + format(rect.x) + " " + format(rect.y + rect.height)
-                + " cm " + xobj.getName() + " Do\n");
+        this.generator.add(placeImageOperators(rect, xobj));
         this.generator.restoreGraphicsStateAccess();
     }
 
@@ -256,6 +252,32 @@ public class PDFPainter extends AbstractIFPainter {
         return PDFNumber.doubleOut(value / 1000f);
     }
 
+    /**
+     * Appends a integer value (normally coordinates in millipoints) to a
+     * StringBuilder.
+     *
+     * @param value
+     *            the value (in millipoints)
+     * @param sb
+     *            the StringBuilder to append to
+     * @return the StringBuilder passed to this method
+     */
+    protected static StringBuilder format(final int value,
+            final StringBuilder sb) {
+        return PDFNumber.doubleOut(value / 1000f, 6, sb);
+    }
+
+    private static String placeImageOperators(final Rectangle rect,
+            final PDFXObject xobj) {
+        final StringBuilder sb = new StringBuilder(64);
+        format(rect.width, sb).append(" 0 0 ");
+        format(-rect.height, sb).append(' ');
+        format(rect.x, sb).append(' ');
+        format(rect.y + rect.height, sb).append(" cm ");
+        sb.append(xobj.getName()).append(" Do\n");
+        return sb.toString();
+    }
+
     /** {@inheritDoc} */
     @Override
     public void clipRect(final Rectangle rect) {
@@ -280,10 +302,10 @@ public class PDFPainter extends AbstractIFPainter {
                 }
             }
             final StringBuilder sb = new StringBuilder();
-            sb.append(format(rect.x)).append(' ');
-            sb.append(format(rect.y)).append(' ');
-            sb.append(format(rect.width)).append(' ');
-            sb.append(format(rect.height)).append(" re");
+            format(rect.x, sb).append(' ');
+            format(rect.y, sb).append(' ');
+            format(rect.width, sb).append(' ');
+            format(rect.height, sb).append(" re");
             if (fill != null) {
                 sb.append(" f");
             }
@@ -383,14 +405,21 @@ public class PDFPainter extends AbstractIFPainter {
         if (dx != null && dxl > 0 && dx[0] != 0) {
             textutil.adjustGlyphTJ(-dx[0] / fontSize);
         }
+        // glyphs are collected in runs which are written in one go
+        final int[] glyphs = new int[l];
+        final int[] glyphAdjustments = new int[l];
+        int runStart = 0;
         for (int i = 0; i < l; ++i) {
             final char orgChar = text.charAt(i);
             char ch;
-            float glyphAdjust = 0;
+            int glyphAdjust = 0;
             if (font.hasChar(orgChar)) {
                 ch = font.mapChar(orgChar);
                 if (singleByteFont != null
                         && singleByteFont.hasAdditionalEncodings()) {
+                    textutil.writeTJGlyphRun(glyphs, glyphAdjustments,
+                            runStart, i - runStart, fontSize);
+                    runStart = i;
                     final int encoding = ch / 256;
                     if (encoding == 0) {
                         textutil.updateTf(fontName, fontSize, tf.isMultiByte());
@@ -421,17 +450,16 @@ public class PDFPainter extends AbstractIFPainter {
                     }
                 }
             }
-            textutil.writeTJMappedChar(ch);
 
             if (dx != null && i < dxl - 1) {
                 glyphAdjust += dx[i + 1];
             }
 
-            if (glyphAdjust != 0) {
-                textutil.adjustGlyphTJ(-glyphAdjust / fontSize);
-            }
-
+            glyphs[i] = ch;
+            glyphAdjustments[i] = glyphAdjust;
         }
+        textutil.writeTJGlyphRun(glyphs, glyphAdjustments, runStart, l
+                - runStart, fontSize);
         textutil.writeTJ();
     }
 
@@ -151,6 +151,12 @@ public class PDFRendererConfigurator extends PrintRendererConfigurator {
             pdfUtil.setDisableSRGBColorSpace(disableColorSpaceConfig
                     .getValueAsBoolean(false));
         }
+        final Configuration imageDeduplicationConfig = cfg.getChild(
+                PDFConfigurationConstants.KEY_IMAGE_DEDUPLICATION, false);
+        if (imageDeduplicationConfig != null) {
+            pdfUtil.setImageDeduplication(imageDeduplicationConfig
+                    .getValueAsBoolean(false));
+        }
     }
 
     /**
@@ -92,6 +92,9 @@ class PDFRenderingUtil implements PDFConfigurationConstants {
     /** Optional URI to an output profile to be used. */
     protected String outputProfileURI;
 
+    /** controls whether images with identical content share one XObject */
+    protected boolean imageDeduplication = false;
+
     PDFRenderingUtil(final FOUserAgent userAgent) {
         this.userAgent = userAgent;
         initialize();
@@ -183,6 +186,11 @@ class PDFRenderingUtil implements PDFConfigurationConstants {
         if (setting != null) {
             this.disableSRGBColorSpace = booleanValueOf(setting);
         }
+        setting = this.userAgent.getRendererOptions().get(
+                KEY_IMAGE_DEDUPLICATION);
+        if (setting != null) {
+            this.imageDeduplication = booleanValueOf(setting);
+        }
     }
 
     public FOUserAgent getUserAgent() {
@@ -230,6 +238,17 @@ class PDFRenderingUtil implements PDFConfigurationConstants {
         this.disableSRGBColorSpace = disable;
     }
 
+    /**
+     * Enables or disables sharing one XObject between images with identical
+     * content.
+     *
+     * @param imageDeduplication
+     *            true to enable image deduplication
+     */
+    public void setImageDeduplication(final boolean imageDeduplication) {
+        this.imageDeduplication = imageDeduplication;
+    }
+
     /**
      * Sets the filter map to be used by the PDF renderer.
      *
@@ -408,6 +427,9 @@ class PDFRenderingUtil implements PDFConfigurationConstants {
         updateInfo();
         updatePDFProfiles();
         this.pdfDoc.setFilterMap(this.filterMap);
+        this.pdfDoc.setImageDeduplication(this.imageDeduplication);
+        this.pdfDoc.setEncodedImageCache(this.userAgent.getFactory()
+                .getEncodedImageCache());
         this.pdfDoc.outputHeader(out);
 
         // Setup encryption if necessary
@@ -261,7 +261,7 @@ PDFRendererContextConstants {
         graphics.setOutputStream(pdfInfo.outputStream);
         try {
             root.paint(graphics);
-            generator.add(graphics.getString());
+            generator.add(graphics.getContentBuffer());
         } catch (final Exception e) {
             final SVGEventProducer eventProducer = SVGEventProducer.Provider
                     .get(context.getUserAgent().getEventBroadcaster());
@@ -28,6 +28,12 @@ public interface PSConfigurationConstants {
     String AUTO_ROTATE_LANDSCAPE = "auto-rotate-landscape";
     /** Controls whether resources are optimized (rather than inlined) */
     String OPTIMIZE_RESOURCES = "optimize-resources";
+    /**
+     * Controls whether optimized resources are inserted while the document is
+     * buffered in a single pass, rather than in a second pass over a
+     * temporary file
+     */
+    String SINGLE_PASS_RESOURCES = "single-pass-resources";
     /** Determines the PostScript language level to be generated */
     String LANGUAGE_LEVEL = "language-level";
 }
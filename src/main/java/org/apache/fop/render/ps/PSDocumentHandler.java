@@ -20,6 +20,7 @@
 package org.apache.fop.render.ps;
 
 import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.geom.Dimension2D;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
@@ -49,6 +50,7 @@ import org.apache.fop.render.ps.extensions.PSCommentBefore;
 import org.apache.fop.render.ps.extensions.PSExtensionAttachment;
 import org.apache.fop.render.ps.extensions.PSSetPageDevice;
 import org.apache.fop.render.ps.extensions.PSSetupCode;
+import org.apache.xmlgraphics.image.loader.ImageInfo;
 import org.apache.xmlgraphics.java2d.Dimension2DDouble;
 import org.apache.xmlgraphics.ps.DSCConstants;
 import org.apache.xmlgraphics.ps.PSDictionary;
@@ -80,6 +82,15 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
     /** the temporary file in case of two-pass processing */
     private File tempFile;
 
+    /** the document buffer in case of single-pass resource optimization */
+    private SegmentedOutputStream segmentedOutput;
+
+    /**
+     * provides the optimized resources while the buffered document is written
+     * out (single-pass resource optimization)
+     */
+    private ResourceHandler resourceHandler;
+
     private int currentPageNumber = 0;
     private PageDefinition currentPageDefinition;
 
@@ -147,7 +158,12 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
         this.fontResources = new FontResourceCache(getFontInfo());
         try {
             OutputStream out;
-            if (this.psUtil.isOptimizeResources()) {
+            if (this.psUtil.isOptimizeResources()
+                    && this.psUtil.isSinglePassResources()) {
+                this.segmentedOutput = new SegmentedOutputStream(
+                        SegmentedOutputStream.DEFAULT_MEMORY_THRESHOLD);
+                out = this.segmentedOutput;
+            } else if (this.psUtil.isOptimizeResources()) {
                 this.tempFile = File.createTempFile("fop", null);
                 out = new java.io.FileOutputStream(this.tempFile);
                 out = new java.io.BufferedOutputStream(out);
@@ -156,14 +172,7 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
             }
 
             // Setup for PostScript generation
-            this.gen = new PSGenerator(out) {
-                /** Need to subclass PSGenerator to have better URI resolution */
-                @Override
-                public Source resolveURI(final String uri) {
-                    return getUserAgent().resolveURI(uri);
-                }
-            };
-            this.gen.setPSLevel(this.psUtil.getLanguageLevel());
+            this.gen = createGenerator(out);
             this.currentPageNumber = 0;
             this.documentBoundingBox = new Rectangle2D.Double();
 
@@ -177,6 +186,18 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
         }
     }
 
+    private PSGenerator createGenerator(final OutputStream out) {
+        final PSGenerator generator = new PSGenerator(out) {
+            /** Need to subclass PSGenerator to have better URI resolution */
+            @Override
+            public Source resolveURI(final String uri) {
+                return getUserAgent().resolveURI(uri);
+            }
+        };
+        generator.setPSLevel(this.psUtil.getLanguageLevel());
+        return generator;
+    }
+
     private void writeHeader() throws IOException {
         // PostScript Header
         this.gen.writeln(DSCConstants.PS_ADOBE_30);
@@ -186,13 +207,29 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
                 new Object[] { new Date() });
         this.gen.writeDSCComment(DSCConstants.LANGUAGE_LEVEL,
                 this.gen.getPSLevel());
-        this.gen.writeDSCComment(DSCConstants.PAGES,
-                new Object[] { DSCConstants.ATEND });
-        this.gen.writeDSCComment(DSCConstants.BBOX, DSCConstants.ATEND);
-        this.gen.writeDSCComment(DSCConstants.HIRES_BBOX, DSCConstants.ATEND);
-        this.gen.writeDSCComment(DSCConstants.DOCUMENT_SUPPLIED_RESOURCES,
-                new Object[] { DSCConstants.ATEND });
+        if (this.segmentedOutput == null) {
+            this.gen.writeDSCComment(DSCConstants.PAGES,
+                    new Object[] { DSCConstants.ATEND });
+            this.gen.writeDSCComment(DSCConstants.BBOX, DSCConstants.ATEND);
+            this.gen.writeDSCComment(DSCConstants.HIRES_BBOX,
+                    DSCConstants.ATEND);
+            this.gen.writeDSCComment(
+                    DSCConstants.DOCUMENT_SUPPLIED_RESOURCES,
+                    new Object[] { DSCConstants.ATEND });
+        }
         writeExtensions(COMMENT_DOCUMENT_HEADER);
+        if (this.segmentedOutput != null) {
+            this.segmentedOutput.addDeferredSection(new ResourceSection() {
+                @Override
+                protected void generate(final PSGenerator resourceGen)
+                        throws IOException {
+                    PSDocumentHandler.this.resourceHandler.writeHeaderComments(
+                            resourceGen,
+                            PSDocumentHandler.this.currentPageNumber,
+                            PSDocumentHandler.this.documentBoundingBox);
+                }
+            });
+        }
         this.gen.writeDSCComment(DSCConstants.END_COMMENTS);
 
         // Defaults
@@ -217,6 +254,15 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
         if (!this.psUtil.isOptimizeResources()) {
             this.fontResources.addAll(PSFontUtils.writeFontDict(this.gen,
                     this.fontInfo));
+        } else if (this.segmentedOutput != null) {
+            this.segmentedOutput.addDeferredSection(new ResourceSection() {
+                @Override
+                protected void generate(final PSGenerator resourceGen)
+                        throws IOException {
+                    PSDocumentHandler.this.resourceHandler
+                            .writeFontsAndForms(resourceGen);
+                }
+            });
         } else {
             this.gen.commentln("%FOPFontSetup"); // Place-holder, will be
             // replaced in the second pass
@@ -242,16 +288,22 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
             // Write trailer
             this.gen.writeDSCComment(DSCConstants.TRAILER);
             writeExtensions(COMMENT_DOCUMENT_TRAILER);
-            this.gen.writeDSCComment(DSCConstants.PAGES, this.currentPageNumber);
-            new DSCCommentBoundingBox(this.documentBoundingBox)
-                    .generate(this.gen);
-            new DSCCommentHiResBoundingBox(this.documentBoundingBox)
-                    .generate(this.gen);
-            this.gen.getResourceTracker().writeResources(false, this.gen);
+            if (this.segmentedOutput == null) {
+                // Already in the header in single-pass mode
+                this.gen.writeDSCComment(DSCConstants.PAGES,
+                        this.currentPageNumber);
+                new DSCCommentBoundingBox(this.documentBoundingBox)
+                        .generate(this.gen);
+                new DSCCommentHiResBoundingBox(this.documentBoundingBox)
+                        .generate(this.gen);
+                this.gen.getResourceTracker().writeResources(false, this.gen);
+            }
             this.gen.writeDSCComment(DSCConstants.EOF);
             this.gen.flush();
             log.debug("Rendering to PostScript complete.");
-            if (this.psUtil.isOptimizeResources()) {
+            if (this.segmentedOutput != null) {
+                writeSegmentedOutput();
+            } else if (this.psUtil.isOptimizeResources()) {
                 IOUtils.closeQuietly(this.gen.getOutputStream());
                 rewritePostScriptFile();
             }
@@ -301,6 +353,61 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
         }
     }
 
+    /**
+     * Used for single-pass production. This writes the buffered document to the
+     * output stream while inserting all needed resources at the positions
+     * recorded during generation.
+     *
+     * @throws IOException
+     *             In case of an I/O error.
+     */
+    private void writeSegmentedOutput() throws IOException {
+        log.debug("Inserting PostScript resources...");
+        final long startTime = System.currentTimeMillis();
+        try {
+            this.resourceHandler = new ResourceHandler(getUserAgent(),
+                    this.fontInfo, this.gen.getResourceTracker(),
+                    this.formResources);
+            this.segmentedOutput.writeTo(this.outputStream);
+            this.outputStream.flush();
+        } finally {
+            this.segmentedOutput.dispose();
+            this.segmentedOutput = null;
+            this.resourceHandler = null;
+        }
+        if (log.isDebugEnabled()) {
+            final long duration = System.currentTimeMillis() - startTime;
+            log.debug("Resource insertion complete in " + duration + " ms.");
+        }
+    }
+
+    /**
+     * A section of the buffered document which is generated from the optimized
+     * resources once the whole document is known.
+     */
+    private abstract class ResourceSection implements
+    SegmentedOutputStream.DeferredSection {
+
+        /** {@inheritDoc} */
+        @Override
+        public void writeTo(final OutputStream out) throws IOException {
+            final PSGenerator resourceGen = createGenerator(out);
+            generate(resourceGen);
+            resourceGen.flush();
+        }
+
+        /**
+         * Generates the section.
+         *
+         * @param resourceGen
+         *            the generator writing to the final output stream
+         * @throws IOException
+         *             In case of an I/O error
+         */
+        protected abstract void generate(PSGenerator resourceGen)
+                throws IOException;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void startPageSequence(final String id) throws IFException {
@@ -610,6 +717,61 @@ public class PSDocumentHandler extends AbstractBinaryWritingIFDocumentHandler {
         return form;
     }
 
+    /**
+     * Paints an image which is embedded as a form. In single-pass mode, whether
+     * the form is defined inline or in the setup section is only decided when
+     * the buffered document is written out.
+     *
+     * @param form
+     *            the form resource
+     * @param info
+     *            the image info object representing the image in the form
+     * @param rect
+     *            the target rectangle (coordinates in millipoints)
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    protected void drawForm(final PSResource form, final ImageInfo info,
+            final Rectangle rect) throws IOException {
+        if (this.segmentedOutput == null) {
+            PSImageUtils.drawForm(form, info, rect, this.gen);
+            return;
+        }
+        final Rectangle2D targetRect = new Rectangle2D.Double(
+                rect.getMinX() / 1000.0, rect.getMinY() / 1000.0,
+                rect.getWidth() / 1000.0, rect.getHeight() / 1000.0);
+        this.gen.saveGraphicsState();
+        PSImageUtils.translateAndScale(this.gen, info.getSize()
+                .getDimensionPt(), targetRect);
+        this.segmentedOutput.addDeferredSection(new ResourceSection() {
+            @Override
+            protected void generate(final PSGenerator resourceGen)
+                    throws IOException {
+                if (PSDocumentHandler.this.resourceHandler.isInlineForm(form)) {
+                    // Wrap in save/restore pair to release memory
+                    resourceGen.writeln("save");
+                    PSDocumentHandler.this.resourceHandler.writeInlineForm(
+                            resourceGen, form);
+                } else {
+                    resourceGen.writeDSCComment(
+                            DSCConstants.INCLUDE_RESOURCE, form);
+                }
+            }
+        });
+        this.gen.getResourceTracker().notifyResourceUsageOnPage(form);
+        this.gen.writeln(form.getName() + " execform");
+        this.segmentedOutput.addDeferredSection(new ResourceSection() {
+            @Override
+            protected void generate(final PSGenerator resourceGen)
+                    throws IOException {
+                if (PSDocumentHandler.this.resourceHandler.isInlineForm(form)) {
+                    resourceGen.writeln("restore");
+                }
+            }
+        });
+        this.gen.restoreGraphicsState();
+    }
+
     private static final class PageDefinition {
         private final Dimension2D dimensions;
         private final boolean rotate;
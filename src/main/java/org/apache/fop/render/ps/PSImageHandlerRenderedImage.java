@@ -19,16 +19,20 @@
 
 package org.apache.fop.render.ps;
 
+import java.awt.Dimension;
 import java.awt.Rectangle;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.RenderedImage;
 import java.io.IOException;
 
 import org.apache.fop.render.RenderingContext;
+import org.apache.fop.util.bitmap.TiledImageEncoder;
 import org.apache.xmlgraphics.image.loader.Image;
 import org.apache.xmlgraphics.image.loader.ImageFlavor;
 import org.apache.xmlgraphics.image.loader.ImageInfo;
 import org.apache.xmlgraphics.image.loader.impl.ImageRendered;
 import org.apache.xmlgraphics.ps.FormGenerator;
+import org.apache.xmlgraphics.ps.ImageEncodingHelper;
 import org.apache.xmlgraphics.ps.ImageFormGenerator;
 import org.apache.xmlgraphics.ps.PSGenerator;
 import org.apache.xmlgraphics.ps.PSImageUtils;
@@ -55,8 +59,14 @@ public class PSImageHandlerRenderedImage implements PSImageHandler {
         final float w = (float) pos.getWidth() / 1000f;
         final float h = (float) pos.getHeight() / 1000f;
 
+        // Same as PSImageUtils.renderBitmapImage() but with an encoder which
+        // does not copy the whole image
         final RenderedImage ri = imageRend.getRenderedImage();
-        PSImageUtils.renderBitmapImage(ri, x, y, w, h, gen);
+        final ImageEncodingHelper helper = new ImageEncodingHelper(ri);
+        PSImageUtils.writeImage(new TiledImageEncoder(helper),
+                new Dimension(ri.getWidth(), ri.getHeight()), ri.getClass()
+                .getName(), new Rectangle2D.Double(x, y, w, h),
+                helper.getEncodedColorModel(), gen);
     }
 
     /** {@inheritDoc} */
@@ -180,7 +180,7 @@ public class PSPainter extends AbstractIFPainter {
             // stream
             final PSResource form = this.documentHandler.getFormForImage(info
                     .getOriginalURI());
-            PSImageUtils.drawForm(form, info, rect, getGenerator());
+            this.documentHandler.drawForm(form, info, rect);
         }
     }
 
@@ -74,6 +74,8 @@ public class PSRendererConfigurator extends PrintRendererConfigurator {
         if (child != null) {
             psUtil.setOptimizeResources(child.getValueAsBoolean(false));
         }
+        psUtil.setSinglePassResources(cfg.getChild("single-pass-resources")
+                .getValueAsBoolean(false));
         psUtil.setSafeSetPageDevice(cfg.getChild("safe-set-page-device")
                 .getValueAsBoolean(false));
         psUtil.setDSCComplianceEnabled(cfg.getChild("dsc-compliant")
@@ -58,6 +58,12 @@ public class PSRenderingUtil implements PSConfigurationConstants {
      */
     private boolean optimizeResources = false;
 
+    /**
+     * Determines whether optimized resources are inserted into the buffered
+     * document in a single pass instead of re-parsing a temporary file
+     */
+    private boolean singlePassResources = false;
+
     PSRenderingUtil(final FOUserAgent userAgent) {
         this.userAgent = userAgent;
         initialize();
@@ -77,6 +83,10 @@ public class PSRenderingUtil implements PSConfigurationConstants {
         if (obj != null) {
             setOptimizeResources(booleanValueOf(obj));
         }
+        obj = this.userAgent.getRendererOptions().get(SINGLE_PASS_RESOURCES);
+        if (obj != null) {
+            setSinglePassResources(booleanValueOf(obj));
+        }
     }
 
     private boolean booleanValueOf(final Object obj) {
@@ -322,4 +332,28 @@ public class PSRenderingUtil implements PSConfigurationConstants {
         return this.optimizeResources;
     }
 
+    /**
+     * Controls how optimized resources are inserted into the document. In
+     * single-pass mode, the document is buffered (in memory, spilling to a
+     * temporary file for large documents) while resource usage is tracked,
+     * and the resources are inserted when the buffer is written out. This
+     * avoids writing a temporary file and parsing it again. Only effective if
+     * resource optimization is enabled.
+     * 
+     * @param value
+     *            true to insert optimized resources in a single pass
+     */
+    public void setSinglePassResources(final boolean value) {
+        this.singlePassResources = value;
+    }
+
+    /**
+     * Indicates whether optimized resources are inserted in a single pass.
+     * 
+     * @return true if optimized resources are inserted in a single pass
+     */
+    public boolean isSinglePassResources() {
+        return this.singlePassResources;
+    }
+
 }
@@ -201,26 +201,7 @@ public class ResourceHandler implements DSCParserConstants, PSSupportedFlavors {
                 reportInvalidDSC();
             }
             if (DSCTools.headerCommentsEndHere(event)) {
-                // Set number of pages
-                final DSCCommentPages pages = new DSCCommentPages(pageCount);
-                pages.generate(gen);
-                new DSCCommentBoundingBox(documentBoundingBox).generate(gen);
-                new DSCCommentHiResBoundingBox(documentBoundingBox)
-                .generate(gen);
-
-                PSFontUtils.determineSuppliedFonts(this.resTracker,
-                        this.fontInfo, this.fontInfo.getUsedFonts());
-                registerSuppliedForms(this.resTracker, this.globalFormResources);
-
-                // Supplied Resources
-                final DSCCommentDocumentSuppliedResources supplied = new DSCCommentDocumentSuppliedResources(
-                        this.resTracker.getDocumentSuppliedResources());
-                supplied.generate(gen);
-
-                // Needed Resources
-                final DSCCommentDocumentNeededResources needed = new DSCCommentDocumentNeededResources(
-                        this.resTracker.getDocumentNeededResources());
-                needed.generate(gen);
+                writeHeaderComments(gen, pageCount, documentBoundingBox);
 
                 // Write original comment that ends the header comments
                 event.generate(gen);
@@ -243,9 +224,7 @@ public class ResourceHandler implements DSCParserConstants, PSSupportedFlavors {
             throw new DSCException(
                     "Didn't find %FOPFontSetup comment in stream");
         }
-        PSFontUtils.writeFontDict(gen, this.fontInfo,
-                this.fontInfo.getUsedFonts());
-        generateForms(this.globalFormResources, gen);
+        writeFontsAndForms(gen);
 
         // Skip the prolog and to the first page
         DSCComment pageOrTrailer = parser
@@ -275,6 +254,88 @@ public class ResourceHandler implements DSCParserConstants, PSSupportedFlavors {
         gen.flush();
     }
 
+    /**
+     * Writes the header comments which can only be determined after the whole
+     * document has been generated: the page count, the bounding boxes and the
+     * supplied and needed resources.
+     *
+     * @param gen
+     *            the PostScript generator
+     * @param pageCount
+     *            the number of pages
+     * @param documentBoundingBox
+     *            the document's bounding box
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public void writeHeaderComments(final PSGenerator gen,
+            final int pageCount, final Rectangle2D documentBoundingBox)
+                    throws IOException {
+        // Set number of pages
+        final DSCCommentPages pages = new DSCCommentPages(pageCount);
+        pages.generate(gen);
+        new DSCCommentBoundingBox(documentBoundingBox).generate(gen);
+        new DSCCommentHiResBoundingBox(documentBoundingBox).generate(gen);
+
+        PSFontUtils.determineSuppliedFonts(this.resTracker, this.fontInfo,
+                this.fontInfo.getUsedFonts());
+        registerSuppliedForms(this.resTracker, this.globalFormResources);
+
+        // Supplied Resources
+        final DSCCommentDocumentSuppliedResources supplied = new DSCCommentDocumentSuppliedResources(
+                this.resTracker.getDocumentSuppliedResources());
+        supplied.generate(gen);
+
+        // Needed Resources
+        final DSCCommentDocumentNeededResources needed = new DSCCommentDocumentNeededResources(
+                this.resTracker.getDocumentNeededResources());
+        needed.generate(gen);
+    }
+
+    /**
+     * Writes the dictionaries of all used fonts and the forms of all images
+     * referenced more than once, i.e. the content of the setup section which
+     * replaces the "%FOPFontSetup" placeholder.
+     *
+     * @param gen
+     *            the PostScript generator
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public void writeFontsAndForms(final PSGenerator gen) throws IOException {
+        PSFontUtils.writeFontDict(gen, this.fontInfo,
+                this.fontInfo.getUsedFonts());
+        generateForms(this.globalFormResources, gen);
+    }
+
+    /**
+     * Indicates whether a form is used only once and is therefore generated
+     * inline, where it is used, rather than in the setup section.
+     *
+     * @param form
+     *            the form resource
+     * @return true if the form is generated inline
+     */
+    public boolean isInlineForm(final PSResource form) {
+        return this.inlineFormResources.containsKey(form);
+    }
+
+    /**
+     * Generates an inline form.
+     *
+     * @param gen
+     *            the PostScript generator
+     * @param form
+     *            the form resource (see {@link #isInlineForm(PSResource)})
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public void writeInlineForm(final PSGenerator gen, final PSResource form)
+            throws IOException {
+        generateFormForImage(gen,
+                (PSImageFormResource) this.inlineFormResources.get(form));
+    }
+
     private static void reportInvalidDSC() throws DSCException {
         throw new DSCException(
                 "File is not DSC-compliant: Unexpected end of file");
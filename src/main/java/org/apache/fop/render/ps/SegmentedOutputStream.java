@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.render.ps;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.extern.slf4j.Slf4j;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Output stream which buffers a document so that sections which can only be
+ * generated once the whole document is known (like the resource comments in
+ * the header or the font setup) can be inserted where they belong, without
+ * parsing the buffered document again. The data is kept in memory up to a
+ * threshold and spilled to a temporary file beyond that.
+ */
+@Slf4j
+class SegmentedOutputStream extends OutputStream {
+
+    /** Default number of bytes kept in memory before spilling to a file */
+    public static final int DEFAULT_MEMORY_THRESHOLD = 4 * 1024 * 1024;
+
+    /** A section of the document generated when the buffer is written out. */
+    interface DeferredSection {
+
+        /**
+         * Writes the section.
+         *
+         * @param out
+         *            the final output stream
+         * @throws IOException
+         *             In case of an I/O error
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private final int memoryThreshold;
+
+    private byte[] buf = new byte[8192];
+
+    private int count;
+
+    private File spillFile;
+
+    private OutputStream spill;
+
+    private long size;
+
+    private final List<Long> positions = new ArrayList<>();
+
+    private final List<DeferredSection> sections = new ArrayList<>();
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param memoryThreshold
+     *            the number of bytes kept in memory before the data is spilled
+     *            to a temporary file
+     */
+    SegmentedOutputStream(final int memoryThreshold) {
+        this.memoryThreshold = memoryThreshold;
+    }
+
+    /**
+     * Inserts a deferred section at the current position.
+     *
+     * @param section
+     *            the section
+     */
+    void addDeferredSection(final DeferredSection section) {
+        this.positions.add(this.size);
+        this.sections.add(section);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final int b) throws IOException {
+        if (this.spill != null) {
+            this.spill.write(b);
+        } else {
+            ensureCapacity(1);
+            if (this.spill != null) {
+                this.spill.write(b);
+            } else {
+                this.buf[this.count++] = (byte) b;
+            }
+        }
+        this.size++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final byte[] b, final int off, final int len)
+            throws IOException {
+        if (this.spill == null) {
+            ensureCapacity(len);
+        }
+        if (this.spill != null) {
+            this.spill.write(b, off, len);
+        } else {
+            System.arraycopy(b, off, this.buf, this.count, len);
+            this.count += len;
+        }
+        this.size += len;
+    }
+
+    private void ensureCapacity(final int len) throws IOException {
+        final int required = this.count + len;
+        if (required > this.memoryThreshold) {
+            this.spillFile = File.createTempFile("fop", ".ps");
+            if (log.isDebugEnabled()) {
+                log.debug("Spilling PostScript buffer to " + this.spillFile);
+            }
+            this.spill = new java.io.BufferedOutputStream(new FileOutputStream(
+                    this.spillFile));
+            this.spill.write(this.buf, 0, this.count);
+            this.buf = null;
+            this.count = 0;
+        } else if (required > this.buf.length) {
+            this.buf = Arrays.copyOf(this.buf,
+                    Math.min(Math.max(this.buf.length * 2, required),
+                            Math.max(this.memoryThreshold, required)));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void flush() throws IOException {
+        if (this.spill != null) {
+            this.spill.flush();
+        }
+    }
+
+    /**
+     * Writes the buffered document to the given stream, generating the
+     * deferred sections at their positions.
+     *
+     * @param out
+     *            the final output stream
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    void writeTo(final OutputStream out) throws IOException {
+        InputStream in = null;
+        if (this.spill != null) {
+            this.spill.close();
+            this.spill = null;
+            in = new java.io.BufferedInputStream(new FileInputStream(
+                    this.spillFile));
+        }
+        try {
+            long pos = 0;
+            for (int i = 0, c = this.sections.size(); i < c; i++) {
+                final long next = this.positions.get(i);
+                copy(in, out, pos, next - pos);
+                this.sections.get(i).writeTo(out);
+                pos = next;
+            }
+            copy(in, out, pos, this.size - pos);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private void copy(final InputStream in, final OutputStream out,
+            final long pos, final long len) throws IOException {
+        if (in == null) {
+            out.write(this.buf, (int) pos, (int) len);
+            return;
+        }
+        final byte[] buffer = new byte[8192];
+        long remaining = len;
+        while (remaining > 0) {
+            final int n = in.read(buffer, 0,
+                    (int) Math.min(buffer.length, remaining));
+            if (n < 0) {
+                throw new IOException("Unexpected end of buffered PostScript");
+            }
+            out.write(buffer, 0, n);
+            remaining -= n;
+        }
+    }
+
+    /** Releases the buffer and deletes the temporary file, if any. */
+    void dispose() {
+        IOUtils.closeQuietly(this.spill);
+        this.spill = null;
+        this.buf = null;
+        this.sections.clear();
+        this.positions.clear();
+        if (this.spillFile != null && !this.spillFile.delete()) {
+            this.spillFile.deleteOnExit();
+            log.warn("Could not delete temporary file: " + this.spillFile);
+        }
+        this.spillFile = null;
+    }
+
+}
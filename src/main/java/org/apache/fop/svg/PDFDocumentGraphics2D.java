@@ -28,13 +28,13 @@ import java.awt.font.GlyphVector;
 import java.awt.geom.AffineTransform;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.StringWriter;
 
 import org.apache.fop.Version;
 import org.apache.fop.fonts.FontInfo;
 import org.apache.fop.fonts.FontSetup;
 import org.apache.fop.pdf.PDFAnnotList;
 import org.apache.fop.pdf.PDFColor;
+import org.apache.fop.pdf.PDFContentBuffer;
 import org.apache.fop.pdf.PDFDocument;
 import org.apache.fop.pdf.PDFFilterList;
 import org.apache.fop.pdf.PDFNumber;
@@ -286,7 +286,7 @@ public class PDFDocumentGraphics2D extends PDFGraphics2D {
         // Finish page
         final PDFStream pdfStream = this.pdfDoc.getFactory().makeStream(
                 PDFFilterList.CONTENT_FILTER, false);
-        pdfStream.add(getString());
+        pdfStream.add(this.currentStream);
         this.currentStream = null;
         this.pdfDoc.registerObject(pdfStream);
         this.pdfContext.getCurrentPage().setContents(pdfStream);
@@ -344,7 +344,7 @@ public class PDFDocumentGraphics2D extends PDFGraphics2D {
         this.currentFontSize = 0;
 
         if (this.currentStream == null) {
-            this.currentStream = new StringWriter();
+            this.currentStream = new PDFContentBuffer();
         }
 
         final PDFResources pdfResources = this.pdfDoc.getResources();
@@ -49,7 +49,6 @@ import java.awt.image.WritableRaster;
 import java.awt.image.renderable.RenderableImage;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -68,6 +67,7 @@ import org.apache.fop.pdf.BitmapImage;
 import org.apache.fop.pdf.PDFAnnotList;
 import org.apache.fop.pdf.PDFColor;
 import org.apache.fop.pdf.PDFConformanceException;
+import org.apache.fop.pdf.PDFContentBuffer;
 import org.apache.fop.pdf.PDFDeviceColorSpace;
 import org.apache.fop.pdf.PDFDocument;
 import org.apache.fop.pdf.PDFGState;
@@ -156,7 +156,7 @@ public class PDFGraphics2D extends AbstractGraphics2D implements
     /**
      * the current stream to add PDF commands to
      */
-    protected StringWriter currentStream = new StringWriter();
+    protected PDFContentBuffer currentStream = new PDFContentBuffer();
 
     /**
      * the current (internal) font name
@@ -302,13 +302,23 @@ public class PDFGraphics2D extends AbstractGraphics2D implements
     }
 
     /**
-     * Get the string buffer from the currentStream, containing all the commands
-     * written into this Graphics so far.
+     * Get a copy of the commands written into this Graphics so far.
      *
-     * @return the StringBuilder containing the PDF markup
+     * @return the StringBuffer containing the PDF markup
      */
     public StringBuffer getBuffer() {
-        return this.currentStream.getBuffer();
+        return new StringBuffer(getString());
+    }
+
+    /**
+     * Returns the buffer containing all the commands written into this
+     * Graphics. Passing it to {@link org.apache.fop.pdf.PDFStream#add(PDFContentBuffer)} copies
+     * the commands into a PDF stream without creating a string.
+     *
+     * @return the content buffer
+     */
+    public PDFContentBuffer getContentBuffer() {
+        return this.currentStream;
     }
 
     /**
@@ -358,12 +368,7 @@ public class PDFGraphics2D extends AbstractGraphics2D implements
      */
 
     private void concatMatrix(final double[] matrix) {
-        this.currentStream.write(PDFNumber.doubleOut(matrix[0], DEC) + " "
-                + PDFNumber.doubleOut(matrix[1], DEC) + " "
-                + PDFNumber.doubleOut(matrix[2], DEC) + " "
-                + PDFNumber.doubleOut(matrix[3], DEC) + " "
-                + PDFNumber.doubleOut(matrix[4], DEC) + " "
-                + PDFNumber.doubleOut(matrix[5], DEC) + " cm\n");
+        this.currentStream.writeOperation(matrix, DEC, "cm\n");
     }
 
     private void concatMatrix(final AffineTransform transform) {
@@ -1206,14 +1211,15 @@ public class PDFGraphics2D extends AbstractGraphics2D implements
             if (da != null) {
                 this.currentStream.write("[");
                 for (int count = 0; count < da.length; count++) {
-                    this.currentStream.write(PDFNumber.doubleOut(da[count]));
+                    this.currentStream.writeNumber(da[count]);
                     if (count < da.length - 1) {
                         this.currentStream.write(" ");
                     }
                 }
                 this.currentStream.write("] ");
                 final float offset = bs.getDashPhase();
-                this.currentStream.write(PDFNumber.doubleOut(offset) + " d\n");
+                this.currentStream.writeNumber(offset);
+                this.currentStream.write(" d\n");
             }
             final int ec = bs.getEndCap();
             switch (ec) {
@@ -1241,10 +1247,12 @@ public class PDFGraphics2D extends AbstractGraphics2D implements
                 break;
             }
             final float lw = bs.getLineWidth();
-            this.currentStream.write(PDFNumber.doubleOut(lw) + " w\n");
+            this.currentStream.writeNumber(lw);
+            this.currentStream.write(" w\n");
 
             final float ml = bs.getMiterLimit();
-            this.currentStream.write(PDFNumber.doubleOut(ml) + " M\n");
+            this.currentStream.writeNumber(ml);
+            this.currentStream.write(" M\n");
         }
     }
 
@@ -1389,11 +1397,8 @@ public class PDFGraphics2D extends AbstractGraphics2D implements
         localTransform.scale(1, -1);
         final double[] lt = new double[6];
         localTransform.getMatrix(lt);
-        this.currentStream.write(PDFNumber.doubleOut(lt[0]) + " "
-                + PDFNumber.doubleOut(lt[1]) + " " + PDFNumber.doubleOut(lt[2])
-                + " " + PDFNumber.doubleOut(lt[3]) + " "
-                + PDFNumber.doubleOut(lt[4]) + " " + PDFNumber.doubleOut(lt[5])
-                + " Tm [" + startText);
+        this.currentStream.writeOperation(lt, 6, "Tm [");
+        this.currentStream.write(startText);
 
         final int l = s.length();
 
@@ -1681,31 +1686,21 @@ public class PDFGraphics2D extends AbstractGraphics2D implements
      *            PathIterator to process
      */
     public void processPathIterator(final PathIterator iter) {
+        final double[] vals = new double[6];
         while (!iter.isDone()) {
-            final double[] vals = new double[6];
             final int type = iter.currentSegment(vals);
             switch (type) {
             case PathIterator.SEG_CUBICTO:
-                this.currentStream.write(PDFNumber.doubleOut(vals[0], DEC)
-                        + " " + PDFNumber.doubleOut(vals[1], DEC) + " "
-                        + PDFNumber.doubleOut(vals[2], DEC) + " "
-                        + PDFNumber.doubleOut(vals[3], DEC) + " "
-                        + PDFNumber.doubleOut(vals[4], DEC) + " "
-                        + PDFNumber.doubleOut(vals[5], DEC) + " c\n");
+                this.currentStream.writeOperation(vals, 6, DEC, "c\n");
                 break;
             case PathIterator.SEG_LINETO:
-                this.currentStream.write(PDFNumber.doubleOut(vals[0], DEC)
-                        + " " + PDFNumber.doubleOut(vals[1], DEC) + " l\n");
+                this.currentStream.writeOperation(vals, 2, DEC, "l\n");
                 break;
             case PathIterator.SEG_MOVETO:
-                this.currentStream.write(PDFNumber.doubleOut(vals[0], DEC)
-                        + " " + PDFNumber.doubleOut(vals[1], DEC) + " m\n");
+                this.currentStream.writeOperation(vals, 2, DEC, "m\n");
                 break;
             case PathIterator.SEG_QUADTO:
-                this.currentStream.write(PDFNumber.doubleOut(vals[0], DEC)
-                        + " " + PDFNumber.doubleOut(vals[1], DEC) + " "
-                        + PDFNumber.doubleOut(vals[2], DEC) + " "
-                        + PDFNumber.doubleOut(vals[3], DEC) + " y\n");
+                this.currentStream.writeOperation(vals, 4, DEC, "y\n");
                 break;
             case PathIterator.SEG_CLOSE:
                 this.currentStream.write("h\n");
@@ -39,6 +39,7 @@ import org.apache.batik.gvt.text.TextPaintInfo;
 import org.apache.batik.gvt.text.TextSpanLayout;
 import org.apache.fop.fonts.Font;
 import org.apache.fop.fonts.FontInfo;
+import org.apache.fop.pdf.PDFContentBuffer;
 import org.apache.fop.util.CharUtilities;
 
 /**
@@ -99,6 +100,11 @@ class PDFTextPainter extends NativeTextPainter {
             protected void write(final String code) {
                 pdf.currentStream.write(code);
             }
+
+            @Override
+            protected void write(final PDFContentBuffer code) {
+                pdf.currentStream.write(code);
+            }
         };
 
         if (DEBUG) {
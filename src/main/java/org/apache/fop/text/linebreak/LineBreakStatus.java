@@ -19,6 +19,10 @@
 
 package org.apache.fop.text.linebreak;
 
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This class is meant for supporting the Unicode line breaking algorithm. See:
  * <a href="http://unicode.org/reports/tr14/">UTR 14</a>
@@ -39,6 +43,40 @@ public class LineBreakStatus {
     /** Constant indicating a Explicit Break */
     public static final byte EXPLICIT_BREAK = LineBreakUtils.EXPLICIT_BREAK;
 
+    private static final int BLOCK_SHIFT = 7;
+    private static final int BLOCK_MASK = (1 << BLOCK_SHIFT) - 1;
+
+    /**
+     * Two-stage lookup table of the linebreak properties, with the AI, SA, SG
+     * and XX classes resolved according to rule LB 1, so no per-character
+     * resolution is needed at lookup time. Blocks with identical content are
+     * shared.
+     */
+    private static final byte[][] RESOLVED_PROPERTIES;
+
+    static {
+        final int blockSize = 1 << BLOCK_SHIFT;
+        final int blockCount = (Character.MAX_VALUE + 1) >> BLOCK_SHIFT;
+        RESOLVED_PROPERTIES = new byte[blockCount][];
+        final Map<ByteBuffer, byte[]> blocks = new HashMap<ByteBuffer, byte[]>();
+        for (int i = 0; i < blockCount; i++) {
+            byte[] block = new byte[blockSize];
+            for (int j = 0; j < blockSize; j++) {
+                final char c = (char) (i << BLOCK_SHIFT | j);
+                block[j] = resolveLineBreakProperty(c,
+                        LineBreakUtils.getLineBreakProperty(c));
+            }
+            final ByteBuffer content = ByteBuffer.wrap(block);
+            final byte[] shared = blocks.get(content);
+            if (shared != null) {
+                block = shared;
+            } else {
+                blocks.put(content, block);
+            }
+            RESOLVED_PROPERTIES[i] = block;
+        }
+    }
+
     private byte leftClass;
     private boolean hadSpace;
 
@@ -79,11 +117,48 @@ public class LineBreakStatus {
      *         {@link #EXPLICIT_BREAK}
      */
     public byte nextChar(final char c) {
+        return nextLineBreakProperty(getResolvedLineBreakProperty(c));
+    }
 
-        byte currentClass = LineBreakUtils.getLineBreakProperty(c);
+    /**
+     * Bulk version of {@link #nextChar(char)}: determines the line breaking
+     * status of the points before each character of a run in a single pass.
+     * The result for <code>chars[i]</code> is stored in
+     * <code>breakActions[i]</code>, so both arrays share the same indices.
+     *
+     * @param chars
+     *            the characters to check
+     * @param start
+     *            the index of the first character to check
+     * @param end
+     *            the index after the last character to check
+     * @param breakActions
+     *            receives the break actions, one of: {@link #DIRECT_BREAK},
+     *            {@link #INDIRECT_BREAK}, {@link #COMBINING_INDIRECT_BREAK},
+     *            {@link #COMBINING_PROHIBITED_BREAK}, {@link #PROHIBITED_BREAK}
+     *            , {@link #EXPLICIT_BREAK}
+     */
+    public void nextChars(final char[] chars, final int start, final int end,
+            final byte[] breakActions) {
+        for (int i = start; i < end; i++) {
+            breakActions[i] = nextLineBreakProperty(getResolvedLineBreakProperty(chars[i]));
+        }
+    }
 
-        /* Initial conversions */
-        switch (currentClass) {
+    /**
+     * Returns the linebreak property of a character with rule LB 1 already
+     * applied.
+     *
+     * @param c
+     *            the character
+     * @return the resolved linebreak property
+     */
+    static byte getResolvedLineBreakProperty(final char c) {
+        return RESOLVED_PROPERTIES[c >> BLOCK_SHIFT][c & BLOCK_MASK];
+    }
+
+    private static byte resolveLineBreakProperty(final char c, final byte lbp) {
+        switch (lbp) {
         case LineBreakUtils.LINE_BREAK_PROPERTY_AI:
         case LineBreakUtils.LINE_BREAK_PROPERTY_SG:
         case LineBreakUtils.LINE_BREAK_PROPERTY_XX:
@@ -91,8 +166,7 @@ public class LineBreakStatus {
             // depending on criteria outside the scope of this algorithm.
             // In the absence of such criteria, it is recommended that
             // classes AI, ... SG and XX be resolved to AL
-            currentClass = LineBreakUtils.LINE_BREAK_PROPERTY_AL;
-            break;
+            return LineBreakUtils.LINE_BREAK_PROPERTY_AL;
 
         case LineBreakUtils.LINE_BREAK_PROPERTY_SA:
             // LB 1: Resolve ... SA ... into other line breaking classes
@@ -103,15 +177,20 @@ public class LineBreakStatus {
             switch (Character.getType(c)) {
             case Character.COMBINING_SPACING_MARK: // General_Category "Mc"
             case Character.NON_SPACING_MARK: // General_Category "Mn"
-                currentClass = LineBreakUtils.LINE_BREAK_PROPERTY_CM;
-                break;
+                return LineBreakUtils.LINE_BREAK_PROPERTY_CM;
             default:
-                currentClass = LineBreakUtils.LINE_BREAK_PROPERTY_AL;
+                return LineBreakUtils.LINE_BREAK_PROPERTY_AL;
             }
 
         default:
-            // nop
+            return lbp;
         }
+    }
+
+    /**
+     * Applies the pair table to the next (resolved) linebreak property.
+     */
+    private byte nextLineBreakProperty(final byte currentClass) {
 
         /*
          * Check 1: First character or initial character after a reset/mandatory
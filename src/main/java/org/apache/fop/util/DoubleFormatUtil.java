@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.util;
+
+/**
+ * Formats double values exactly like the formats of
+ * {@link DecimalFormatCache} (pattern "0.###...", US symbols, half-even
+ * rounding) but writes the ASCII digits straight into a byte array or a
+ * StringBuilder. Formatting the coordinates of PDF and PostScript operators
+ * this way avoids the DecimalFormat machinery and its garbage. Values which
+ * are not finite, too large for a long after scaling or too close to a
+ * rounding tie are left to DecimalFormat.
+ */
+public final class DoubleFormatUtil {
+
+    /**
+     * The maximum number of bytes
+     * {@link #formatDouble(double, int, byte[], int)} writes.
+     */
+    public static final int MAX_LENGTH = 40;
+
+    /** the maximum number of decimal places supported */
+    public static final int MAX_DECIMALS = 16;
+
+    /** scaled values from here on might not be exact in a long */
+    private static final double MAX_SCALED = 1e15;
+
+    /** distance from a rounding tie, in ulps, below which DecimalFormat is used */
+    private static final double TIE_ULPS = 4;
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_DECIMALS + 1];
+
+    private static final long[] LONG_POWERS_OF_TEN = new long[MAX_DECIMALS + 1];
+
+    static {
+        long p = 1;
+        for (int i = 0; i <= MAX_DECIMALS; i++) {
+            LONG_POWERS_OF_TEN[i] = p;
+            POWERS_OF_TEN[i] = p;
+            p *= 10;
+        }
+    }
+
+    private DoubleFormatUtil() {
+    }
+
+    /**
+     * Formats a double value with at most the given number of decimal places.
+     *
+     * @param value
+     *            the value
+     * @param dec
+     *            the maximum number of decimal places (0 to 16)
+     * @return the formatted value
+     */
+    public static String formatDouble(final double value, final int dec) {
+        final long rounded = round(value, dec);
+        if (rounded < 0) {
+            return DecimalFormatCache.getDecimalFormat(dec).format(value);
+        }
+        final byte[] buf = new byte[MAX_LENGTH];
+        final int len = write(value, rounded, dec, buf, 0);
+        final char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = (char) buf[i];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Appends a double value with at most the given number of decimal places
+     * to a StringBuilder without creating intermediate objects.
+     *
+     * @param value
+     *            the value
+     * @param dec
+     *            the maximum number of decimal places (0 to 16)
+     * @param sb
+     *            the StringBuilder to append to
+     * @return the StringBuilder passed to this method
+     */
+    public static StringBuilder formatDouble(final double value,
+            final int dec, final StringBuilder sb) {
+        final long rounded = round(value, dec);
+        if (rounded < 0) {
+            return sb.append(DecimalFormatCache.getDecimalFormat(dec).format(
+                    value));
+        }
+        if (isNegative(value)) {
+            sb.append('-');
+        }
+        sb.append(rounded / LONG_POWERS_OF_TEN[dec]);
+        long fracPart = rounded % LONG_POWERS_OF_TEN[dec];
+        if (fracPart != 0) {
+            int fracDigits = dec;
+            while (fracPart % 10 == 0) {
+                fracPart /= 10;
+                fracDigits--;
+            }
+            sb.append('.');
+            for (int i = countDigits(fracPart); i < fracDigits; i++) {
+                sb.append('0');
+            }
+            sb.append(fracPart);
+        }
+        return sb;
+    }
+
+    /**
+     * Writes a double value with at most the given number of decimal places
+     * as ASCII into a byte array.
+     *
+     * @param value
+     *            the value
+     * @param dec
+     *            the maximum number of decimal places (0 to 16)
+     * @param buf
+     *            the target array, which must have room for
+     *            {@link #MAX_LENGTH} bytes from the offset on
+     * @param offset
+     *            the offset at which to write
+     * @return the offset after the last byte written, or -1 if nothing has
+     *         been written since the value is not finite, too large or too
+     *         close to a rounding tie (the caller then needs to fall back to
+     *         {@link DecimalFormatCache})
+     */
+    public static int formatDouble(final double value, final int dec,
+            final byte[] buf, final int offset) {
+        final long rounded = round(value, dec);
+        if (rounded < 0) {
+            return -1;
+        }
+        return write(value, rounded, dec, buf, offset);
+    }
+
+    /**
+     * Rounds the absolute value to the given number of decimal places.
+     *
+     * @return the rounded value times 10^dec, or -1 if the value is not
+     *         finite, too large or too close to a rounding tie
+     */
+    private static long round(final double value, final int dec) {
+        if (dec < 0 || dec > MAX_DECIMALS) {
+            throw new IllegalArgumentException(
+                    "Parameter dec must be between 0 and " + MAX_DECIMALS);
+        }
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return -1;
+        }
+        final double abs = Math.abs(value);
+        final double scaled = abs * POWERS_OF_TEN[dec];
+        if (scaled >= MAX_SCALED) {
+            return -1;
+        }
+        final long truncated = (long) scaled;
+        final double fraction = scaled - truncated;
+        if (Math.abs(fraction - 0.5) <= TIE_ULPS * Math.ulp(scaled)) {
+            // Too close to a tie to trust the scaled double. DecimalFormat
+            // decides those on the shortest decimal representation of the
+            // value, so leave them to it.
+            return -1;
+        }
+        return fraction > 0.5 ? truncated + 1 : truncated;
+    }
+
+    /** DecimalFormat keeps the sign of negative values rounded to zero. */
+    private static boolean isNegative(final double value) {
+        return value < 0 || value == 0 && 1 / value < 0;
+    }
+
+    private static int write(final double value, final long rounded,
+            final int dec, final byte[] buf, final int offset) {
+        int pos = offset;
+        if (isNegative(value)) {
+            buf[pos++] = '-';
+        }
+        final long intPart = rounded / LONG_POWERS_OF_TEN[dec];
+        long fracPart = rounded % LONG_POWERS_OF_TEN[dec];
+        pos = writeDigits(intPart, buf, pos);
+        if (fracPart != 0) {
+            int fracDigits = dec;
+            while (fracPart % 10 == 0) {
+                fracPart /= 10;
+                fracDigits--;
+            }
+            buf[pos++] = '.';
+            for (int i = pos + fracDigits - 1; i >= pos; i--) {
+                buf[i] = (byte) ('0' + fracPart % 10);
+                fracPart /= 10;
+            }
+            pos += fracDigits;
+        }
+        return pos;
+    }
+
+    private static int countDigits(final long value) {
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private static int writeDigits(final long value, final byte[] buf,
+            final int offset) {
+        final int digits = countDigits(value);
+        long v = value;
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buf[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return offset + digits;
+    }
+}
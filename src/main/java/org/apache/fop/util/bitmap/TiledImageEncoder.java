@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/* $Id$ */
+
+package org.apache.fop.util.bitmap;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.xmlgraphics.ps.ImageEncoder;
+import org.apache.xmlgraphics.ps.ImageEncodingHelper;
+
+/**
+ * Image encoder which reads a RenderedImage one row of tiles at a time.
+ * ImageEncodingHelper converts images to RGB from a copy of the complete
+ * raster ({@link RenderedImage#getData()}), so a large image that is decoded
+ * on demand, like a scanned multi-strip TIFF, ends up on the heap as a whole.
+ * Here only the tiles of the current tile row are requested and converted
+ * into the output stream, so memory use is bounded by the tile size. The
+ * encoded samples are identical to those of ImageEncodingHelper.
+ */
+public class TiledImageEncoder implements ImageEncoder {
+
+    private final ImageEncodingHelper helper;
+
+    /**
+     * Creates a new encoder which writes the image in its encoded color model
+     * (see {@link ImageEncodingHelper#getEncodedColorModel()}).
+     *
+     * @param helper
+     *            the encoding helper for the image
+     */
+    public TiledImageEncoder(final ImageEncodingHelper helper) {
+        this.helper = helper;
+    }
+
+    /**
+     * Creates a new encoder for an image with the color model of
+     * {@link ImageEncodingHelper#ImageEncodingHelper(RenderedImage)}, which
+     * keeps CMYK images in CMYK. The color space written with the image data
+     * must be taken from a helper created the same way.
+     *
+     * @param image
+     *            the image
+     */
+    public TiledImageEncoder(final RenderedImage image) {
+        this(new ImageEncodingHelper(image, true));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void writeTo(final OutputStream out) throws IOException {
+        if (this.helper.isConverted()) {
+            encodeRenderedImageAsRGB(this.helper.getImage(), out);
+        } else {
+            // only single-tile images are written unconverted
+            this.helper.encode(out);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getImplicitFilter() {
+        return null;
+    }
+
+    /**
+     * Writes a RenderedImage as 8-bit RGB samples. This is a replacement for
+     * {@link ImageEncodingHelper#encodeRenderedImageAsRGB(RenderedImage, OutputStream)}
+     * which does not copy the image.
+     *
+     * @param image
+     *            the image
+     * @param out
+     *            the stream to write the samples to
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public static void encodeRenderedImageAsRGB(final RenderedImage image,
+            final OutputStream out) throws IOException {
+        if (writeRGBDirectly(image, out)) {
+            return;
+        }
+        final ColorModel cm = image.getColorModel();
+        new TileRowEncoder(image, 3) {
+            private Object elements;
+
+            @Override
+            protected void encode(final Raster tile, final int x,
+                    final int y, final int w, final byte[] line, int pos) {
+                for (int i = x; i < x + w; i++) {
+                    this.elements = tile.getDataElements(i, y, this.elements);
+                    final int rgb = cm.getRGB(this.elements);
+                    line[pos++] = (byte) (rgb >> 16);
+                    line[pos++] = (byte) (rgb >> 8);
+                    line[pos++] = (byte) rgb;
+                }
+            }
+        }.writeTo(out);
+    }
+
+    /**
+     * Indicates whether {@link #encodeAlpha(RenderedImage, OutputStream)} can
+     * write the alpha channel of an image. This is the case for 8-bit alpha
+     * channels in byte or packed int samples and 16-bit alpha channels in
+     * short samples. BufferedImages are not streamed since their alpha raster
+     * is available without copying.
+     *
+     * @param image
+     *            the image
+     * @return true if the alpha channel can be streamed
+     */
+    public static boolean isAlphaStreamable(final RenderedImage image) {
+        if (image instanceof BufferedImage) {
+            return false;
+        }
+        final ColorModel cm = image.getColorModel();
+        if (!cm.hasAlpha()) {
+            return false;
+        }
+        final SampleModel sm = image.getSampleModel();
+        final int band = cm.getNumComponents() - 1;
+        if (band >= sm.getNumBands()) {
+            return false;
+        }
+        final int sampleSize = sm.getSampleSize(band);
+        if (cm instanceof ComponentColorModel) {
+            return sm.getDataType() == DataBuffer.TYPE_BYTE && sampleSize == 8
+                    || sm.getDataType() == DataBuffer.TYPE_USHORT
+                    && sampleSize == 16;
+        } else if (cm instanceof DirectColorModel) {
+            return sm instanceof SinglePixelPackedSampleModel
+                    && sm.getDataType() == DataBuffer.TYPE_INT
+                    && sampleSize == 8;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the alpha channel of an image as 8-bit samples (16-bit samples
+     * are reduced to their high byte), one row of tiles at a time.
+     *
+     * @param image
+     *            the image (see {@link #isAlphaStreamable(RenderedImage)})
+     * @param out
+     *            the stream to write the samples to
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    public static void encodeAlpha(final RenderedImage image,
+            final OutputStream out) throws IOException {
+        if (!isAlphaStreamable(image)) {
+            throw new IllegalArgumentException(
+                    "Alpha channel cannot be streamed: " + image);
+        }
+        final int band = image.getColorModel().getNumComponents() - 1;
+        final int shift = image.getSampleModel().getSampleSize(band) - 8;
+        new TileRowEncoder(image, 1) {
+            private int[] samples;
+
+            @Override
+            protected void encode(final Raster tile, final int x,
+                    final int y, final int w, final byte[] line, int pos) {
+                if (this.samples == null || this.samples.length < w) {
+                    this.samples = new int[w];
+                }
+                tile.getSamples(x, y, w, 1, band, this.samples);
+                for (int i = 0; i < w; i++) {
+                    line[pos++] = (byte) (this.samples[i] >> shift);
+                }
+            }
+        }.writeTo(out);
+    }
+
+    /**
+     * Writes an image which is converted to RGB directly from the DataBuffer
+     * of its only tile, one row at a time. This covers the usual layouts of
+     * 8-bit sRGB images (TYPE_INT_RGB, TYPE_INT_ARGB, TYPE_INT_BGR,
+     * TYPE_4BYTE_ABGR and the like) which would otherwise be converted pixel
+     * by pixel through the ColorModel. The result is the same.
+     *
+     * @param image
+     *            the image
+     * @param out
+     *            the stream to write the RGB samples to
+     * @return false if the image layout is not supported and nothing has been
+     *         written
+     * @throws IOException
+     *             In case of an I/O error
+     */
+    private static boolean writeRGBDirectly(final RenderedImage image,
+            final OutputStream out) throws IOException {
+        final ColorModel cm = image.getColorModel();
+        if (image.getNumXTiles() != 1 || image.getNumYTiles() != 1
+                || !cm.getColorSpace().isCS_sRGB()
+                || cm.isAlphaPremultiplied() || cm.getNumColorComponents() != 3) {
+            return false;
+        }
+        for (int i = 0; i < cm.getNumComponents(); i++) {
+            if (cm.getComponentSize(i) != 8) {
+                return false;
+            }
+        }
+        final int w = image.getWidth();
+        final int h = image.getHeight();
+        final Raster raster = image.getTile(image.getMinTileX(),
+                image.getMinTileY());
+        if (!raster.getBounds().contains(image.getMinX(), image.getMinY(), w,
+                h)) {
+            return false;
+        }
+        final SampleModel sm = raster.getSampleModel();
+        final DataBuffer db = raster.getDataBuffer();
+        if (sm.getNumBands() != cm.getNumComponents() || db.getNumBanks() != 1) {
+            return false;
+        }
+        final int x0 = image.getMinX() - raster.getSampleModelTranslateX();
+        final int y0 = image.getMinY() - raster.getSampleModelTranslateY();
+        final byte[] line = new byte[w * 3];
+        if (cm instanceof DirectColorModel
+                && sm instanceof SinglePixelPackedSampleModel
+                && db instanceof DataBufferInt) {
+            final SinglePixelPackedSampleModel sppsm = (SinglePixelPackedSampleModel) sm;
+            final int[] offsets = sppsm.getBitOffsets();
+            final int rs = offsets[0];
+            final int gs = offsets[1];
+            final int bs = offsets[2];
+            final int[] data = ((DataBufferInt) db).getData();
+            final int stride = sppsm.getScanlineStride();
+            int rowStart = db.getOffset() + sppsm.getOffset(x0, y0);
+            for (int y = 0; y < h; y++) {
+                for (int i = rowStart, j = 0; j < line.length; i++) {
+                    final int pixel = data[i];
+                    line[j++] = (byte) (pixel >>> rs);
+                    line[j++] = (byte) (pixel >>> gs);
+                    line[j++] = (byte) (pixel >>> bs);
+                }
+                out.write(line);
+                rowStart += stride;
+            }
+            return true;
+        } else if (cm instanceof ComponentColorModel
+                && sm instanceof ComponentSampleModel
+                && db instanceof DataBufferByte) {
+            final ComponentSampleModel csm = (ComponentSampleModel) sm;
+            final int[] bandOffsets = csm.getBandOffsets();
+            final int ro = bandOffsets[0];
+            final int go = bandOffsets[1];
+            final int bo = bandOffsets[2];
+            final int pixelStride = csm.getPixelStride();
+            final byte[] data = ((DataBufferByte) db).getData();
+            final int stride = csm.getScanlineStride();
+            // band offsets are added per sample, so start at the pixel
+            int rowStart = db.getOffset() + y0 * stride + x0 * pixelStride;
+            for (int y = 0; y < h; y++) {
+                for (int i = rowStart, j = 0; j < line.length; i += pixelStride) {
+                    line[j++] = data[i + ro];
+                    line[j++] = data[i + go];
+                    line[j++] = data[i + bo];
+                }
+                out.write(line);
+                rowStart += stride;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Walks through an image one tile row at a time and writes it scan line
+     * by scan line. Only the tiles of the current row are referenced.
+     */
+    private abstract static class TileRowEncoder {
+
+        private final RenderedImage image;
+
+        private final int bytesPerPixel;
+
+        TileRowEncoder(final RenderedImage image, final int bytesPerPixel) {
+            this.image = image;
+            this.bytesPerPixel = bytesPerPixel;
+        }
+
+        /**
+         * Converts a horizontal run of pixels of a tile.
+         *
+         * @param tile
+         *            the tile
+         * @param x
+         *            the x coordinate of the first pixel
+         * @param y
+         *            the y coordinate of the pixels
+         * @param w
+         *            the number of pixels
+         * @param line
+         *            the scan line buffer
+         * @param pos
+         *            the position in the buffer for the first pixel
+         */
+        protected abstract void encode(Raster tile, int x, int y, int w,
+                byte[] line, int pos);
+
+        void writeTo(final OutputStream out) throws IOException {
+            final RenderedImage img = this.image;
+            final int minX = img.getMinX();
+            final int minY = img.getMinY();
+            final int maxX = minX + img.getWidth();
+            final int maxY = minY + img.getHeight();
+            final int tileWidth = img.getTileWidth();
+            final int tileHeight = img.getTileHeight();
+            final int minTileX = img.getMinTileX();
+            final int minTileY = img.getMinTileY();
+            final int numXTiles = img.getNumXTiles();
+            final Raster[] tiles = new Raster[numXTiles];
+            final byte[] line = new byte[img.getWidth() * this.bytesPerPixel];
+            for (int ty = minTileY; ty < minTileY + img.getNumYTiles(); ty++) {
+                final int tileY = img.getTileGridYOffset() + ty * tileHeight;
+                final int y0 = Math.max(minY, tileY);
+                final int y1 = Math.min(maxY, tileY + tileHeight);
+                if (y0 >= y1) {
+                    continue;
+                }
+                for (int i = 0; i < numXTiles; i++) {
+                    tiles[i] = img.getTile(minTileX + i, ty);
+                }
+                for (int y = y0; y < y1; y++) {
+                    for (int i = 0; i < numXTiles; i++) {
+                        final int tileX = img.getTileGridXOffset()
+                                + (minTileX + i) * tileWidth;
+                        final int x0 = Math.max(minX, tileX);
+                        final int x1 = Math.min(maxX, tileX + tileWidth);
+                        if (x0 < x1) {
+                            encode(tiles[i], x0, y, x1 - x0, line, (x0 - minX)
+                                    * this.bytesPerPixel);
+                        }
+                    }
+                    out.write(line);
+                }
+            }
+        }
+    }
+}